@@ -0,0 +1,113 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.BackpressurePolicy;
+import fr.prudhommeau.smarthttpclient.bean.SchedulingConfiguration;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestScheduler;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+import fr.prudhommeau.smarthttpclient.exceptions.HttpRequestThreadRejectedException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory-bounded soak: unthrottled producers submit against a stub that can only serve
+ * maxNumberOfInFlightRequests / latency requests per second, which is well over ten times its
+ * capacity. The fork runs with a small heap, so an unbounded submission queue fails with an
+ * OutOfMemoryError within the first iteration. With a bound the heap retained after a full GC has
+ * to stay flat whatever the policy: it is recorded at the end of every iteration, and the teardown
+ * fails when it grows more than MAX_RETAINED_HEAP_GROWTH_IN_BYTES past the first iteration, or when
+ * the scheduler holds more than maxNumberOfSubmittedRequests pending requests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 10, time = 30)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx256m"})
+@Threads(4)
+@State(Scope.Benchmark)
+public class BackpressureSoakBenchmark {
+
+    private static final long LATENCY_IN_MILLISECONDS = 10;
+    private static final int BODY_SIZE_IN_BYTES = 16384;
+    private static final int MAX_NUMBER_OF_IN_FLIGHT_REQUESTS = 16;
+    // Two full queues of bodies are about 5 MB, the rest of the margin is for GC noise
+    private static final long MAX_RETAINED_HEAP_GROWTH_IN_BYTES = 32L * 1024 * 1024;
+
+    @Param({"BLOCK", "FAIL_FAST", "DROP_OLDEST"})
+    public BackpressurePolicy backpressurePolicy;
+
+    @Param({"160"})
+    public int maxNumberOfSubmittedRequests;
+
+    private StubHttpServer stubHttpServer;
+    private HttpClientManager httpClientManager;
+    private String uri;
+    private final List<Long> retainedHeapInBytesList = new ArrayList<>();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SubmissionCounters {
+
+        public long acceptedSubmissions;
+        public long rejectedSubmissions;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stubHttpServer = new StubHttpServer(LATENCY_IN_MILLISECONDS, BODY_SIZE_IN_BYTES, 0);
+        stubHttpServer.start();
+        uri = stubHttpServer.getUri("/soak");
+
+        httpClientManager = BenchmarkEnvironment.createHttpClientManager(this);
+        SchedulingConfiguration schedulingConfiguration = new SchedulingConfiguration();
+        schedulingConfiguration.setMaxNumberOfInFlightRequests(MAX_NUMBER_OF_IN_FLIGHT_REQUESTS);
+        schedulingConfiguration.setMaxNumberOfSubmittedRequests(maxNumberOfSubmittedRequests);
+        schedulingConfiguration.setBackpressurePolicy(backpressurePolicy);
+        httpClientManager.setSchedulingConfiguration(schedulingConfiguration);
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkRetainedHeap() {
+        HttpRequestScheduler httpRequestScheduler = httpClientManager.getHttpRequestScheduler();
+        if (httpRequestScheduler.getNumberOfPendingRequests() > maxNumberOfSubmittedRequests) {
+            throw new IllegalStateException(httpRequestScheduler.getNumberOfPendingRequests() + " pending requests with a bound of " + maxNumberOfSubmittedRequests);
+        }
+        if (httpRequestScheduler.getNumberOfInFlightRequests() > MAX_NUMBER_OF_IN_FLIGHT_REQUESTS) {
+            throw new IllegalStateException(httpRequestScheduler.getNumberOfInFlightRequests() + " requests in flight with a bound of " + MAX_NUMBER_OF_IN_FLIGHT_REQUESTS);
+        }
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        memoryMXBean.gc();
+        long retainedHeapInBytes = memoryMXBean.getHeapMemoryUsage().getUsed();
+        retainedHeapInBytesList.add(retainedHeapInBytes);
+        if (retainedHeapInBytes - retainedHeapInBytesList.get(0) > MAX_RETAINED_HEAP_GROWTH_IN_BYTES) {
+            throw new IllegalStateException("Retained heap grew past " + MAX_RETAINED_HEAP_GROWTH_IN_BYTES + " bytes over the first iteration, retained bytes per iteration " + retainedHeapInBytesList);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClientManager.close();
+        stubHttpServer.close();
+    }
+
+    @Benchmark
+    public void submit(SubmissionCounters submissionCounters) {
+        HttpRequestThread<Long> httpRequestThread = new HttpRequestThread<>();
+        httpRequestThread.setUri(uri);
+        httpRequestThread.setIgnoreErrors(true);
+        try {
+            httpClientManager.launchHttpRequestThread(httpRequestThread);
+            submissionCounters.acceptedSubmissions++;
+        } catch (HttpRequestThreadRejectedException e) {
+            submissionCounters.rejectedSubmissions++;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.ProxyPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public final class BenchmarkEnvironment {
+
+    private BenchmarkEnvironment() {
+    }
+
+    public static HttpClientManager createHttpClientManager(Object initiator) {
+        HttpClientManager httpClientManager = new HttpClientManager(initiator);
+        httpClientManager.setDefaultProxifiable(BenchmarkProxifiable.class);
+        return httpClientManager;
+    }
+
+    public static Proxy createProxy(String ip, int port, ProxyType proxyType) {
+        Proxy proxy = new Proxy();
+        proxy.setIp(ip);
+        proxy.setPort(port);
+        proxy.setType(proxyType);
+        return proxy;
+    }
+
+    public static ProxyPool.ProxyInfo createProxyInfo(Proxy proxy) {
+        ProxyPool.ProxyInfo proxyInfo = new ProxyPool.ProxyInfo();
+        proxyInfo.setProxy(proxy);
+        proxyInfo.setNumberOfConnectionFailures(0L);
+        proxyInfo.setNumberOfUsages(0L);
+        proxyInfo.setAverageResponseTimeInMilliseconds(0.0);
+        return proxyInfo;
+    }
+
+    public static void loadProxies(ProxyPool proxyPool, List<Proxy> proxyList) {
+        List<ProxyPool.ProxyInfo> proxyInfoList = new ArrayList<>();
+        for (Proxy proxy : proxyList) {
+            proxyInfoList.add(createProxyInfo(proxy));
+        }
+        proxyPool.loadProxyList(Map.of(BenchmarkProxifiable.class, proxyInfoList));
+    }
+
+}
@@ -0,0 +1,5 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.core.Proxifiable;
+
+public class BenchmarkProxifiable implements Proxifiable {}
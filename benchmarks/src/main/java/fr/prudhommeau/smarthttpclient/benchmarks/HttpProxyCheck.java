@@ -0,0 +1,100 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.ConnectionPoolConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import fr.prudhommeau.smarthttpclient.bean.TlsConfiguration;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpProxy;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubTls;
+import fr.prudhommeau.smarthttpclient.core.ConnectionStatistics;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends 7 requests through a loopback StubHttpProxy requiring Basic credentials and exits with an
+ * exception on the first unexpected outcome. 3 requests go to a first TLS stub, 2 to a second and 2 to
+ * a plain HTTP stub, which takes 3 proxy connections: one CONNECT tunnel per TLS target and one
+ * forwarding connection. The proxy must challenge only once since the Basic scheme is then sent up
+ * front, and 3 of the 5 HTTPS requests must reuse a tunnel. A wrong password must end in a 407.
+ */
+public class HttpProxyCheck {
+
+    private static final String USERNAME = "bob";
+    private static final String PASSWORD = "secret";
+
+    private final HttpClientManager httpClientManager;
+    private final AtomicReference<Exception> lastException = new AtomicReference<>();
+
+    private HttpProxyCheck(HttpClientManager httpClientManager) {
+        this.httpClientManager = httpClientManager;
+        httpClientManager.registerHttpThreadErrorListener((exception, requestThreadInstance, metadata, requestId) -> lastException.set(exception));
+    }
+
+    public static void main(String[] args) throws Exception {
+        StubTls stubTls = StubTls.generate();
+        TlsConfiguration tlsConfiguration = new TlsConfiguration();
+        tlsConfiguration.setSslContext(stubTls.createClientSslContext());
+        try (StubHttpServer firstTlsStubHttpServer = new StubHttpServer(0, 128, 0, stubTls.createServerSslContext());
+             StubHttpServer secondTlsStubHttpServer = new StubHttpServer(0, 128, 0, stubTls.createServerSslContext());
+             StubHttpServer plainStubHttpServer = new StubHttpServer(0, 128, 0);
+             StubHttpProxy stubHttpProxy = new StubHttpProxy(0, 0, USERNAME, PASSWORD);
+             HttpClientManager httpClientManager = new HttpClientManager(HttpProxyCheck.class, new ConnectionPoolConfiguration(), tlsConfiguration)) {
+            firstTlsStubHttpServer.start();
+            secondTlsStubHttpServer.start();
+            plainStubHttpServer.start();
+            stubHttpProxy.start();
+            HttpProxyCheck httpProxyCheck = new HttpProxyCheck(httpClientManager);
+
+            Proxy proxy = createHttpProxy(stubHttpProxy, USERNAME, PASSWORD);
+            String[] uris = {
+                    firstTlsStubHttpServer.getUri("/a"), firstTlsStubHttpServer.getUri("/b"), firstTlsStubHttpServer.getUri("/c"),
+                    secondTlsStubHttpServer.getUri("/a"), secondTlsStubHttpServer.getUri("/b"),
+                    plainStubHttpServer.getUri("/a"), plainStubHttpServer.getUri("/b")
+            };
+            for (String uri : uris) {
+                HttpRequestThread<Long> httpRequestThread = httpProxyCheck.execute(uri, proxy);
+                check(httpProxyCheck.lastException.get() == null && httpRequestThread.getResponseStatusCode() == 200, "a 200 for [" + uri + "], got status [" + httpRequestThread.getResponseStatusCode() + "] and " + httpProxyCheck.lastException.get());
+            }
+            ConnectionStatistics connectionStatistics = httpClientManager.getConnectionStatistics();
+            check(stubHttpProxy.getNumberOfAcceptedConnections() == 3, "3 proxy connections, got [" + stubHttpProxy.getNumberOfAcceptedConnections() + "]");
+            check(stubHttpProxy.getNumberOfAuthenticationChallenges() == 1, "a single 407, got [" + stubHttpProxy.getNumberOfAuthenticationChallenges() + "]");
+            check(connectionStatistics.getNumberOfTunnelEstablishments() == 2, "2 tunnel establishments, got [" + connectionStatistics.getNumberOfTunnelEstablishments() + "]");
+            check(connectionStatistics.getNumberOfTunnelReuses() == 3, "3 tunnel reuses, got [" + connectionStatistics.getNumberOfTunnelReuses() + "]");
+
+            // Another account, so neither the pooled tunnels nor the cached scheme of the first one apply
+            HttpRequestThread<Long> httpRequestThread = httpProxyCheck.execute(firstTlsStubHttpServer.getUri("/d"), createHttpProxy(stubHttpProxy, "mallory", PASSWORD));
+            check(httpRequestThread.getResponseStatusCode() == 407, "a 407 for unknown credentials, got status [" + httpRequestThread.getResponseStatusCode() + "] and " + httpProxyCheck.lastException.get());
+            System.out.println("HTTP proxy checks passed " + connectionStatistics);
+        }
+    }
+
+    private static Proxy createHttpProxy(StubHttpProxy stubHttpProxy, String username, String password) {
+        Proxy proxy = BenchmarkEnvironment.createProxy(stubHttpProxy.getHost(), stubHttpProxy.getPort(), ProxyType.HTTP);
+        proxy.setUsername(username);
+        proxy.setPassword(password);
+        return proxy;
+    }
+
+    private HttpRequestThread<Long> execute(String uri, Proxy proxy) {
+        lastException.set(null);
+        HttpRequestThread<Long> httpRequestThread = new HttpRequestThread<>();
+        httpRequestThread.setUri(uri);
+        httpRequestThread.setProxy(proxy);
+        httpRequestThread.setRetryWhenConnectionFail(false);
+        httpRequestThread.setHttpClientManager(httpClientManager);
+        httpRequestThread.buildRequest();
+        httpRequestThread.onThreadRunning(httpRequestThread, new HashMap<>());
+        return httpRequestThread;
+    }
+
+    private static void check(boolean condition, String expectation) {
+        if (!condition) {
+            throw new IllegalStateException("Expected " + expectation);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.AbstractStubServer;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpProxy;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubSocksProxy;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole submit, execute and dispatch path: launchHttpRequestThread through the SmartThreadPool, the
+ * pooled connection manager, an optional stub proxy and back to a registered raw response listener.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpRequestThreadBenchmark {
+
+    private static final long RESPONSE_TIMEOUT_IN_MILLISECONDS = 60000;
+
+    @Param({"0", "5"})
+    public long latencyInMilliseconds;
+
+    @Param({"1024", "65536"})
+    public int bodySizeInBytes;
+
+    @Param({"0", "0.01"})
+    public double failureRate;
+
+    @Param({"NONE", "HTTP", "SOCKS"})
+    public String proxyType;
+
+    private StubHttpServer stubHttpServer;
+    private AbstractStubServer stubProxy;
+    private HttpClientManager httpClientManager;
+    private ResponseAwaiter responseAwaiter;
+    private String uri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stubHttpServer = new StubHttpServer(latencyInMilliseconds, bodySizeInBytes, failureRate);
+        stubHttpServer.start();
+        uri = stubHttpServer.getUri("/benchmark");
+
+        httpClientManager = BenchmarkEnvironment.createHttpClientManager(this);
+        responseAwaiter = new ResponseAwaiter(httpClientManager);
+
+        if (!"NONE".equals(proxyType)) {
+            ProxyType type = ProxyType.valueOf(proxyType);
+            stubProxy = type == ProxyType.HTTP ? new StubHttpProxy(0, failureRate) : new StubSocksProxy(0, failureRate);
+            stubProxy.start();
+            BenchmarkEnvironment.loadProxies(httpClientManager.getProxyPool(), List.of(BenchmarkEnvironment.createProxy(stubProxy.getHost(), stubProxy.getPort(), type)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClientManager.close();
+        stubHttpServer.close();
+        if (stubProxy != null) {
+            stubProxy.close();
+        }
+    }
+
+    @Benchmark
+    public byte[] submitExecuteDispatch() {
+        HttpRequestThread<Long> httpRequestThread = new HttpRequestThread<>();
+        httpRequestThread.setUri(uri);
+        httpRequestThread.setRandomProxied(stubProxy != null);
+        return ResponseAwaiter.await(launch(httpRequestThread), RESPONSE_TIMEOUT_IN_MILLISECONDS);
+    }
+
+    private CompletableFuture<byte[]> launch(HttpRequestThread<Long> httpRequestThread) {
+        CompletableFuture<byte[]> pendingResponse = responseAwaiter.register(httpRequestThread);
+        httpClientManager.launchHttpRequestThread(httpRequestThread);
+        return pendingResponse;
+    }
+
+}
@@ -0,0 +1,34 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.core.HttpUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpUtilsBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySizeInBytes;
+
+    private String response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        response = new String(StubHttpServer.buildPayload(bodySizeInBytes), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String trim() throws IOException {
+        return HttpUtils.trim(response);
+    }
+
+}
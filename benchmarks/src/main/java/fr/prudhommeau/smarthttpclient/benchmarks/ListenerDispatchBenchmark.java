@@ -0,0 +1,87 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.ListenerDispatchConfiguration;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs onThreadRunning inline on the benchmark thread against a zero latency stub so that the cost of
+ * fanning a response out to the registered listeners dominates the measurement. Offloaded hands the fan out
+ * to the manager's listener dispatcher once the response is closed, the benchmark thread then only pays for
+ * the hand off, and waits whenever the bounded queue of pending dispatches is full.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListenerDispatchBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int numberOfListeners;
+
+    @Param({"RESPONSE", "DETAILED", "RAW"})
+    public String listenerKind;
+
+    @Param({"65536"})
+    public int bodySizeInBytes;
+
+    @Param({"false", "true"})
+    public boolean offloaded;
+
+    private StubHttpServer stubHttpServer;
+    private HttpClientManager httpClientManager;
+    private String uri;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+        stubHttpServer = new StubHttpServer(0, bodySizeInBytes, 0);
+        stubHttpServer.start();
+        uri = stubHttpServer.getUri("/dispatch");
+
+        httpClientManager = BenchmarkEnvironment.createHttpClientManager(this);
+        if (offloaded) {
+            httpClientManager.setListenerDispatchConfiguration(new ListenerDispatchConfiguration());
+        }
+        for (int i = 0; i < numberOfListeners; i++) {
+            switch (listenerKind) {
+                case "RESPONSE":
+                    httpClientManager.registerHttpThreadResponseListener((requestThreadInstance, response, metadata, requestId) -> blackhole.consume(response));
+                    break;
+                case "DETAILED":
+                    httpClientManager.registerHttpThreadDetailedResponseListener((requestThreadInstance, response, metadata, requestId) -> blackhole.consume(response));
+                    break;
+                case "RAW":
+                    httpClientManager.registerHttpThreadRawResponseListener((requestThreadInstance, response, metadata, requestId) -> blackhole.consume(response));
+                    break;
+                default:
+                    throw new IllegalArgumentException(listenerKind);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClientManager.close();
+        stubHttpServer.close();
+    }
+
+    @Benchmark
+    public HttpRequestThread<Long> executeAndDispatch() {
+        HttpRequestThread<Long> httpRequestThread = new HttpRequestThread<>();
+        httpRequestThread.setUri(uri);
+        httpRequestThread.setHttpClientManager(httpClientManager);
+        httpRequestThread.buildRequest();
+        httpRequestThread.onThreadRunning(httpRequestThread, new HashMap<>());
+        return httpRequestThread;
+    }
+
+}
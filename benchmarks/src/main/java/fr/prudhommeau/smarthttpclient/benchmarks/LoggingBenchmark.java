@@ -0,0 +1,66 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a disabled debug statement on the request path, the benchmarks module binds slf4j-nop so every
+ * level is off. The concatenated form is how call sites used to read, it builds the message and walks
+ * toString of the thread before the logger gets a say; the parameterized and guarded forms should cost
+ * next to nothing and allocate nothing, which -prof gc shows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggingBenchmark.class);
+
+    private HttpRequestThread<Long> httpRequestThread;
+    private Exception exception;
+    private int requestTimeoutInMilliseconds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        httpRequestThread = new HttpRequestThread<>();
+        httpRequestThread.setUri("http://127.0.0.1:8080/logging?query=value");
+        httpRequestThread.setRequestId(42L);
+        httpRequestThread.setProxy(BenchmarkEnvironment.createProxy("127.0.0.1", 3128, ProxyType.HTTP));
+        exception = new SocketTimeoutException("Read timed out");
+        requestTimeoutInMilliseconds = 30000;
+    }
+
+    @Benchmark
+    public void concatenated() {
+        logger.debug("An exception occurred : " + exception.getClass() + " - " + exception.getMessage() + " - " + httpRequestThread);
+    }
+
+    @Benchmark
+    public void parameterized() {
+        logger.debug("An exception occurred : {} - {}", exception, httpRequestThread);
+    }
+
+    @Benchmark
+    public void guarded() {
+        // Boxing the timeout would allocate even with the level off, hence the guard at such call sites
+        if (logger.isDebugEnabled()) {
+            logger.debug("Stopping {} because HTTP response exceeded {} milliseconds", httpRequestThread, requestTimeoutInMilliseconds);
+        }
+    }
+
+    @Benchmark
+    public void baseline(Blackhole blackhole) {
+        blackhole.consume(httpRequestThread);
+    }
+
+}
@@ -0,0 +1,91 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates 10k managers per iteration, launches a few requests on each against a slow loopback stub and
+ * closes it while they are still in flight, which is also the leak check for close. The iteration fails
+ * if any thread started on the client side outlives its manager, request threads included, or if the
+ * stub still holds connections the closed managers never gave back.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ManagerLifecycleBenchmark {
+
+    private static final int NUMBER_OF_MANAGERS = 10_000;
+    private static final int NUMBER_OF_REQUESTS_PER_MANAGER = 2;
+    private static final long STUB_LATENCY_IN_MILLISECONDS = 200;
+    private static final long CONNECTION_RELEASE_TIMEOUT_IN_MILLISECONDS = 5000;
+    private static final String STUB_HTTP_SERVER_THREAD_NAME_PREFIX = "StubHttpServer";
+
+    private StubHttpServer stubHttpServer;
+    private String uri;
+    private Set<Thread> baselineThreadSet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stubHttpServer = new StubHttpServer(STUB_LATENCY_IN_MILLISECONDS, 256, 0);
+        stubHttpServer.start();
+        uri = stubHttpServer.getUri("/lifecycle");
+    }
+
+    @Setup(Level.Iteration)
+    public void recordBaseline() {
+        baselineThreadSet = new HashSet<>(Thread.getAllStackTraces().keySet());
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkForLeaks() throws InterruptedException {
+        // The stub answers after its latency whatever happened to the client, only then does it see the socket closed
+        long deadlineInNanoseconds = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECTION_RELEASE_TIMEOUT_IN_MILLISECONDS);
+        while (stubHttpServer.getNumberOfOpenConnections() > 0 && System.nanoTime() < deadlineInNanoseconds) {
+            Thread.sleep(10);
+        }
+        if (stubHttpServer.getNumberOfOpenConnections() > 0) {
+            throw new IllegalStateException(stubHttpServer.getNumberOfOpenConnections() + " connections left open by closed managers");
+        }
+        int numberOfLeakedThreads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && !baselineThreadSet.contains(thread) && !thread.getName().startsWith(STUB_HTTP_SERVER_THREAD_NAME_PREFIX)) {
+                numberOfLeakedThreads++;
+            }
+        }
+        if (numberOfLeakedThreads > 0) {
+            throw new IllegalStateException(numberOfLeakedThreads + " threads outlived the managers that started them");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        stubHttpServer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_MANAGERS)
+    public void launchAndClose() {
+        for (int i = 0; i < NUMBER_OF_MANAGERS; i++) {
+            try (HttpClientManager httpClientManager = BenchmarkEnvironment.createHttpClientManager(this)) {
+                for (int j = 0; j < NUMBER_OF_REQUESTS_PER_MANAGER; j++) {
+                    HttpRequestThread<Long> httpRequestThread = new HttpRequestThread<>();
+                    httpRequestThread.setUri(uri);
+                    httpRequestThread.setIgnoreErrors(true);
+                    httpRequestThread.setRetryWhenConnectionFail(false);
+                    httpClientManager.launchHttpRequestThread(httpRequestThread);
+                }
+            }
+        }
+    }
+
+}
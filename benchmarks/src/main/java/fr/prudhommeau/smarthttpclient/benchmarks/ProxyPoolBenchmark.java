@@ -0,0 +1,60 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import fr.prudhommeau.smarthttpclient.core.ProxyPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProxyPool.pickNext under contention, run with the default thread count or override with -t.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ProxyPoolBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int numberOfProxies;
+
+    private ProxyPool proxyPool;
+    private List<Proxy> proxyList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        proxyPool = new ProxyPool();
+        proxyList = new ArrayList<>();
+        for (int i = 0; i < numberOfProxies; i++) {
+            proxyList.add(BenchmarkEnvironment.createProxy("10.0." + (i / 250) + "." + (i % 250 + 1), 3128, i % 2 == 0 ? ProxyType.HTTP : ProxyType.SOCKS));
+        }
+        BenchmarkEnvironment.loadProxies(proxyPool, proxyList);
+    }
+
+    @Benchmark
+    public Proxy pickNext() {
+        return proxyPool.pickNext(BenchmarkProxifiable.class);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(7)
+    public Proxy mixedPickNext() {
+        return proxyPool.pickNext(BenchmarkProxifiable.class);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedIncrementNumberOfConnectionFailures() {
+        proxyPool.incrementNumberOfConnectionFailures(proxyList.get(ThreadLocalRandom.current().nextInt(proxyList.size())), BenchmarkProxifiable.class);
+    }
+
+}
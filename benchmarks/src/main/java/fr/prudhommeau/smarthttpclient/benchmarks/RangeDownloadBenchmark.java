@@ -0,0 +1,65 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.RangeDownloadConfiguration;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads an 8 MiB resource from a loopback stub that paces every connection at 4 MiB/s, the way a
+ * bandwidth limited proxy would. One range is the plain single stream download, more ranges spread the
+ * resource over as many connections written in parallel into the same file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RangeDownloadBenchmark {
+
+    private static final int RESOURCE_SIZE_IN_BYTES = 8 * 1024 * 1024;
+    private static final long MAX_BYTES_PER_SECOND_PER_CONNECTION = 4 * 1024 * 1024;
+
+    @Param({"1", "4", "8"})
+    public int numberOfRanges;
+
+    private StubHttpServer stubHttpServer;
+    private HttpClientManager httpClientManager;
+    private RangeDownloadConfiguration rangeDownloadConfiguration;
+    private Path path;
+    private String uri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stubHttpServer = new StubHttpServer(0, RESOURCE_SIZE_IN_BYTES, 0);
+        stubHttpServer.setRangeSupported(true);
+        stubHttpServer.setMaxBytesPerSecondPerConnection(MAX_BYTES_PER_SECOND_PER_CONNECTION);
+        stubHttpServer.setEntityTag("\"v1\"");
+        stubHttpServer.start();
+        uri = stubHttpServer.getUri("/large");
+
+        httpClientManager = BenchmarkEnvironment.createHttpClientManager(this);
+        rangeDownloadConfiguration = new RangeDownloadConfiguration();
+        rangeDownloadConfiguration.setNumberOfRanges(numberOfRanges);
+        path = Files.createTempFile("range-download", ".bin");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClientManager.close();
+        stubHttpServer.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        return httpClientManager.downloadToFile(uri, path, rangeDownloadConfiguration);
+    }
+
+}
@@ -0,0 +1,55 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ResponseAwaiter {
+
+    private final Map<Long, CompletableFuture<byte[]>> pendingResponseMap = new ConcurrentHashMap<>();
+    private final AtomicLong requestIdSequence = new AtomicLong();
+
+    public ResponseAwaiter(HttpClientManager httpClientManager) {
+        httpClientManager.registerHttpThreadRawResponseListener((HttpRequestThread.OnHttpThreadRawResponseListener<Long>) (requestThreadInstance, response, metadata, requestId) -> {
+            CompletableFuture<byte[]> pendingResponse = pendingResponseMap.remove(requestId);
+            if (pendingResponse != null) {
+                pendingResponse.complete(response);
+            }
+        });
+        httpClientManager.registerHttpThreadErrorListener((HttpRequestThread.OnHttpThreadErrorListener<Long>) (exception, requestThreadInstance, metadata, requestId) -> {
+            if (!requestThreadInstance.isRetryWhenConnectionFail() && requestThreadInstance.getNumberOfRetries() > HttpClientManager.NUMBER_OF_RETRIES_WARNING_THRESHOLD) {
+                CompletableFuture<byte[]> pendingResponse = pendingResponseMap.remove(requestId);
+                if (pendingResponse != null) {
+                    pendingResponse.completeExceptionally(exception);
+                }
+            }
+        });
+    }
+
+    public CompletableFuture<byte[]> register(HttpRequestThread<Long> httpRequestThread) {
+        long requestId = requestIdSequence.incrementAndGet();
+        CompletableFuture<byte[]> pendingResponse = new CompletableFuture<>();
+        pendingResponseMap.put(requestId, pendingResponse);
+        httpRequestThread.setRequestId(requestId);
+        return pendingResponse;
+    }
+
+    public static byte[] await(CompletableFuture<byte[]> pendingResponse, long timeoutInMilliseconds) {
+        try {
+            return pendingResponse.get(timeoutInMilliseconds, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
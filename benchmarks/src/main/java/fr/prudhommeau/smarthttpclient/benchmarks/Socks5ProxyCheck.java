@@ -0,0 +1,143 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import fr.prudhommeau.smarthttpclient.bean.Socks5Configuration;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubSocksProxy;
+import fr.prudhommeau.smarthttpclient.core.ConnectionStatistics;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the SOCKS5 connector against a loopback StubSocksProxy requiring username/password credentials
+ * and exits with an exception on the first unexpected outcome: RFC 1929 authentication success and
+ * rejection, the target sent as a domain name only while remote DNS resolution is on, and pooled
+ * direct and SOCKS connections to the same route never leased for each other.
+ */
+public class Socks5ProxyCheck {
+
+    private static final String USERNAME = "alice";
+    private static final String PASSWORD = "secret";
+
+    private final StubHttpServer stubHttpServer;
+    private final StubSocksProxy stubSocksProxy;
+    private final HttpClientManager httpClientManager;
+    private final AtomicReference<Exception> lastException = new AtomicReference<>();
+    private final String uri;
+
+    private Socks5ProxyCheck(StubHttpServer stubHttpServer, StubSocksProxy stubSocksProxy, HttpClientManager httpClientManager) {
+        this.stubHttpServer = stubHttpServer;
+        this.stubSocksProxy = stubSocksProxy;
+        this.httpClientManager = httpClientManager;
+        // A host name, so that remote resolution has something to send
+        this.uri = stubHttpServer.getUri("/socks").replace(stubHttpServer.getHost(), "localhost");
+        httpClientManager.registerHttpThreadErrorListener((exception, requestThreadInstance, metadata, requestId) -> lastException.set(exception));
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (StubHttpServer stubHttpServer = new StubHttpServer(0, 128, 0);
+             StubSocksProxy stubSocksProxy = new StubSocksProxy(0, 0, USERNAME, PASSWORD);
+             HttpClientManager httpClientManager = BenchmarkEnvironment.createHttpClientManager(Socks5ProxyCheck.class)) {
+            stubHttpServer.start();
+            stubSocksProxy.start();
+            Socks5ProxyCheck socks5ProxyCheck = new Socks5ProxyCheck(stubHttpServer, stubSocksProxy, httpClientManager);
+            socks5ProxyCheck.checkAuthentication();
+            socks5ProxyCheck.checkRemoteDnsResolution();
+            socks5ProxyCheck.checkConnectionStates();
+            System.out.println("SOCKS5 checks passed " + httpClientManager.getConnectionStatistics());
+        }
+    }
+
+    private void checkAuthentication() {
+        ConnectionStatistics connectionStatistics = httpClientManager.getConnectionStatistics();
+        expectSuccess(execute(createSocksProxy(USERNAME, PASSWORD)), "valid credentials");
+        check(connectionStatistics.getNumberOfSocksHandshakes() == 1, "one SOCKS handshake after valid credentials, got " + connectionStatistics.getNumberOfSocksHandshakes());
+
+        // The password is not part of the connection state, a pooled connection of the same account would skip the handshake
+        closeIdleConnections();
+        expectFailure(execute(createSocksProxy(USERNAME, "wrong")), "rejected the credentials");
+        expectFailure(execute(createSocksProxy(null, null)), "accepted none of the offered authentication methods");
+        check(connectionStatistics.getNumberOfFailedSocksHandshakes() == 2, "two failed SOCKS handshakes, got " + connectionStatistics.getNumberOfFailedSocksHandshakes());
+    }
+
+    private void checkRemoteDnsResolution() {
+        Proxy proxy = createSocksProxy(USERNAME, PASSWORD);
+        Socks5Configuration socks5Configuration = new Socks5Configuration();
+        for (boolean remoteDnsResolution : new boolean[]{true, false}) {
+            socks5Configuration.setRemoteDnsResolution(remoteDnsResolution);
+            httpClientManager.setSocks5Configuration(socks5Configuration);
+            closeIdleConnections();
+            long numberOfDomainNameRequests = stubSocksProxy.getNumberOfDomainNameRequests();
+            expectSuccess(execute(proxy), "remote DNS resolution " + remoteDnsResolution);
+            long expectedNumberOfDomainNameRequests = remoteDnsResolution ? 1 : 0;
+            check(stubSocksProxy.getNumberOfDomainNameRequests() - numberOfDomainNameRequests == expectedNumberOfDomainNameRequests,
+                    "[" + expectedNumberOfDomainNameRequests + "] ATYP=DOMAIN request with remote DNS resolution " + remoteDnsResolution + ", got [" + (stubSocksProxy.getNumberOfDomainNameRequests() - numberOfDomainNameRequests) + "]");
+        }
+        httpClientManager.setSocks5Configuration(new Socks5Configuration());
+    }
+
+    // Direct and SOCKS connections to the stub share a route, only their connection state keeps them apart
+    private void checkConnectionStates() {
+        Proxy proxy = createSocksProxy(USERNAME, PASSWORD);
+        for (Proxy firstProxy : new Proxy[]{proxy, null}) {
+            Proxy secondProxy = firstProxy == null ? proxy : null;
+            closeIdleConnections();
+            expectSuccess(execute(firstProxy), "first request through " + firstProxy);
+            long numberOfServerConnections = stubHttpServer.getNumberOfAcceptedConnections();
+            long numberOfProxyConnections = stubSocksProxy.getNumberOfAcceptedConnections();
+            expectSuccess(execute(secondProxy), "second request through " + secondProxy);
+            check(stubHttpServer.getNumberOfAcceptedConnections() == numberOfServerConnections + 1, "a new server connection for [" + secondProxy + "] after [" + firstProxy + "]");
+            check(stubSocksProxy.getNumberOfAcceptedConnections() == numberOfProxyConnections + (secondProxy != null ? 1 : 0), "[" + secondProxy + "] reaching the SOCKS proxy only when it is one");
+
+            // Each state still reuses its own connection
+            numberOfServerConnections = stubHttpServer.getNumberOfAcceptedConnections();
+            expectSuccess(execute(firstProxy), "repeated request through " + firstProxy);
+            expectSuccess(execute(secondProxy), "repeated request through " + secondProxy);
+            check(stubHttpServer.getNumberOfAcceptedConnections() == numberOfServerConnections, "pooled connections reused by their own state");
+        }
+    }
+
+    private Proxy createSocksProxy(String username, String password) {
+        Proxy proxy = BenchmarkEnvironment.createProxy(stubSocksProxy.getHost(), stubSocksProxy.getPort(), ProxyType.SOCKS);
+        proxy.setUsername(username);
+        proxy.setPassword(password);
+        return proxy;
+    }
+
+    private HttpRequestThread<Long> execute(Proxy proxy) {
+        lastException.set(null);
+        HttpRequestThread<Long> httpRequestThread = new HttpRequestThread<>();
+        httpRequestThread.setUri(uri);
+        httpRequestThread.setProxy(proxy);
+        httpRequestThread.setRetryWhenConnectionFail(false);
+        httpRequestThread.setHttpClientManager(httpClientManager);
+        httpRequestThread.buildRequest();
+        httpRequestThread.onThreadRunning(httpRequestThread, new HashMap<>());
+        return httpRequestThread;
+    }
+
+    private void closeIdleConnections() {
+        httpClientManager.getConnectionManager().closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+
+    private void expectSuccess(HttpRequestThread<Long> httpRequestThread, String description) {
+        check(lastException.get() == null && httpRequestThread.getResponseStatusCode() == 200, description + " to succeed, got status [" + httpRequestThread.getResponseStatusCode() + "] and " + lastException.get());
+    }
+
+    private void expectFailure(HttpRequestThread<Long> httpRequestThread, String expectedMessage) {
+        Exception exception = lastException.get();
+        check(exception != null && String.valueOf(exception.getMessage()).contains(expectedMessage), "a failure with [" + expectedMessage + "], got status [" + httpRequestThread.getResponseStatusCode() + "] and " + exception);
+    }
+
+    private static void check(boolean condition, String expectation) {
+        if (!condition) {
+            throw new IllegalStateException("Expected " + expectation);
+        }
+    }
+
+}
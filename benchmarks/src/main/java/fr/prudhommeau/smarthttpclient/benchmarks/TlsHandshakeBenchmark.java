@@ -0,0 +1,114 @@
+package fr.prudhommeau.smarthttpclient.benchmarks;
+
+import fr.prudhommeau.smarthttpclient.bean.ConnectionPoolConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.TlsConfiguration;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubHttpServer;
+import fr.prudhommeau.smarthttpclient.benchmarks.stub.StubTls;
+import fr.prudhommeau.smarthttpclient.core.ConnectionStatistics;
+import fr.prudhommeau.smarthttpclient.core.HttpClientManager;
+import fr.prudhommeau.smarthttpclient.core.HttpRequestThread;
+import org.openjdk.jmh.annotations.*;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every invocation opens a fresh HTTPS connection to a loopback TLS stub. With resumption the client
+ * session cache of the shared SSLContext is kept, without it the cache is invalidated before each
+ * connection so every handshake is a full one. The auxiliary counters report the resumption rate and
+ * the average full and resumed handshake durations seen by the connection manager. The trial setup
+ * fails unless a second connection resumes the first session, or does not when resumption is off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TlsHandshakeBenchmark {
+
+    @Param({"true", "false"})
+    public boolean resumption;
+
+    @Param({"TLSv1.3", "TLSv1.2"})
+    public String protocol;
+
+    private StubHttpServer stubHttpServer;
+    private HttpClientManager httpClientManager;
+    private SSLSessionContext clientSessionContext;
+    private String uri;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HandshakeCounters {
+
+        public double tlsResumptionRate;
+        public double averageFullTlsHandshakeTimeInMilliseconds;
+        public double averageResumedTlsHandshakeTimeInMilliseconds;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, GeneralSecurityException {
+        System.setProperty("jdk.tls.client.protocols", protocol);
+        StubTls stubTls = StubTls.generate();
+        stubHttpServer = new StubHttpServer(0, 1024, 0, stubTls.createServerSslContext());
+        stubHttpServer.start();
+        uri = stubHttpServer.getUri("/tls");
+
+        TlsConfiguration tlsConfiguration = new TlsConfiguration();
+        tlsConfiguration.setSslContext(stubTls.createClientSslContext());
+        httpClientManager = new HttpClientManager(this, new ConnectionPoolConfiguration(), tlsConfiguration);
+        clientSessionContext = httpClientManager.getSslContext().getClientSessionContext();
+        checkResumption();
+    }
+
+    private void checkResumption() {
+        openFreshConnection();
+        openFreshConnection();
+        ConnectionStatistics connectionStatistics = httpClientManager.getConnectionStatistics();
+        long expectedNumberOfResumedTlsHandshakes = resumption ? 1 : 0;
+        if (connectionStatistics.getNumberOfResumedTlsHandshakes() != expectedNumberOfResumedTlsHandshakes || connectionStatistics.getNumberOfFullTlsHandshakes() != 2 - expectedNumberOfResumedTlsHandshakes) {
+            throw new IllegalStateException("Expected [" + expectedNumberOfResumedTlsHandshakes + "] resumed handshakes out of 2 connections with " + protocol + ", got [" + connectionStatistics.getNumberOfResumedTlsHandshakes() + "] resumed and [" + connectionStatistics.getNumberOfFullTlsHandshakes() + "] full");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClientManager.close();
+        stubHttpServer.close();
+    }
+
+    @Benchmark
+    public HttpRequestThread<Long> freshConnection(HandshakeCounters handshakeCounters) {
+        HttpRequestThread<Long> httpRequestThread = openFreshConnection();
+        ConnectionStatistics connectionStatistics = httpClientManager.getConnectionStatistics();
+        handshakeCounters.tlsResumptionRate = connectionStatistics.getTlsResumptionRate();
+        handshakeCounters.averageFullTlsHandshakeTimeInMilliseconds = connectionStatistics.getAverageFullTlsHandshakeTimeInMilliseconds();
+        handshakeCounters.averageResumedTlsHandshakeTimeInMilliseconds = connectionStatistics.getAverageResumedTlsHandshakeTimeInMilliseconds();
+        return httpRequestThread;
+    }
+
+    private HttpRequestThread<Long> openFreshConnection() {
+        httpClientManager.getConnectionManager().closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        if (!resumption) {
+            for (byte[] sessionId : Collections.list(clientSessionContext.getIds())) {
+                SSLSession sslSession = clientSessionContext.getSession(sessionId);
+                if (sslSession != null) {
+                    sslSession.invalidate();
+                }
+            }
+        }
+        HttpRequestThread<Long> httpRequestThread = new HttpRequestThread<>();
+        httpRequestThread.setUri(uri);
+        httpRequestThread.setHttpClientManager(httpClientManager);
+        httpRequestThread.buildRequest();
+        httpRequestThread.onThreadRunning(httpRequestThread, new HashMap<>());
+        return httpRequestThread;
+    }
+
+}
@@ -0,0 +1,117 @@
+package fr.prudhommeau.smarthttpclient.benchmarks.stub;
+
+import javax.net.ServerSocketFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public abstract class AbstractStubServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executorService;
+    private final AtomicLong numberOfAcceptedConnections = new AtomicLong();
+    private final AtomicLong numberOfOpenConnections = new AtomicLong();
+    private final AtomicLong numberOfInjectedFailures = new AtomicLong();
+    private final long latencyInMilliseconds;
+    private final double failureRate;
+    private volatile boolean closed;
+
+    protected AbstractStubServer(String name, long latencyInMilliseconds, double failureRate) throws IOException {
+        this(name, latencyInMilliseconds, failureRate, ServerSocketFactory.getDefault());
+    }
+
+    protected AbstractStubServer(String name, long latencyInMilliseconds, double failureRate, ServerSocketFactory serverSocketFactory) throws IOException {
+        this.latencyInMilliseconds = latencyInMilliseconds;
+        this.failureRate = failureRate;
+        this.serverSocket = serverSocketFactory.createServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.executorService = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + serverSocket.getLocalPort());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executorService.execute(() -> {
+            while (!closed) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    numberOfAcceptedConnections.incrementAndGet();
+                    numberOfOpenConnections.incrementAndGet();
+                    executorService.execute(() -> {
+                        try (socket) {
+                            handle(socket);
+                        } catch (IOException e) {
+                            // Client went away, nothing to report for a stub
+                        } finally {
+                            numberOfOpenConnections.decrementAndGet();
+                        }
+                    });
+                } catch (IOException e) {
+                    if (!closed) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        });
+    }
+
+    protected abstract void handle(Socket socket) throws IOException;
+
+    protected boolean shouldInjectFailure() {
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            numberOfInjectedFailures.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    protected void simulateLatency() {
+        if (latencyInMilliseconds > 0) {
+            try {
+                Thread.sleep(latencyInMilliseconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long getNumberOfAcceptedConnections() {
+        return numberOfAcceptedConnections.get();
+    }
+
+    // Connections the client has not closed yet, pooled ones included
+    public long getNumberOfOpenConnections() {
+        return numberOfOpenConnections.get();
+    }
+
+    public long getNumberOfInjectedFailures() {
+        return numberOfInjectedFailures.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        executorService.shutdownNow();
+    }
+
+}
@@ -0,0 +1,85 @@
+package fr.prudhommeau.smarthttpclient.benchmarks.stub;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StubHttpProxy extends AbstractStubServer {
+
+    private static final int CONNECT_TIMEOUT_IN_MILLISECONDS = 5000;
+    private static final String PROXY_AUTHORIZATION_HEADER_PREFIX = "\r\nproxy-authorization: basic ";
+    private static final byte[] PROXY_AUTHENTICATION_REQUIRED = ("HTTP/1.1 407 Proxy Authentication Required\r\n"
+            + "Proxy-Authenticate: Basic realm=\"stub\"\r\n"
+            + "Content-Length: 0\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+    private final String expectedCredentials;
+    private final AtomicLong numberOfAuthenticationChallenges = new AtomicLong();
+
+    public StubHttpProxy(long latencyInMilliseconds, double failureRate) throws IOException {
+        this(latencyInMilliseconds, failureRate, null, null);
+    }
+
+    // With credentials set, requests lacking the matching Basic header get a 407 and the connection stays open for the retry
+    public StubHttpProxy(long latencyInMilliseconds, double failureRate, String username, String password) throws IOException {
+        super("StubHttpProxy", latencyInMilliseconds, failureRate);
+        this.expectedCredentials = username != null ? Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    public long getNumberOfAuthenticationChallenges() {
+        return numberOfAuthenticationChallenges.get();
+    }
+
+    @Override
+    protected void handle(Socket socket) throws IOException {
+        InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+        String head = StubStreams.readHead(inputStream);
+        while (head != null && !isAuthorized(head)) {
+            numberOfAuthenticationChallenges.incrementAndGet();
+            socket.getOutputStream().write(PROXY_AUTHENTICATION_REQUIRED);
+            socket.getOutputStream().flush();
+            head = StubStreams.readHead(inputStream);
+        }
+        if (head == null || shouldInjectFailure()) {
+            return;
+        }
+        simulateLatency();
+        String[] requestLine = head.substring(0, head.indexOf("\r\n")).split(" ");
+        try (Socket upstream = new Socket()) {
+            upstream.setTcpNoDelay(true);
+            if ("CONNECT".equals(requestLine[0])) {
+                String[] authority = requestLine[1].split(":");
+                upstream.connect(new InetSocketAddress(authority[0], Integer.parseInt(authority[1])), CONNECT_TIMEOUT_IN_MILLISECONDS);
+                socket.getOutputStream().write("HTTP/1.1 200 Connection established\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                socket.getOutputStream().flush();
+                StubStreams.pipe(socket, inputStream, upstream, null);
+            } else {
+                // Absolute-form request line, origin servers must accept it so the head is forwarded as is
+                URI target = URI.create(requestLine[1]);
+                int port = target.getPort() == -1 ? 80 : target.getPort();
+                upstream.connect(new InetSocketAddress(target.getHost(), port), CONNECT_TIMEOUT_IN_MILLISECONDS);
+                StubStreams.pipe(socket, inputStream, upstream, head.getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+    }
+
+    private boolean isAuthorized(String head) {
+        if (expectedCredentials == null) {
+            return true;
+        }
+        String lowerCaseHead = head.toLowerCase();
+        int headerIndex = lowerCaseHead.indexOf(PROXY_AUTHORIZATION_HEADER_PREFIX);
+        if (headerIndex < 0) {
+            return false;
+        }
+        int valueIndex = headerIndex + PROXY_AUTHORIZATION_HEADER_PREFIX.length();
+        int valueEndIndex = head.indexOf("\r\n", valueIndex);
+        return head.substring(valueIndex, valueEndIndex < 0 ? head.length() : valueEndIndex).trim().equals(expectedCredentials);
+    }
+
+}
@@ -0,0 +1,152 @@
+package fr.prudhommeau.smarthttpclient.benchmarks.stub;
+
+import javax.net.ServerSocketFactory;
+import javax.net.ssl.SSLContext;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StubHttpServer extends AbstractStubServer {
+
+    private static final int THROTTLED_WRITE_SIZE_IN_BYTES = 16 * 1024;
+    private static final String PAYLOAD_PATTERN = "<div class=\"item\">\n\t  <span>  lorem   ipsum\tdolor  </span>\n</div>\n";
+
+    private final byte[] body;
+    private final boolean secured;
+
+    private final AtomicLong numberOfServedRequests = new AtomicLong();
+    private final AtomicLong numberOfRangeRequests = new AtomicLong();
+    private volatile boolean rangeSupported;
+    private volatile long maxBytesPerSecondPerConnection;
+    private volatile String entityTag;
+
+    public StubHttpServer(long latencyInMilliseconds, int bodySizeInBytes, double failureRate) throws IOException {
+        this(latencyInMilliseconds, bodySizeInBytes, failureRate, null);
+    }
+
+    public StubHttpServer(long latencyInMilliseconds, int bodySizeInBytes, double failureRate, SSLContext sslContext) throws IOException {
+        super("StubHttpServer", latencyInMilliseconds, failureRate, sslContext != null ? sslContext.getServerSocketFactory() : ServerSocketFactory.getDefault());
+        this.body = buildPayload(bodySizeInBytes);
+        this.secured = sslContext != null;
+    }
+
+    public static byte[] buildPayload(int sizeInBytes) {
+        byte[] pattern = PAYLOAD_PATTERN.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[sizeInBytes];
+        for (int i = 0; i < sizeInBytes; i++) {
+            payload[i] = pattern[i % pattern.length];
+        }
+        return payload;
+    }
+
+    @Override
+    protected void handle(Socket socket) throws IOException {
+        InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+        OutputStream outputStream = new BufferedOutputStream(socket.getOutputStream());
+        String head;
+        while ((head = StubStreams.readHead(inputStream)) != null) {
+            String contentLength = StubStreams.headerValue(head, "Content-Length");
+            if (contentLength != null) {
+                StubStreams.skip(inputStream, Long.parseLong(contentLength));
+            } else if ("chunked".equalsIgnoreCase(StubStreams.headerValue(head, "Transfer-Encoding"))) {
+                StubStreams.skipChunkedBody(inputStream);
+            }
+            if (shouldInjectFailure()) {
+                // Drop the connection without answering, the client sees a NoHttpResponseException
+                return;
+            }
+            simulateLatency();
+            boolean headRequest = head.startsWith("HEAD ");
+            boolean closeRequested = "close".equalsIgnoreCase(StubStreams.headerValue(head, "Connection"));
+            String currentEntityTag = entityTag;
+            String range = rangeSupported ? StubStreams.headerValue(head, "Range") : null;
+            String ifRange = StubStreams.headerValue(head, "If-Range");
+            if (range != null && ifRange != null && !ifRange.equals(currentEntityTag)) {
+                // The representation changed since the client pinned it, the whole of the current one goes out instead
+                range = null;
+            }
+            int firstBytePosition = 0;
+            int lastBytePosition = body.length - 1;
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bytePositions = range.substring("bytes=".length()).split("-");
+                firstBytePosition = Integer.parseInt(bytePositions[0].trim());
+                lastBytePosition = bytePositions.length > 1 && !bytePositions[1].isBlank() ? Math.min(lastBytePosition, Integer.parseInt(bytePositions[1].trim())) : lastBytePosition;
+                numberOfRangeRequests.incrementAndGet();
+            }
+            boolean partial = range != null;
+            String responseHead = (partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n")
+                    + "Content-Type: text/html; charset=UTF-8\r\n"
+                    + "Content-Length: " + (lastBytePosition - firstBytePosition + 1) + "\r\n"
+                    + (rangeSupported ? "Accept-Ranges: bytes\r\n" : "")
+                    + (currentEntityTag != null ? "ETag: " + currentEntityTag + "\r\n" : "")
+                    + (partial ? "Content-Range: bytes " + firstBytePosition + "-" + lastBytePosition + "/" + body.length + "\r\n" : "")
+                    + (closeRequested ? "Connection: close\r\n" : "Connection: keep-alive\r\n")
+                    + "\r\n";
+            outputStream.write(responseHead.getBytes(StandardCharsets.ISO_8859_1));
+            if (!headRequest) {
+                writeBody(outputStream, firstBytePosition, lastBytePosition + 1);
+            }
+            outputStream.flush();
+            numberOfServedRequests.incrementAndGet();
+            if (closeRequested) {
+                return;
+            }
+        }
+    }
+
+    // Paced per connection, as a bandwidth limited proxy would, so that parallel connections add up
+    private void writeBody(OutputStream outputStream, int fromIndex, int toIndex) throws IOException {
+        long currentMaxBytesPerSecondPerConnection = maxBytesPerSecondPerConnection;
+        if (currentMaxBytesPerSecondPerConnection <= 0) {
+            outputStream.write(body, fromIndex, toIndex - fromIndex);
+            return;
+        }
+        long startedOnInNanoseconds = System.nanoTime();
+        for (int index = fromIndex; index < toIndex; index += THROTTLED_WRITE_SIZE_IN_BYTES) {
+            int length = Math.min(THROTTLED_WRITE_SIZE_IN_BYTES, toIndex - index);
+            outputStream.write(body, index, length);
+            outputStream.flush();
+            long dueOnInNanoseconds = startedOnInNanoseconds + (index + length - fromIndex) * 1_000_000_000L / currentMaxBytesPerSecondPerConnection;
+            long aheadInNanoseconds = dueOnInNanoseconds - System.nanoTime();
+            if (aheadInNanoseconds > 0) {
+                try {
+                    Thread.sleep(aheadInNanoseconds / 1_000_000, (int) (aheadInNanoseconds % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public void setRangeSupported(boolean rangeSupported) {
+        this.rangeSupported = rangeSupported;
+    }
+
+    public void setMaxBytesPerSecondPerConnection(long maxBytesPerSecondPerConnection) {
+        this.maxBytesPerSecondPerConnection = maxBytesPerSecondPerConnection;
+    }
+
+    // Changing it mid download stands for a resource replaced on the server
+    public void setEntityTag(String entityTag) {
+        this.entityTag = entityTag;
+    }
+
+    public long getNumberOfRangeRequests() {
+        return numberOfRangeRequests.get();
+    }
+
+    public String getUri(String path) {
+        return (secured ? "https://" : "http://") + getHost() + ":" + getPort() + path;
+    }
+
+    public long getNumberOfServedRequests() {
+        return numberOfServedRequests.get();
+    }
+
+}
@@ -0,0 +1,141 @@
+package fr.prudhommeau.smarthttpclient.benchmarks.stub;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StubSocksProxy extends AbstractStubServer {
+
+    private static final int SOCKS_VERSION_5 = 0x05;
+    private static final int METHOD_NO_AUTHENTICATION = 0x00;
+    private static final int METHOD_USERNAME_PASSWORD = 0x02;
+    private static final int METHOD_NO_ACCEPTABLE = 0xFF;
+    private static final int USERNAME_PASSWORD_VERSION = 0x01;
+    private static final int AUTHENTICATION_SUCCEEDED = 0x00;
+    private static final int AUTHENTICATION_FAILED = 0x01;
+    private static final int COMMAND_CONNECT = 0x01;
+    private static final int ADDRESS_TYPE_IPV4 = 0x01;
+    private static final int ADDRESS_TYPE_DOMAIN_NAME = 0x03;
+    private static final int ADDRESS_TYPE_IPV6 = 0x04;
+    private static final int REPLY_SUCCEEDED = 0x00;
+    private static final int REPLY_GENERAL_FAILURE = 0x01;
+    private static final int REPLY_COMMAND_NOT_SUPPORTED = 0x07;
+    private static final int CONNECT_TIMEOUT_IN_MILLISECONDS = 5000;
+
+    private final String username;
+    private final String password;
+    private final AtomicLong numberOfDomainNameRequests = new AtomicLong();
+
+    public StubSocksProxy(long latencyInMilliseconds, double failureRate) throws IOException {
+        this(latencyInMilliseconds, failureRate, null, null);
+    }
+
+    // With credentials set, clients have to go through the username/password sub-negotiation
+    public StubSocksProxy(long latencyInMilliseconds, double failureRate, String username, String password) throws IOException {
+        super("StubSocksProxy", latencyInMilliseconds, failureRate);
+        this.username = username;
+        this.password = password;
+    }
+
+    public long getNumberOfDomainNameRequests() {
+        return numberOfDomainNameRequests.get();
+    }
+
+    @Override
+    protected void handle(Socket socket) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        OutputStream outputStream = socket.getOutputStream();
+        if (inputStream.readUnsignedByte() != SOCKS_VERSION_5) {
+            return;
+        }
+        int numberOfMethods = inputStream.readUnsignedByte();
+        int expectedMethod = username != null ? METHOD_USERNAME_PASSWORD : METHOD_NO_AUTHENTICATION;
+        boolean expectedMethodOffered = false;
+        for (int i = 0; i < numberOfMethods; i++) {
+            expectedMethodOffered |= inputStream.readUnsignedByte() == expectedMethod;
+        }
+        if (!expectedMethodOffered) {
+            outputStream.write(new byte[]{SOCKS_VERSION_5, (byte) METHOD_NO_ACCEPTABLE});
+            return;
+        }
+        outputStream.write(new byte[]{SOCKS_VERSION_5, (byte) expectedMethod});
+        outputStream.flush();
+        if (expectedMethod == METHOD_USERNAME_PASSWORD && !authenticate(inputStream, outputStream)) {
+            return;
+        }
+
+        inputStream.readUnsignedByte();
+        int command = inputStream.readUnsignedByte();
+        inputStream.readUnsignedByte();
+        InetSocketAddress target = readAddress(inputStream);
+        if (command != COMMAND_CONNECT) {
+            writeReply(outputStream, REPLY_COMMAND_NOT_SUPPORTED);
+            return;
+        }
+        if (shouldInjectFailure()) {
+            writeReply(outputStream, REPLY_GENERAL_FAILURE);
+            return;
+        }
+        simulateLatency();
+        try (Socket upstream = new Socket()) {
+            upstream.setTcpNoDelay(true);
+            upstream.connect(target, CONNECT_TIMEOUT_IN_MILLISECONDS);
+            writeReply(outputStream, REPLY_SUCCEEDED);
+            StubStreams.pipe(socket, inputStream, upstream, null);
+        }
+    }
+
+    private boolean authenticate(DataInputStream inputStream, OutputStream outputStream) throws IOException {
+        if (inputStream.readUnsignedByte() != USERNAME_PASSWORD_VERSION) {
+            return false;
+        }
+        byte[] receivedUsername = new byte[inputStream.readUnsignedByte()];
+        inputStream.readFully(receivedUsername);
+        byte[] receivedPassword = new byte[inputStream.readUnsignedByte()];
+        inputStream.readFully(receivedPassword);
+        boolean authenticated = username.equals(new String(receivedUsername, StandardCharsets.UTF_8)) && password.equals(new String(receivedPassword, StandardCharsets.UTF_8));
+        outputStream.write(new byte[]{USERNAME_PASSWORD_VERSION, (byte) (authenticated ? AUTHENTICATION_SUCCEEDED : AUTHENTICATION_FAILED)});
+        outputStream.flush();
+        return authenticated;
+    }
+
+    private InetSocketAddress readAddress(DataInputStream inputStream) throws IOException {
+        int addressType = inputStream.readUnsignedByte();
+        if (addressType == ADDRESS_TYPE_DOMAIN_NAME) {
+            numberOfDomainNameRequests.incrementAndGet();
+        }
+        InetAddress address;
+        switch (addressType) {
+            case ADDRESS_TYPE_IPV4:
+                byte[] ipv4 = new byte[4];
+                inputStream.readFully(ipv4);
+                address = InetAddress.getByAddress(ipv4);
+                break;
+            case ADDRESS_TYPE_IPV6:
+                byte[] ipv6 = new byte[16];
+                inputStream.readFully(ipv6);
+                address = InetAddress.getByAddress(ipv6);
+                break;
+            case ADDRESS_TYPE_DOMAIN_NAME:
+                byte[] domainName = new byte[inputStream.readUnsignedByte()];
+                inputStream.readFully(domainName);
+                address = InetAddress.getByName(new String(domainName, StandardCharsets.US_ASCII));
+                break;
+            default:
+                throw new IOException("Unsupported SOCKS address type [" + addressType + "]");
+        }
+        return new InetSocketAddress(address, inputStream.readUnsignedShort());
+    }
+
+    private static void writeReply(OutputStream outputStream, int reply) throws IOException {
+        outputStream.write(new byte[]{SOCKS_VERSION_5, (byte) reply, 0x00, ADDRESS_TYPE_IPV4, 0, 0, 0, 0, 0, 0});
+        outputStream.flush();
+    }
+
+}
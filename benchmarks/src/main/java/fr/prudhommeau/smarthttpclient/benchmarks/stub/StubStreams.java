@@ -0,0 +1,132 @@
+package fr.prudhommeau.smarthttpclient.benchmarks.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+public final class StubStreams {
+
+    private static final int MAXIMUM_HEAD_SIZE_IN_BYTES = 64 * 1024;
+
+    private StubStreams() {
+    }
+
+    public static String readHead(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(512);
+        int matched = 0;
+        while (matched < 4) {
+            int read = inputStream.read();
+            if (read == -1) {
+                return null;
+            }
+            head.write(read);
+            if (head.size() > MAXIMUM_HEAD_SIZE_IN_BYTES) {
+                throw new IOException("Request head exceeds " + MAXIMUM_HEAD_SIZE_IN_BYTES + " bytes");
+            }
+            if ((matched % 2 == 0 && read == '\r') || (matched % 2 == 1 && read == '\n')) {
+                matched++;
+            } else {
+                matched = read == '\r' ? 1 : 0;
+            }
+        }
+        return head.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    public static String headerValue(String head, String headerName) {
+        String prefix = headerName.toLowerCase(Locale.ROOT) + ":";
+        for (String line : head.split("\r\n")) {
+            if (line.toLowerCase(Locale.ROOT).startsWith(prefix)) {
+                return line.substring(prefix.length()).trim();
+            }
+        }
+        return null;
+    }
+
+    public static void skip(InputStream inputStream, long numberOfBytes) throws IOException {
+        long remaining = numberOfBytes;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                if (inputStream.read() == -1) {
+                    throw new IOException("Unexpected end of stream");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    public static void skipChunkedBody(InputStream inputStream) throws IOException {
+        while (true) {
+            String chunkSizeLine = readLine(inputStream);
+            int extensionIndex = chunkSizeLine.indexOf(';');
+            long chunkSize = Long.parseLong((extensionIndex >= 0 ? chunkSizeLine.substring(0, extensionIndex) : chunkSizeLine).trim(), 16);
+            if (chunkSize == 0) {
+                while (!readLine(inputStream).isEmpty()) {
+                    // Trailer fields are ignored
+                }
+                return;
+            }
+            skip(inputStream, chunkSize + 2);
+        }
+    }
+
+    private static String readLine(InputStream inputStream) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int read;
+        while ((read = inputStream.read()) != '\n') {
+            if (read == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            if (read != '\r') {
+                line.append((char) read);
+            }
+        }
+        return line.toString();
+    }
+
+    public static void pipe(Socket client, InputStream clientInputStream, Socket upstream, byte[] alreadyReadFromClient) throws IOException {
+        if (alreadyReadFromClient != null) {
+            upstream.getOutputStream().write(alreadyReadFromClient);
+            upstream.getOutputStream().flush();
+        }
+        Thread upstreamToClient = new Thread(() -> {
+            try {
+                copy(upstream.getInputStream(), client.getOutputStream());
+            } catch (IOException e) {
+                // Either side closed the tunnel
+            } finally {
+                closeQuietly(client);
+            }
+        }, "StubPipe-" + upstream.getPort());
+        upstreamToClient.setDaemon(true);
+        upstreamToClient.start();
+        try {
+            copy(clientInputStream, upstream.getOutputStream());
+        } finally {
+            closeQuietly(upstream);
+        }
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+            outputStream.flush();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+}
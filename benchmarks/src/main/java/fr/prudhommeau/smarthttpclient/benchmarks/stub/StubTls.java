@@ -0,0 +1,75 @@
+package fr.prudhommeau.smarthttpclient.benchmarks.stub;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Self-signed loopback certificate generated with the JDK keytool, so no key material is checked in.
+ */
+public final class StubTls {
+
+    private static final char[] STORE_PASSWORD = "changeit".toCharArray();
+
+    private final KeyStore keyStore;
+
+    private StubTls(KeyStore keyStore) {
+        this.keyStore = keyStore;
+    }
+
+    public static StubTls generate() throws IOException {
+        Path directory = Files.createTempDirectory("stub-tls");
+        Path keyStorePath = directory.resolve("stub.p12");
+        Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "stub", "-keyalg", "EC", "-groupname", "secp256r1",
+                "-dname", "CN=localhost", "-ext", "SAN=ip:127.0.0.1,dns:localhost", "-validity", "2",
+                "-storetype", "PKCS12", "-keystore", keyStorePath.toString(),
+                "-storepass", new String(STORE_PASSWORD), "-keypass", new String(STORE_PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        try {
+            process.getInputStream().readAllBytes();
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool exited with status " + process.exitValue());
+            }
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream inputStream = Files.newInputStream(keyStorePath)) {
+                keyStore.load(inputStream, STORE_PASSWORD);
+            }
+            return new StubTls(keyStore);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        } finally {
+            Files.deleteIfExists(keyStorePath);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    public SSLContext createServerSslContext() throws GeneralSecurityException {
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, STORE_PASSWORD);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    public SSLContext createClientSslContext() throws GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+
+}
@@ -0,0 +1,8 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+public enum BackpressurePolicy {
+    BLOCK,
+    FAIL_FAST,
+    DROP_OLDEST,
+    SIGNAL_DEMAND
+}
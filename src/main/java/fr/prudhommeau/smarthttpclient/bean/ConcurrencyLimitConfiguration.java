@@ -0,0 +1,93 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class ConcurrencyLimitConfiguration {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final double DEFAULT_RTT_TOLERANCE = 2.0;
+    public static final long DEFAULT_BASELINE_RTT_RESET_INTERVAL_IN_MILLISECONDS = 30000;
+    public static final long DEFAULT_IDLE_DESTINATION_TIMEOUT_IN_MILLISECONDS = 300000;
+
+    private int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private int minLimit = DEFAULT_MIN_LIMIT;
+    private int maxLimit = DEFAULT_MAX_LIMIT;
+    private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+    private double rttTolerance = DEFAULT_RTT_TOLERANCE;
+    private long baselineRttResetIntervalInMilliseconds = DEFAULT_BASELINE_RTT_RESET_INTERVAL_IN_MILLISECONDS;
+    private long idleDestinationTimeoutInMilliseconds = DEFAULT_IDLE_DESTINATION_TIMEOUT_IN_MILLISECONDS;
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    public void setRttTolerance(double rttTolerance) {
+        this.rttTolerance = rttTolerance;
+    }
+
+    public long getBaselineRttResetIntervalInMilliseconds() {
+        return baselineRttResetIntervalInMilliseconds;
+    }
+
+    public void setBaselineRttResetIntervalInMilliseconds(long baselineRttResetIntervalInMilliseconds) {
+        this.baselineRttResetIntervalInMilliseconds = baselineRttResetIntervalInMilliseconds;
+    }
+
+    public long getIdleDestinationTimeoutInMilliseconds() {
+        return idleDestinationTimeoutInMilliseconds;
+    }
+
+    public void setIdleDestinationTimeoutInMilliseconds(long idleDestinationTimeoutInMilliseconds) {
+        this.idleDestinationTimeoutInMilliseconds = idleDestinationTimeoutInMilliseconds;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("initialLimit", initialLimit)
+                .append("minLimit", minLimit)
+                .append("maxLimit", maxLimit)
+                .append("backoffRatio", backoffRatio)
+                .append("rttTolerance", rttTolerance)
+                .append("baselineRttResetIntervalInMilliseconds", baselineRttResetIntervalInMilliseconds)
+                .append("idleDestinationTimeoutInMilliseconds", idleDestinationTimeoutInMilliseconds)
+                .toString();
+    }
+
+}
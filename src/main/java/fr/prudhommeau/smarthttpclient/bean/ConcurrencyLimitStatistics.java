@@ -0,0 +1,95 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class ConcurrencyLimitStatistics {
+
+    private Object destination;
+    private int limit;
+    private int numberOfInFlightRequests;
+    private int numberOfParkedRequests;
+    private double baselineRttInMilliseconds;
+    private double smoothedRttInMilliseconds;
+    private long numberOfSuccesses;
+    private long numberOfDrops;
+
+    public Object getDestination() {
+        return destination;
+    }
+
+    public void setDestination(Object destination) {
+        this.destination = destination;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int getNumberOfInFlightRequests() {
+        return numberOfInFlightRequests;
+    }
+
+    public void setNumberOfInFlightRequests(int numberOfInFlightRequests) {
+        this.numberOfInFlightRequests = numberOfInFlightRequests;
+    }
+
+    public int getNumberOfParkedRequests() {
+        return numberOfParkedRequests;
+    }
+
+    public void setNumberOfParkedRequests(int numberOfParkedRequests) {
+        this.numberOfParkedRequests = numberOfParkedRequests;
+    }
+
+    public double getBaselineRttInMilliseconds() {
+        return baselineRttInMilliseconds;
+    }
+
+    public void setBaselineRttInMilliseconds(double baselineRttInMilliseconds) {
+        this.baselineRttInMilliseconds = baselineRttInMilliseconds;
+    }
+
+    public double getSmoothedRttInMilliseconds() {
+        return smoothedRttInMilliseconds;
+    }
+
+    public void setSmoothedRttInMilliseconds(double smoothedRttInMilliseconds) {
+        this.smoothedRttInMilliseconds = smoothedRttInMilliseconds;
+    }
+
+    public long getNumberOfSuccesses() {
+        return numberOfSuccesses;
+    }
+
+    public void setNumberOfSuccesses(long numberOfSuccesses) {
+        this.numberOfSuccesses = numberOfSuccesses;
+    }
+
+    public long getNumberOfDrops() {
+        return numberOfDrops;
+    }
+
+    public void setNumberOfDrops(long numberOfDrops) {
+        this.numberOfDrops = numberOfDrops;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("destination", destination)
+                .append("limit", limit)
+                .append("numberOfInFlightRequests", numberOfInFlightRequests)
+                .append("numberOfParkedRequests", numberOfParkedRequests)
+                .append("baselineRttInMilliseconds", baselineRttInMilliseconds)
+                .append("smoothedRttInMilliseconds", smoothedRttInMilliseconds)
+                .append("numberOfSuccesses", numberOfSuccesses)
+                .append("numberOfDrops", numberOfDrops)
+                .toString();
+    }
+
+}
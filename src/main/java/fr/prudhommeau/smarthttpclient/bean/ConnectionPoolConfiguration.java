@@ -0,0 +1,82 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class ConnectionPoolConfiguration {
+
+    public static final int DEFAULT_MAX_TOTAL = 512;
+    public static final int DEFAULT_MAX_PER_ROUTE = 32;
+    public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_IN_MILLISECONDS = 2000;
+    public static final long DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS = 120000;
+    public static final long DEFAULT_MAX_IDLE_TIME_IN_MILLISECONDS = 30000;
+    public static final long DEFAULT_EVICTION_PERIOD_IN_MILLISECONDS = 5000;
+
+    private int maxTotal = DEFAULT_MAX_TOTAL;
+    private int defaultMaxPerRoute = DEFAULT_MAX_PER_ROUTE;
+    private int validateAfterInactivityInMilliseconds = DEFAULT_VALIDATE_AFTER_INACTIVITY_IN_MILLISECONDS;
+    private long timeToLiveInMilliseconds = DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS;
+    private long maxIdleTimeInMilliseconds = DEFAULT_MAX_IDLE_TIME_IN_MILLISECONDS;
+    private long evictionPeriodInMilliseconds = DEFAULT_EVICTION_PERIOD_IN_MILLISECONDS;
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getDefaultMaxPerRoute() {
+        return defaultMaxPerRoute;
+    }
+
+    public void setDefaultMaxPerRoute(int defaultMaxPerRoute) {
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+    }
+
+    public int getValidateAfterInactivityInMilliseconds() {
+        return validateAfterInactivityInMilliseconds;
+    }
+
+    public void setValidateAfterInactivityInMilliseconds(int validateAfterInactivityInMilliseconds) {
+        this.validateAfterInactivityInMilliseconds = validateAfterInactivityInMilliseconds;
+    }
+
+    public long getTimeToLiveInMilliseconds() {
+        return timeToLiveInMilliseconds;
+    }
+
+    public void setTimeToLiveInMilliseconds(long timeToLiveInMilliseconds) {
+        this.timeToLiveInMilliseconds = timeToLiveInMilliseconds;
+    }
+
+    public long getMaxIdleTimeInMilliseconds() {
+        return maxIdleTimeInMilliseconds;
+    }
+
+    public void setMaxIdleTimeInMilliseconds(long maxIdleTimeInMilliseconds) {
+        this.maxIdleTimeInMilliseconds = maxIdleTimeInMilliseconds;
+    }
+
+    public long getEvictionPeriodInMilliseconds() {
+        return evictionPeriodInMilliseconds;
+    }
+
+    public void setEvictionPeriodInMilliseconds(long evictionPeriodInMilliseconds) {
+        this.evictionPeriodInMilliseconds = evictionPeriodInMilliseconds;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("maxTotal", maxTotal)
+                .append("defaultMaxPerRoute", defaultMaxPerRoute)
+                .append("validateAfterInactivityInMilliseconds", validateAfterInactivityInMilliseconds)
+                .append("timeToLiveInMilliseconds", timeToLiveInMilliseconds)
+                .append("maxIdleTimeInMilliseconds", maxIdleTimeInMilliseconds)
+                .append("evictionPeriodInMilliseconds", evictionPeriodInMilliseconds)
+                .toString();
+    }
+
+}
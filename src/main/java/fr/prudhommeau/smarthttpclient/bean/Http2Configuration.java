@@ -0,0 +1,48 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class Http2Configuration {
+
+    public static final int DEFAULT_MAX_CONCURRENT_STREAMS_PER_CONNECTION = 100;
+    public static final int DEFAULT_NUMBER_OF_CONNECTIONS_PER_ORIGIN = 2;
+
+    private int maxConcurrentStreamsPerConnection = DEFAULT_MAX_CONCURRENT_STREAMS_PER_CONNECTION;
+    private int numberOfConnectionsPerOrigin = DEFAULT_NUMBER_OF_CONNECTIONS_PER_ORIGIN;
+    private boolean cleartextEnabled;
+
+    public int getMaxConcurrentStreamsPerConnection() {
+        return maxConcurrentStreamsPerConnection;
+    }
+
+    public void setMaxConcurrentStreamsPerConnection(int maxConcurrentStreamsPerConnection) {
+        this.maxConcurrentStreamsPerConnection = maxConcurrentStreamsPerConnection;
+    }
+
+    public int getNumberOfConnectionsPerOrigin() {
+        return numberOfConnectionsPerOrigin;
+    }
+
+    public void setNumberOfConnectionsPerOrigin(int numberOfConnectionsPerOrigin) {
+        this.numberOfConnectionsPerOrigin = numberOfConnectionsPerOrigin;
+    }
+
+    public boolean isCleartextEnabled() {
+        return cleartextEnabled;
+    }
+
+    public void setCleartextEnabled(boolean cleartextEnabled) {
+        this.cleartextEnabled = cleartextEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("maxConcurrentStreamsPerConnection", maxConcurrentStreamsPerConnection)
+                .append("numberOfConnectionsPerOrigin", numberOfConnectionsPerOrigin)
+                .append("cleartextEnabled", cleartextEnabled)
+                .toString();
+    }
+
+}
@@ -2,5 +2,9 @@ package fr.prudhommeau.smarthttpclient.bean;
 
 public enum HttpMethod {
     GET,
-    POST
+    POST,
+    PUT,
+    PATCH,
+    DELETE,
+    HEAD
 }
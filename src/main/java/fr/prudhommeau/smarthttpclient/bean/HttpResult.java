@@ -0,0 +1,123 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.http.Header;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class HttpResult<T> {
+
+    private T requestId;
+    private String uri;
+    private Proxy proxy;
+    private int statusCode;
+    private List<Header> headers = new ArrayList<>();
+    private byte[] body;
+    // Set instead of the body when the request wrote its response to a sink
+    private ResponseSinkResult responseSinkResult;
+    private List<RedirectHop> redirectHopList = new ArrayList<>();
+    private Exception exception;
+    private Map<String, Object> metadata;
+
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+
+    public T getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(T requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public Proxy getProxy() {
+        return proxy;
+    }
+
+    public void setProxy(Proxy proxy) {
+        this.proxy = proxy;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public List<Header> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(List<Header> headers) {
+        this.headers = headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    public ResponseSinkResult getResponseSinkResult() {
+        return responseSinkResult;
+    }
+
+    public void setResponseSinkResult(ResponseSinkResult responseSinkResult) {
+        this.responseSinkResult = responseSinkResult;
+    }
+
+    public List<RedirectHop> getRedirectHopList() {
+        return redirectHopList;
+    }
+
+    public void setRedirectHopList(List<RedirectHop> redirectHopList) {
+        this.redirectHopList = redirectHopList;
+    }
+
+    public Exception getException() {
+        return exception;
+    }
+
+    public void setException(Exception exception) {
+        this.exception = exception;
+    }
+
+    public Map<String, Object> getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(Map<String, Object> metadata) {
+        this.metadata = metadata;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("requestId", requestId)
+                .append("uri", uri)
+                .append("proxy", proxy)
+                .append("statusCode", statusCode)
+                .append("bodyLength", body != null ? body.length : 0)
+                .append("responseSinkResult", responseSinkResult)
+                .append("redirectHopList", redirectHopList)
+                .append("exception", exception)
+                .toString();
+    }
+
+}
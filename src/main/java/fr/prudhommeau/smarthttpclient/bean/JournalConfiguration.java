@@ -0,0 +1,50 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.file.Path;
+
+public class JournalConfiguration {
+
+    public static final int DEFAULT_SEGMENT_SIZE_IN_BYTES = 64 * 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_IN_MILLISECONDS = 100;
+
+    private Path journalPath;
+    private int segmentSizeInBytes = DEFAULT_SEGMENT_SIZE_IN_BYTES;
+    private long flushIntervalInMilliseconds = DEFAULT_FLUSH_INTERVAL_IN_MILLISECONDS;
+
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    public void setJournalPath(Path journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    public int getSegmentSizeInBytes() {
+        return segmentSizeInBytes;
+    }
+
+    public void setSegmentSizeInBytes(int segmentSizeInBytes) {
+        this.segmentSizeInBytes = segmentSizeInBytes;
+    }
+
+    public long getFlushIntervalInMilliseconds() {
+        return flushIntervalInMilliseconds;
+    }
+
+    public void setFlushIntervalInMilliseconds(long flushIntervalInMilliseconds) {
+        this.flushIntervalInMilliseconds = flushIntervalInMilliseconds;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("journalPath", journalPath)
+                .append("segmentSizeInBytes", segmentSizeInBytes)
+                .append("flushIntervalInMilliseconds", flushIntervalInMilliseconds)
+                .toString();
+    }
+
+}
@@ -0,0 +1,49 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class ListenerDispatchConfiguration {
+
+    public static final int DEFAULT_NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_MAX_NUMBER_OF_PENDING_DISPATCHES = 1024;
+    public static final boolean DEFAULT_ORDERED_BY_REQUEST_ID = true;
+
+    private int numberOfThreads = DEFAULT_NUMBER_OF_THREADS;
+    private int maxNumberOfPendingDispatches = DEFAULT_MAX_NUMBER_OF_PENDING_DISPATCHES;
+    private boolean orderedByRequestId = DEFAULT_ORDERED_BY_REQUEST_ID;
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    public int getMaxNumberOfPendingDispatches() {
+        return maxNumberOfPendingDispatches;
+    }
+
+    public void setMaxNumberOfPendingDispatches(int maxNumberOfPendingDispatches) {
+        this.maxNumberOfPendingDispatches = maxNumberOfPendingDispatches;
+    }
+
+    public boolean isOrderedByRequestId() {
+        return orderedByRequestId;
+    }
+
+    public void setOrderedByRequestId(boolean orderedByRequestId) {
+        this.orderedByRequestId = orderedByRequestId;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("numberOfThreads", numberOfThreads)
+                .append("maxNumberOfPendingDispatches", maxNumberOfPendingDispatches)
+                .append("orderedByRequestId", orderedByRequestId)
+                .toString();
+    }
+
+}
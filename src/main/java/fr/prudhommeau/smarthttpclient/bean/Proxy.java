@@ -5,16 +5,36 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.http.HttpHost;
 
 import java.io.Serializable;
+import java.net.InetSocketAddress;
 import java.util.Objects;
 
 public class Proxy implements Serializable {
 
     private String ip;
-    private String port;
+    private int port;
     private ProxyType type;
+    private String username;
+    private String password;
+    // Resolved once and reused by every connection, so opening one never waits on DNS for the proxy itself
+    private transient volatile InetSocketAddress socketAddress;
+    private transient volatile HttpHost host;
 
     public HttpHost asHost() {
-        return new HttpHost(ip, Integer.parseInt(port));
+        HttpHost currentHost = host;
+        if (currentHost == null) {
+            currentHost = new HttpHost(ip, port);
+            host = currentHost;
+        }
+        return currentHost;
+    }
+
+    public InetSocketAddress asSocketAddress() {
+        InetSocketAddress currentSocketAddress = socketAddress;
+        if (currentSocketAddress == null || currentSocketAddress.isUnresolved()) {
+            currentSocketAddress = new InetSocketAddress(ip, port);
+            socketAddress = currentSocketAddress;
+        }
+        return currentSocketAddress;
     }
 
     public String getIp() {
@@ -23,14 +43,22 @@ public class Proxy implements Serializable {
 
     public void setIp(String ip) {
         this.ip = ip;
+        this.socketAddress = null;
+        this.host = null;
     }
 
-    public String getPort() {
+    public int getPort() {
         return port;
     }
 
-    public void setPort(String port) {
+    public void setPort(int port) {
         this.port = port;
+        this.socketAddress = null;
+        this.host = null;
+    }
+
+    public void setPort(String port) {
+        setPort(Integer.parseInt(port.trim()));
     }
 
     public ProxyType getType() {
@@ -41,6 +69,22 @@ public class Proxy implements Serializable {
         this.type = type;
     }
 
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -50,19 +94,25 @@ public class Proxy implements Serializable {
             return false;
         }
         Proxy proxy = (Proxy) o;
-        return Objects.equals(ip, proxy.ip) &&
-                Objects.equals(port, proxy.port) &&
-                type == proxy.type;
+        return port == proxy.port &&
+                Objects.equals(ip, proxy.ip) &&
+                type == proxy.type &&
+                Objects.equals(username, proxy.username);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(ip, port, type);
+        return Objects.hash(ip, port, type, username);
     }
 
     @Override
     public String toString() {
-        return ToStringBuilder.reflectionToString(this, ToStringStyle.JSON_STYLE);
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("ip", ip)
+                .append("port", port)
+                .append("type", type)
+                .append("username", username)
+                .toString();
     }
 
 }
@@ -0,0 +1,38 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class ProxyAffinityConfiguration {
+
+    public static final int DEFAULT_MAX_NUMBER_OF_REQUESTS = 100;
+    public static final long DEFAULT_TIME_WINDOW_IN_MILLISECONDS = 30000;
+
+    private int maxNumberOfRequests = DEFAULT_MAX_NUMBER_OF_REQUESTS;
+    private long timeWindowInMilliseconds = DEFAULT_TIME_WINDOW_IN_MILLISECONDS;
+
+    public int getMaxNumberOfRequests() {
+        return maxNumberOfRequests;
+    }
+
+    public void setMaxNumberOfRequests(int maxNumberOfRequests) {
+        this.maxNumberOfRequests = maxNumberOfRequests;
+    }
+
+    public long getTimeWindowInMilliseconds() {
+        return timeWindowInMilliseconds;
+    }
+
+    public void setTimeWindowInMilliseconds(long timeWindowInMilliseconds) {
+        this.timeWindowInMilliseconds = timeWindowInMilliseconds;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("maxNumberOfRequests", maxNumberOfRequests)
+                .append("timeWindowInMilliseconds", timeWindowInMilliseconds)
+                .toString();
+    }
+
+}
@@ -0,0 +1,39 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.file.Path;
+
+public class ProxyStatisticsSnapshotConfiguration {
+
+    public static final long DEFAULT_SNAPSHOT_PERIOD_IN_MILLISECONDS = 60000;
+
+    private Path snapshotPath;
+    private long snapshotPeriodInMilliseconds = DEFAULT_SNAPSHOT_PERIOD_IN_MILLISECONDS;
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public void setSnapshotPath(Path snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
+
+    public long getSnapshotPeriodInMilliseconds() {
+        return snapshotPeriodInMilliseconds;
+    }
+
+    public void setSnapshotPeriodInMilliseconds(long snapshotPeriodInMilliseconds) {
+        this.snapshotPeriodInMilliseconds = snapshotPeriodInMilliseconds;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("snapshotPath", snapshotPath)
+                .append("snapshotPeriodInMilliseconds", snapshotPeriodInMilliseconds)
+                .toString();
+    }
+
+}
@@ -0,0 +1,71 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class RangeDownloadConfiguration {
+
+    public static final int DEFAULT_NUMBER_OF_RANGES = 4;
+    public static final long DEFAULT_MIN_RANGE_SIZE_IN_BYTES = 1024 * 1024;
+    public static final int DEFAULT_MAX_NUMBER_OF_RETRIES_PER_RANGE = 3;
+
+    private int numberOfRanges = DEFAULT_NUMBER_OF_RANGES;
+    // Smaller resources are split into fewer ranges, down to a single stream
+    private long minRangeSizeInBytes = DEFAULT_MIN_RANGE_SIZE_IN_BYTES;
+    private int maxNumberOfRetriesPerRange = DEFAULT_MAX_NUMBER_OF_RETRIES_PER_RANGE;
+    // Every range, and every retry of a range, goes through its own proxy picked from the pool
+    private boolean randomProxied;
+
+    public int getNumberOfRanges() {
+        return numberOfRanges;
+    }
+
+    public void setNumberOfRanges(int numberOfRanges) {
+        if (numberOfRanges <= 0) {
+            throw new IllegalArgumentException("Number of ranges must be positive, got [" + numberOfRanges + "]");
+        }
+        this.numberOfRanges = numberOfRanges;
+    }
+
+    public long getMinRangeSizeInBytes() {
+        return minRangeSizeInBytes;
+    }
+
+    public void setMinRangeSizeInBytes(long minRangeSizeInBytes) {
+        if (minRangeSizeInBytes <= 0) {
+            throw new IllegalArgumentException("Min range size must be positive, got [" + minRangeSizeInBytes + "] bytes");
+        }
+        this.minRangeSizeInBytes = minRangeSizeInBytes;
+    }
+
+    public int getMaxNumberOfRetriesPerRange() {
+        return maxNumberOfRetriesPerRange;
+    }
+
+    public void setMaxNumberOfRetriesPerRange(int maxNumberOfRetriesPerRange) {
+        // 0 downloads every range once, with no retry
+        if (maxNumberOfRetriesPerRange < 0) {
+            throw new IllegalArgumentException("Max number of retries per range must not be negative, got [" + maxNumberOfRetriesPerRange + "]");
+        }
+        this.maxNumberOfRetriesPerRange = maxNumberOfRetriesPerRange;
+    }
+
+    public boolean isRandomProxied() {
+        return randomProxied;
+    }
+
+    public void setRandomProxied(boolean randomProxied) {
+        this.randomProxied = randomProxied;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("numberOfRanges", numberOfRanges)
+                .append("minRangeSizeInBytes", minRangeSizeInBytes)
+                .append("maxNumberOfRetriesPerRange", maxNumberOfRetriesPerRange)
+                .append("randomProxied", randomProxied)
+                .toString();
+    }
+
+}
@@ -0,0 +1,51 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class RedirectConfiguration {
+
+    public static final int DEFAULT_MAX_NUMBER_OF_REDIRECTS = 5;
+    public static final int DEFAULT_MAX_NUMBER_OF_CACHED_REDIRECTS = 1024;
+    public static final long DEFAULT_CACHED_REDIRECT_TIME_TO_LIVE_IN_MILLISECONDS = 3600000;
+
+    private int maxNumberOfRedirects = DEFAULT_MAX_NUMBER_OF_REDIRECTS;
+    // Permanent redirects (301 and 308) of GET and HEAD requests, least recently followed first out; 0 disables the cache
+    private int maxNumberOfCachedRedirects = DEFAULT_MAX_NUMBER_OF_CACHED_REDIRECTS;
+    // Permanent is only as permanent as the site wants it to be, a cached redirect is checked again after this long
+    private long cachedRedirectTimeToLiveInMilliseconds = DEFAULT_CACHED_REDIRECT_TIME_TO_LIVE_IN_MILLISECONDS;
+
+    public int getMaxNumberOfRedirects() {
+        return maxNumberOfRedirects;
+    }
+
+    public void setMaxNumberOfRedirects(int maxNumberOfRedirects) {
+        this.maxNumberOfRedirects = maxNumberOfRedirects;
+    }
+
+    public int getMaxNumberOfCachedRedirects() {
+        return maxNumberOfCachedRedirects;
+    }
+
+    public void setMaxNumberOfCachedRedirects(int maxNumberOfCachedRedirects) {
+        this.maxNumberOfCachedRedirects = maxNumberOfCachedRedirects;
+    }
+
+    public long getCachedRedirectTimeToLiveInMilliseconds() {
+        return cachedRedirectTimeToLiveInMilliseconds;
+    }
+
+    public void setCachedRedirectTimeToLiveInMilliseconds(long cachedRedirectTimeToLiveInMilliseconds) {
+        this.cachedRedirectTimeToLiveInMilliseconds = cachedRedirectTimeToLiveInMilliseconds;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("maxNumberOfRedirects", maxNumberOfRedirects)
+                .append("maxNumberOfCachedRedirects", maxNumberOfCachedRedirects)
+                .append("cachedRedirectTimeToLiveInMilliseconds", cachedRedirectTimeToLiveInMilliseconds)
+                .toString();
+    }
+
+}
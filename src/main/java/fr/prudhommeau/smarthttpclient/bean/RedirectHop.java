@@ -0,0 +1,66 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class RedirectHop {
+
+    private String uri;
+    private int statusCode;
+    private String location;
+    // From sending the request to receiving the status line, -1 when the hop came from the cache or the transport does not tell
+    private double durationInMilliseconds;
+    private boolean cached;
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public double getDurationInMilliseconds() {
+        return durationInMilliseconds;
+    }
+
+    public void setDurationInMilliseconds(double durationInMilliseconds) {
+        this.durationInMilliseconds = durationInMilliseconds;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("uri", uri)
+                .append("statusCode", statusCode)
+                .append("location", location)
+                .append("durationInMilliseconds", durationInMilliseconds)
+                .append("cached", cached)
+                .toString();
+    }
+
+}
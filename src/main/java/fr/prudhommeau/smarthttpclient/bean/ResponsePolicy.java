@@ -0,0 +1,64 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResponsePolicy {
+
+    public static final long DEFAULT_MAX_BODY_SIZE_IN_BYTES = Long.MAX_VALUE;
+    public static final long DEFAULT_MAX_DRAIN_SIZE_IN_BYTES = 64 * 1024;
+
+    private long maxBodySizeInBytes = DEFAULT_MAX_BODY_SIZE_IN_BYTES;
+    // Empty means any, entries are media types such as "application/json" or whole families such as "text/*"
+    private List<String> allowedContentTypeList = new ArrayList<>();
+    // Empty means any
+    private List<Integer> allowedStatusCodeList = new ArrayList<>();
+    // A rejected body up to this size is read to its end so that its connection can be reused, a larger one gets its connection closed
+    private long maxDrainSizeInBytes = DEFAULT_MAX_DRAIN_SIZE_IN_BYTES;
+
+    public long getMaxBodySizeInBytes() {
+        return maxBodySizeInBytes;
+    }
+
+    public void setMaxBodySizeInBytes(long maxBodySizeInBytes) {
+        this.maxBodySizeInBytes = maxBodySizeInBytes;
+    }
+
+    public List<String> getAllowedContentTypeList() {
+        return allowedContentTypeList;
+    }
+
+    public void setAllowedContentTypeList(List<String> allowedContentTypeList) {
+        this.allowedContentTypeList = allowedContentTypeList;
+    }
+
+    public List<Integer> getAllowedStatusCodeList() {
+        return allowedStatusCodeList;
+    }
+
+    public void setAllowedStatusCodeList(List<Integer> allowedStatusCodeList) {
+        this.allowedStatusCodeList = allowedStatusCodeList;
+    }
+
+    public long getMaxDrainSizeInBytes() {
+        return maxDrainSizeInBytes;
+    }
+
+    public void setMaxDrainSizeInBytes(long maxDrainSizeInBytes) {
+        this.maxDrainSizeInBytes = maxDrainSizeInBytes;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("maxBodySizeInBytes", maxBodySizeInBytes)
+                .append("allowedContentTypeList", allowedContentTypeList)
+                .append("allowedStatusCodeList", allowedStatusCodeList)
+                .append("maxDrainSizeInBytes", maxDrainSizeInBytes)
+                .toString();
+    }
+
+}
@@ -0,0 +1,64 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+public class ResponseSink {
+
+    public static final boolean DEFAULT_ATOMIC_RENAME = true;
+
+    // Either a path or a channel, the path wins when both are set
+    private Path path;
+    // Left open, its owner decides when to close it; a channel cannot be rewound so a partly written response is never retried
+    private WritableByteChannel channel;
+    // The body is written next to the path and renamed onto it once complete, readers never see a partial file
+    private boolean atomicRename = DEFAULT_ATOMIC_RENAME;
+    // Any MessageDigest algorithm such as "SHA-256", computed while the body streams, none when null
+    private String digestAlgorithm;
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void setPath(Path path) {
+        this.path = path;
+    }
+
+    public WritableByteChannel getChannel() {
+        return channel;
+    }
+
+    public void setChannel(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public boolean isAtomicRename() {
+        return atomicRename;
+    }
+
+    public void setAtomicRename(boolean atomicRename) {
+        this.atomicRename = atomicRename;
+    }
+
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    public void setDigestAlgorithm(String digestAlgorithm) {
+        this.digestAlgorithm = digestAlgorithm;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("path", path)
+                .append("channel", channel)
+                .append("atomicRename", atomicRename)
+                .append("digestAlgorithm", digestAlgorithm)
+                .toString();
+    }
+
+}
@@ -0,0 +1,49 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.file.Path;
+
+public class ResponseSinkResult {
+
+    // Null when the body went to a channel
+    private Path path;
+    private long sizeInBytes;
+    // Lower case hexadecimal, null when no digest algorithm was requested
+    private String digest;
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void setPath(Path path) {
+        this.path = path;
+    }
+
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public void setSizeInBytes(long sizeInBytes) {
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("path", path)
+                .append("sizeInBytes", sizeInBytes)
+                .append("digest", digest)
+                .toString();
+    }
+
+}
@@ -0,0 +1,71 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class SchedulingConfiguration {
+
+    public static final int DEFAULT_MAX_NUMBER_OF_IN_FLIGHT_REQUESTS = ConnectionPoolConfiguration.DEFAULT_MAX_TOTAL;
+    public static final int DEFAULT_QUEUE_WEIGHT = 1;
+    public static final long DEFAULT_PRIORITY_AGING_IN_MILLISECONDS = 1000;
+    public static final int DEFAULT_MAX_NUMBER_OF_SUBMITTED_REQUESTS = Integer.MAX_VALUE;
+    public static final BackpressurePolicy DEFAULT_BACKPRESSURE_POLICY = BackpressurePolicy.BLOCK;
+
+    private int maxNumberOfInFlightRequests = DEFAULT_MAX_NUMBER_OF_IN_FLIGHT_REQUESTS;
+    private int defaultQueueWeight = DEFAULT_QUEUE_WEIGHT;
+    private long priorityAgingInMilliseconds = DEFAULT_PRIORITY_AGING_IN_MILLISECONDS;
+    private int maxNumberOfSubmittedRequests = DEFAULT_MAX_NUMBER_OF_SUBMITTED_REQUESTS;
+    private BackpressurePolicy backpressurePolicy = DEFAULT_BACKPRESSURE_POLICY;
+
+    public int getMaxNumberOfInFlightRequests() {
+        return maxNumberOfInFlightRequests;
+    }
+
+    public void setMaxNumberOfInFlightRequests(int maxNumberOfInFlightRequests) {
+        this.maxNumberOfInFlightRequests = maxNumberOfInFlightRequests;
+    }
+
+    public int getDefaultQueueWeight() {
+        return defaultQueueWeight;
+    }
+
+    public void setDefaultQueueWeight(int defaultQueueWeight) {
+        this.defaultQueueWeight = defaultQueueWeight;
+    }
+
+    public long getPriorityAgingInMilliseconds() {
+        return priorityAgingInMilliseconds;
+    }
+
+    public void setPriorityAgingInMilliseconds(long priorityAgingInMilliseconds) {
+        this.priorityAgingInMilliseconds = priorityAgingInMilliseconds;
+    }
+
+    public int getMaxNumberOfSubmittedRequests() {
+        return maxNumberOfSubmittedRequests;
+    }
+
+    public void setMaxNumberOfSubmittedRequests(int maxNumberOfSubmittedRequests) {
+        this.maxNumberOfSubmittedRequests = maxNumberOfSubmittedRequests;
+    }
+
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    public void setBackpressurePolicy(BackpressurePolicy backpressurePolicy) {
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("maxNumberOfInFlightRequests", maxNumberOfInFlightRequests)
+                .append("defaultQueueWeight", defaultQueueWeight)
+                .append("priorityAgingInMilliseconds", priorityAgingInMilliseconds)
+                .append("maxNumberOfSubmittedRequests", maxNumberOfSubmittedRequests)
+                .append("backpressurePolicy", backpressurePolicy)
+                .toString();
+    }
+
+}
@@ -0,0 +1,75 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class SchedulingQueueStatistics {
+
+    private Object queueKey;
+    private int weight;
+    private int depth;
+    private long numberOfDispatchedRequests;
+    private double averageWaitTimeInMilliseconds;
+    private double maxWaitTimeInMilliseconds;
+
+    public Object getQueueKey() {
+        return queueKey;
+    }
+
+    public void setQueueKey(Object queueKey) {
+        this.queueKey = queueKey;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public long getNumberOfDispatchedRequests() {
+        return numberOfDispatchedRequests;
+    }
+
+    public void setNumberOfDispatchedRequests(long numberOfDispatchedRequests) {
+        this.numberOfDispatchedRequests = numberOfDispatchedRequests;
+    }
+
+    public double getAverageWaitTimeInMilliseconds() {
+        return averageWaitTimeInMilliseconds;
+    }
+
+    public void setAverageWaitTimeInMilliseconds(double averageWaitTimeInMilliseconds) {
+        this.averageWaitTimeInMilliseconds = averageWaitTimeInMilliseconds;
+    }
+
+    public double getMaxWaitTimeInMilliseconds() {
+        return maxWaitTimeInMilliseconds;
+    }
+
+    public void setMaxWaitTimeInMilliseconds(double maxWaitTimeInMilliseconds) {
+        this.maxWaitTimeInMilliseconds = maxWaitTimeInMilliseconds;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("queueKey", queueKey)
+                .append("weight", weight)
+                .append("depth", depth)
+                .append("numberOfDispatchedRequests", numberOfDispatchedRequests)
+                .append("averageWaitTimeInMilliseconds", averageWaitTimeInMilliseconds)
+                .append("maxWaitTimeInMilliseconds", maxWaitTimeInMilliseconds)
+                .toString();
+    }
+
+}
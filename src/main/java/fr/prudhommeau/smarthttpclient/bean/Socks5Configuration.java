@@ -0,0 +1,38 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public class Socks5Configuration {
+
+    public static final int DEFAULT_HANDSHAKE_TIMEOUT_IN_MILLISECONDS = 10000;
+    public static final boolean DEFAULT_REMOTE_DNS_RESOLUTION = true;
+
+    private int handshakeTimeoutInMilliseconds = DEFAULT_HANDSHAKE_TIMEOUT_IN_MILLISECONDS;
+    private boolean remoteDnsResolution = DEFAULT_REMOTE_DNS_RESOLUTION;
+
+    public int getHandshakeTimeoutInMilliseconds() {
+        return handshakeTimeoutInMilliseconds;
+    }
+
+    public void setHandshakeTimeoutInMilliseconds(int handshakeTimeoutInMilliseconds) {
+        this.handshakeTimeoutInMilliseconds = handshakeTimeoutInMilliseconds;
+    }
+
+    public boolean isRemoteDnsResolution() {
+        return remoteDnsResolution;
+    }
+
+    public void setRemoteDnsResolution(boolean remoteDnsResolution) {
+        this.remoteDnsResolution = remoteDnsResolution;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("handshakeTimeoutInMilliseconds", handshakeTimeoutInMilliseconds)
+                .append("remoteDnsResolution", remoteDnsResolution)
+                .toString();
+    }
+
+}
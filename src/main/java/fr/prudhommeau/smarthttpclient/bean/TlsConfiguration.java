@@ -0,0 +1,51 @@
+package fr.prudhommeau.smarthttpclient.bean;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import javax.net.ssl.SSLContext;
+
+public class TlsConfiguration {
+
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 20000;
+    public static final int DEFAULT_SESSION_TIMEOUT_IN_SECONDS = 3600;
+
+    private SSLContext sslContext;
+    // Only applied to the context the manager creates when none is given. Session tickets are a JVM wide JSSE switch, start the JVM with -Djdk.tls.client.enableSessionTicketExtension=false to turn them off
+    private int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+    private int sessionTimeoutInSeconds = DEFAULT_SESSION_TIMEOUT_IN_SECONDS;
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    public void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    public int getSessionTimeoutInSeconds() {
+        return sessionTimeoutInSeconds;
+    }
+
+    public void setSessionTimeoutInSeconds(int sessionTimeoutInSeconds) {
+        this.sessionTimeoutInSeconds = sessionTimeoutInSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("sslContext", sslContext != null ? sslContext.getProtocol() : null)
+                .append("sessionCacheSize", sessionCacheSize)
+                .append("sessionTimeoutInSeconds", sessionTimeoutInSeconds)
+                .toString();
+    }
+
+}
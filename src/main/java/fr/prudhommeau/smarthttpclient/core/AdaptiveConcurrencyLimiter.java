@@ -0,0 +1,222 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.ConcurrencyLimitConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.ConcurrencyLimitStatistics;
+import org.apache.http.HttpStatus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_TERM_RTT_SMOOTHING_FACTOR = 0.1;
+    private static final int HTTP_STATUS_TOO_MANY_REQUESTS = 429;
+
+    private final Map<Object, DestinationLimit> destinationLimitMap = new ConcurrentHashMap<>();
+    private final ConcurrencyLimitConfiguration concurrencyLimitConfiguration;
+
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitConfiguration concurrencyLimitConfiguration) {
+        this.concurrencyLimitConfiguration = concurrencyLimitConfiguration;
+    }
+
+    private static class DestinationLimit {
+
+        private final ArrayDeque<HttpRequestThread> parkedHttpRequestThreadQueue = new ArrayDeque<>();
+        private final Object destination;
+        private double limit;
+        private int numberOfInFlightRequests;
+        private double baselineRttInNanoseconds;
+        private long baselineRttResetOnInNanoseconds;
+        private double smoothedRttInNanoseconds;
+        private long numberOfSuccesses;
+        private long numberOfDrops;
+        private long lastUsedOnInNanoseconds = System.nanoTime();
+        private long lastDecreasedOnInNanoseconds = System.nanoTime();
+        private boolean evicted;
+
+        private DestinationLimit(Object destination, int initialLimit) {
+            this.destination = destination;
+            this.limit = initialLimit;
+        }
+
+        private boolean hasCapacity() {
+            return numberOfInFlightRequests < (int) limit;
+        }
+    }
+
+    public static class Permit {
+
+        private final AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+        private final DestinationLimit destinationLimit;
+        private final AtomicBoolean sampled = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long startedOnInNanoseconds = System.nanoTime();
+
+        private Permit(AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter, DestinationLimit destinationLimit) {
+            this.adaptiveConcurrencyLimiter = adaptiveConcurrencyLimiter;
+            this.destinationLimit = destinationLimit;
+        }
+
+        void markStarted() {
+            startedOnInNanoseconds = System.nanoTime();
+        }
+
+        // Throttling answers are the clearest overload signal an origin or a proxy can give
+        void onResponse(int statusCode) {
+            if (statusCode == HTTP_STATUS_TOO_MANY_REQUESTS || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                onDropped();
+            } else if (sampled.compareAndSet(false, true)) {
+                adaptiveConcurrencyLimiter.onSuccess(destinationLimit, System.nanoTime() - startedOnInNanoseconds);
+            }
+        }
+
+        void onDropped() {
+            if (sampled.compareAndSet(false, true)) {
+                adaptiveConcurrencyLimiter.onDropped(destinationLimit);
+            }
+        }
+
+        HttpRequestThread release() {
+            if (!released.compareAndSet(false, true)) {
+                return null;
+            }
+            return adaptiveConcurrencyLimiter.release(destinationLimit);
+        }
+    }
+
+    public static Object resolveDestination(HttpRequestThread httpRequestThread) {
+        if (httpRequestThread.getProxy() != null) {
+            return httpRequestThread.getProxy();
+        }
+        return HttpUtils.uriToHttpHost(httpRequestThread.getUri());
+    }
+
+    public boolean hasCapacity(Object destination) {
+        DestinationLimit destinationLimit = destinationLimitMap.get(destination);
+        if (destinationLimit == null) {
+            return true;
+        }
+        synchronized (destinationLimit) {
+            return destinationLimit.hasCapacity();
+        }
+    }
+
+    public boolean acquireOrPark(HttpRequestThread httpRequestThread) {
+        Object destination = resolveDestination(httpRequestThread);
+        while (true) {
+            DestinationLimit destinationLimit = destinationLimitMap.computeIfAbsent(destination, key -> new DestinationLimit(key, concurrencyLimitConfiguration.getInitialLimit()));
+            synchronized (destinationLimit) {
+                if (destinationLimit.evicted) {
+                    continue;
+                }
+                destinationLimit.lastUsedOnInNanoseconds = System.nanoTime();
+                if (destinationLimit.hasCapacity()) {
+                    destinationLimit.numberOfInFlightRequests++;
+                    httpRequestThread.setConcurrencyLimitPermit(new Permit(this, destinationLimit));
+                    return true;
+                }
+                destinationLimit.parkedHttpRequestThreadQueue.addLast(httpRequestThread);
+                return false;
+            }
+        }
+    }
+
+    private HttpRequestThread release(DestinationLimit destinationLimit) {
+        synchronized (destinationLimit) {
+            destinationLimit.numberOfInFlightRequests--;
+            destinationLimit.lastUsedOnInNanoseconds = System.nanoTime();
+            if (!destinationLimit.parkedHttpRequestThreadQueue.isEmpty() && destinationLimit.hasCapacity()) {
+                HttpRequestThread httpRequestThread = destinationLimit.parkedHttpRequestThreadQueue.pollFirst();
+                destinationLimit.numberOfInFlightRequests++;
+                httpRequestThread.setConcurrencyLimitPermit(new Permit(this, destinationLimit));
+                return httpRequestThread;
+            }
+            return null;
+        }
+    }
+
+    private void onSuccess(DestinationLimit destinationLimit, long rttInNanoseconds) {
+        long now = System.nanoTime();
+        synchronized (destinationLimit) {
+            destinationLimit.numberOfSuccesses++;
+            destinationLimit.smoothedRttInNanoseconds = destinationLimit.smoothedRttInNanoseconds == 0
+                    ? rttInNanoseconds
+                    : destinationLimit.smoothedRttInNanoseconds * (1 - SHORT_TERM_RTT_SMOOTHING_FACTOR) + rttInNanoseconds * SHORT_TERM_RTT_SMOOTHING_FACTOR;
+            // The baseline is the lowest smoothed round trip, so a single cached or tiny response cannot drag it down. It is
+            // measured again from scratch every interval, otherwise a route that got slower for good would look congested forever
+            boolean baselineRttExpired = now - destinationLimit.baselineRttResetOnInNanoseconds > TimeUnit.MILLISECONDS.toNanos(concurrencyLimitConfiguration.getBaselineRttResetIntervalInMilliseconds());
+            if (destinationLimit.baselineRttInNanoseconds == 0 || baselineRttExpired) {
+                destinationLimit.baselineRttInNanoseconds = destinationLimit.smoothedRttInNanoseconds;
+                destinationLimit.baselineRttResetOnInNanoseconds = now;
+            } else if (destinationLimit.smoothedRttInNanoseconds < destinationLimit.baselineRttInNanoseconds) {
+                destinationLimit.baselineRttInNanoseconds = destinationLimit.smoothedRttInNanoseconds;
+            }
+            if (destinationLimit.smoothedRttInNanoseconds > destinationLimit.baselineRttInNanoseconds * concurrencyLimitConfiguration.getRttTolerance()) {
+                // Latency grows while throughput does not, the destination is past its knee
+                decrease(destinationLimit, now);
+            } else if (destinationLimit.numberOfInFlightRequests * 2 >= destinationLimit.limit) {
+                // One more permit per round trip's worth of successes, as TCP congestion avoidance does
+                destinationLimit.limit = Math.min(concurrencyLimitConfiguration.getMaxLimit(), destinationLimit.limit + 1 / destinationLimit.limit);
+            }
+        }
+    }
+
+    private void onDropped(DestinationLimit destinationLimit) {
+        synchronized (destinationLimit) {
+            destinationLimit.numberOfDrops++;
+            decrease(destinationLimit, System.nanoTime());
+        }
+    }
+
+    // Backing off at most once per round trip keeps a single congestion episode from collapsing the limit
+    private void decrease(DestinationLimit destinationLimit, long now) {
+        if (now - destinationLimit.lastDecreasedOnInNanoseconds < destinationLimit.smoothedRttInNanoseconds) {
+            return;
+        }
+        destinationLimit.limit = Math.max(concurrencyLimitConfiguration.getMinLimit(), destinationLimit.limit * concurrencyLimitConfiguration.getBackoffRatio());
+        destinationLimit.lastDecreasedOnInNanoseconds = now;
+    }
+
+    public void purgeIdleDestinations() {
+        long now = System.nanoTime();
+        long idleTimeoutInNanoseconds = TimeUnit.MILLISECONDS.toNanos(concurrencyLimitConfiguration.getIdleDestinationTimeoutInMilliseconds());
+        for (DestinationLimit destinationLimit : destinationLimitMap.values()) {
+            synchronized (destinationLimit) {
+                if (destinationLimit.numberOfInFlightRequests == 0 && destinationLimit.parkedHttpRequestThreadQueue.isEmpty()
+                        && now - destinationLimit.lastUsedOnInNanoseconds > idleTimeoutInNanoseconds) {
+                    destinationLimit.evicted = true;
+                    destinationLimitMap.remove(destinationLimit.destination, destinationLimit);
+                }
+            }
+        }
+    }
+
+    public List<ConcurrencyLimitStatistics> getStatisticsList() {
+        List<ConcurrencyLimitStatistics> concurrencyLimitStatisticsList = new ArrayList<>();
+        for (DestinationLimit destinationLimit : destinationLimitMap.values()) {
+            synchronized (destinationLimit) {
+                ConcurrencyLimitStatistics concurrencyLimitStatistics = new ConcurrencyLimitStatistics();
+                concurrencyLimitStatistics.setDestination(destinationLimit.destination);
+                concurrencyLimitStatistics.setLimit((int) destinationLimit.limit);
+                concurrencyLimitStatistics.setNumberOfInFlightRequests(destinationLimit.numberOfInFlightRequests);
+                concurrencyLimitStatistics.setNumberOfParkedRequests(destinationLimit.parkedHttpRequestThreadQueue.size());
+                concurrencyLimitStatistics.setBaselineRttInMilliseconds(destinationLimit.baselineRttInNanoseconds / 1e6);
+                concurrencyLimitStatistics.setSmoothedRttInMilliseconds(destinationLimit.smoothedRttInNanoseconds / 1e6);
+                concurrencyLimitStatistics.setNumberOfSuccesses(destinationLimit.numberOfSuccesses);
+                concurrencyLimitStatistics.setNumberOfDrops(destinationLimit.numberOfDrops);
+                concurrencyLimitStatisticsList.add(concurrencyLimitStatistics);
+            }
+        }
+        return concurrencyLimitStatisticsList;
+    }
+
+    public ConcurrencyLimitConfiguration getConcurrencyLimitConfiguration() {
+        return concurrencyLimitConfiguration;
+    }
+
+}
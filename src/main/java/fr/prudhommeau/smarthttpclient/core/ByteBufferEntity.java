@@ -0,0 +1,82 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+public class ByteBufferEntity extends AbstractHttpEntity {
+
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    private final ByteBuffer byteBuffer;
+
+    public ByteBufferEntity(ByteBuffer byteBuffer, ContentType contentType) {
+        // Reading through a duplicate leaves the caller position untouched so the entity can be replayed
+        this.byteBuffer = byteBuffer.duplicate();
+        if (contentType != null) {
+            setContentType(contentType.toString());
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return byteBuffer.remaining();
+    }
+
+    @Override
+    public InputStream getContent() {
+        ByteBuffer source = byteBuffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, source.remaining());
+                source.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return source.remaining();
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        ByteBuffer source = byteBuffer.duplicate();
+        if (source.hasArray()) {
+            outputStream.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+        } else {
+            byte[] buffer = new byte[Math.min(OUTPUT_BUFFER_SIZE, source.remaining())];
+            while (source.hasRemaining()) {
+                int count = Math.min(buffer.length, source.remaining());
+                source.get(buffer, 0, count);
+                outputStream.write(buffer, 0, count);
+            }
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+}
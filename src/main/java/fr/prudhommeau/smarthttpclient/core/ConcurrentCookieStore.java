@@ -0,0 +1,194 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.cookie.Cookie;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConcurrentCookieStore implements CookieStore, Serializable {
+
+    private static final String DEFAULT_COOKIE_PATH = "/";
+
+    // Domain without leading dot -> cookie path -> cookie name -> cookie, which is the identity BasicCookieStore replaces on.
+    // Buckets are only created and dropped while holding their domain entry, so a pruned bucket never swallows a concurrent put
+    private final Map<String, Map<String, Map<String, Cookie>>> domainToPathToCookieMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        if (cookie == null) {
+            return;
+        }
+        String domain = normalizeDomain(cookie.getDomain());
+        String path = cookie.getPath() != null ? cookie.getPath() : DEFAULT_COOKIE_PATH;
+        if (cookie.isExpired(new Date())) {
+            // An already expired cookie is how servers delete the one they set earlier
+            domainToPathToCookieMap.computeIfPresent(domain, (domainKey, pathToCookieMap) -> {
+                pathToCookieMap.computeIfPresent(path, (pathKey, nameToCookieMap) -> {
+                    nameToCookieMap.remove(cookie.getName());
+                    return nameToCookieMap.isEmpty() ? null : nameToCookieMap;
+                });
+                return pathToCookieMap.isEmpty() ? null : pathToCookieMap;
+            });
+            return;
+        }
+        domainToPathToCookieMap.compute(domain, (domainKey, pathToCookieMap) -> {
+            Map<String, Map<String, Cookie>> currentPathToCookieMap = pathToCookieMap != null ? pathToCookieMap : new ConcurrentHashMap<>();
+            currentPathToCookieMap.computeIfAbsent(path, key -> new ConcurrentHashMap<>()).put(cookie.getName(), cookie);
+            return currentPathToCookieMap;
+        });
+    }
+
+    @Override
+    public List<Cookie> getCookies() {
+        List<Cookie> cookieList = new ArrayList<>();
+        for (Map<String, Map<String, Cookie>> pathToCookieMap : domainToPathToCookieMap.values()) {
+            for (Map<String, Cookie> nameToCookieMap : pathToCookieMap.values()) {
+                cookieList.addAll(nameToCookieMap.values());
+            }
+        }
+        return cookieList;
+    }
+
+    // Only walks the buckets of the host and of its parent domains, so the cost does not grow with the other sites of a crawl
+    public List<Cookie> getCookies(String host, String path) {
+        List<Cookie> cookieList = new ArrayList<>();
+        if (host == null) {
+            return cookieList;
+        }
+        Date now = new Date();
+        String domain = normalizeDomain(host);
+        while (true) {
+            Map<String, Map<String, Cookie>> pathToCookieMap = domainToPathToCookieMap.get(domain);
+            if (pathToCookieMap != null) {
+                for (Map.Entry<String, Map<String, Cookie>> pathEntry : pathToCookieMap.entrySet()) {
+                    if (path != null && !path.startsWith(pathEntry.getKey())) {
+                        continue;
+                    }
+                    for (Cookie cookie : pathEntry.getValue().values()) {
+                        if (cookie.isExpired(now)) {
+                            pathEntry.getValue().remove(cookie.getName(), cookie);
+                        } else {
+                            cookieList.add(cookie);
+                        }
+                    }
+                }
+            }
+            int dotIndex = domain.indexOf('.');
+            if (dotIndex < 0) {
+                return cookieList;
+            }
+            domain = domain.substring(dotIndex + 1);
+        }
+    }
+
+    @Override
+    public boolean clearExpired(Date date) {
+        if (date == null) {
+            return false;
+        }
+        AtomicBoolean removed = new AtomicBoolean();
+        for (String domain : domainToPathToCookieMap.keySet()) {
+            domainToPathToCookieMap.computeIfPresent(domain, (domainKey, pathToCookieMap) -> {
+                pathToCookieMap.values().removeIf(nameToCookieMap -> {
+                    if (nameToCookieMap.values().removeIf(cookie -> cookie.isExpired(date))) {
+                        removed.set(true);
+                    }
+                    return nameToCookieMap.isEmpty();
+                });
+                return pathToCookieMap.isEmpty() ? null : pathToCookieMap;
+            });
+        }
+        return removed.get();
+    }
+
+    @Override
+    public void clear() {
+        domainToPathToCookieMap.clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, Map<String, Cookie>> pathToCookieMap : domainToPathToCookieMap.values()) {
+            for (Map<String, Cookie> nameToCookieMap : pathToCookieMap.values()) {
+                size += nameToCookieMap.size();
+            }
+        }
+        return size;
+    }
+
+    // HttpClient asks its cookie store for every cookie and matches them one by one. This view answers with the cookies of the
+    // host being requested only, which the client sets in the context before running its interceptors, redirects included
+    public CookieStore viewFor(HttpClientContext context) {
+        return new ContextBoundCookieStore(this, context);
+    }
+
+    private static String normalizeDomain(String domain) {
+        if (domain == null) {
+            return "";
+        }
+        String normalizedDomain = domain.toLowerCase(Locale.ROOT);
+        return normalizedDomain.startsWith(".") ? normalizedDomain.substring(1) : normalizedDomain;
+    }
+
+    private static class ContextBoundCookieStore implements CookieStore {
+
+        private final ConcurrentCookieStore concurrentCookieStore;
+        private final HttpClientContext context;
+
+        private ContextBoundCookieStore(ConcurrentCookieStore concurrentCookieStore, HttpClientContext context) {
+            this.concurrentCookieStore = concurrentCookieStore;
+            this.context = context;
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+            concurrentCookieStore.addCookie(cookie);
+        }
+
+        @Override
+        public List<Cookie> getCookies() {
+            HttpHost targetHost = context.getTargetHost();
+            if (targetHost == null) {
+                return concurrentCookieStore.getCookies();
+            }
+            return concurrentCookieStore.getCookies(targetHost.getHostName(), resolveRequestPath(context.getRequest()));
+        }
+
+        @Override
+        public boolean clearExpired(Date date) {
+            return concurrentCookieStore.clearExpired(date);
+        }
+
+        @Override
+        public void clear() {
+            concurrentCookieStore.clear();
+        }
+
+        private static String resolveRequestPath(HttpRequest request) {
+            if (request == null) {
+                return null;
+            }
+            try {
+                URI uri = request instanceof HttpUriRequest ? ((HttpUriRequest) request).getURI() : new URI(request.getRequestLine().getUri());
+                return uri.getPath() == null || uri.getPath().isEmpty() ? DEFAULT_COOKIE_PATH : uri.getPath();
+            } catch (URISyntaxException e) {
+                // Let the cookie spec match paths on its own
+                return null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConnectionStatistics {
+
+    private final AtomicLong numberOfCreatedConnections = new AtomicLong();
+    private final AtomicLong numberOfExecutedRequests = new AtomicLong();
+    private final AtomicLong numberOfFullTlsHandshakes = new AtomicLong();
+    private final AtomicLong numberOfResumedTlsHandshakes = new AtomicLong();
+    private final AtomicLong fullTlsHandshakeTimeInNanoseconds = new AtomicLong();
+    private final AtomicLong resumedTlsHandshakeTimeInNanoseconds = new AtomicLong();
+    private final AtomicLong numberOfTunnelEstablishments = new AtomicLong();
+    private final AtomicLong numberOfTunnelledRequests = new AtomicLong();
+    private final AtomicLong numberOfSocksHandshakes = new AtomicLong();
+    private final AtomicLong numberOfFailedSocksHandshakes = new AtomicLong();
+    private final AtomicLong socksConnectTimeInNanoseconds = new AtomicLong();
+    private final AtomicLong socksNegotiationTimeInNanoseconds = new AtomicLong();
+    private final AtomicLong socksAuthenticationTimeInNanoseconds = new AtomicLong();
+    private final AtomicLong socksCommandTimeInNanoseconds = new AtomicLong();
+
+    void incrementNumberOfCreatedConnections() {
+        numberOfCreatedConnections.incrementAndGet();
+    }
+
+    void incrementNumberOfExecutedRequests() {
+        numberOfExecutedRequests.incrementAndGet();
+    }
+
+    void recordTlsHandshake(long durationInNanoseconds, boolean resumed) {
+        if (resumed) {
+            numberOfResumedTlsHandshakes.incrementAndGet();
+            resumedTlsHandshakeTimeInNanoseconds.addAndGet(durationInNanoseconds);
+        } else {
+            numberOfFullTlsHandshakes.incrementAndGet();
+            fullTlsHandshakeTimeInNanoseconds.addAndGet(durationInNanoseconds);
+        }
+    }
+
+    void incrementNumberOfTunnelEstablishments() {
+        numberOfTunnelEstablishments.incrementAndGet();
+    }
+
+    void incrementNumberOfTunnelledRequests() {
+        numberOfTunnelledRequests.incrementAndGet();
+    }
+
+    void recordSocksHandshake(long connectTimeInNanoseconds, long negotiationTimeInNanoseconds, long authenticationTimeInNanoseconds, long commandTimeInNanoseconds) {
+        numberOfSocksHandshakes.incrementAndGet();
+        socksConnectTimeInNanoseconds.addAndGet(connectTimeInNanoseconds);
+        socksNegotiationTimeInNanoseconds.addAndGet(negotiationTimeInNanoseconds);
+        socksAuthenticationTimeInNanoseconds.addAndGet(authenticationTimeInNanoseconds);
+        socksCommandTimeInNanoseconds.addAndGet(commandTimeInNanoseconds);
+    }
+
+    void incrementNumberOfFailedSocksHandshakes() {
+        numberOfFailedSocksHandshakes.incrementAndGet();
+    }
+
+    public long getNumberOfCreatedConnections() {
+        return numberOfCreatedConnections.get();
+    }
+
+    public long getNumberOfExecutedRequests() {
+        return numberOfExecutedRequests.get();
+    }
+
+    public double getConnectionReuseRatio() {
+        long executedRequests = numberOfExecutedRequests.get();
+        if (executedRequests == 0) {
+            return 0;
+        }
+        return Math.max(0, 1 - (double) numberOfCreatedConnections.get() / executedRequests);
+    }
+
+    public long getNumberOfTlsHandshakes() {
+        return numberOfFullTlsHandshakes.get() + numberOfResumedTlsHandshakes.get();
+    }
+
+    public long getNumberOfFullTlsHandshakes() {
+        return numberOfFullTlsHandshakes.get();
+    }
+
+    public long getNumberOfResumedTlsHandshakes() {
+        return numberOfResumedTlsHandshakes.get();
+    }
+
+    public double getTlsResumptionRate() {
+        long tlsHandshakes = getNumberOfTlsHandshakes();
+        return tlsHandshakes == 0 ? 0 : (double) numberOfResumedTlsHandshakes.get() / tlsHandshakes;
+    }
+
+    public double getAverageFullTlsHandshakeTimeInMilliseconds() {
+        long fullTlsHandshakes = numberOfFullTlsHandshakes.get();
+        return fullTlsHandshakes == 0 ? 0 : fullTlsHandshakeTimeInNanoseconds.get() / 1_000_000.0 / fullTlsHandshakes;
+    }
+
+    public double getAverageResumedTlsHandshakeTimeInMilliseconds() {
+        long resumedTlsHandshakes = numberOfResumedTlsHandshakes.get();
+        return resumedTlsHandshakes == 0 ? 0 : resumedTlsHandshakeTimeInNanoseconds.get() / 1_000_000.0 / resumedTlsHandshakes;
+    }
+
+    public long getNumberOfTunnelEstablishments() {
+        return numberOfTunnelEstablishments.get();
+    }
+
+    public long getNumberOfTunnelledRequests() {
+        return numberOfTunnelledRequests.get();
+    }
+
+    // Every tunnelled request that did not pay for its own CONNECT rode an already established tunnel
+    public long getNumberOfTunnelReuses() {
+        return Math.max(0, numberOfTunnelledRequests.get() - numberOfTunnelEstablishments.get());
+    }
+
+    public long getNumberOfSocksHandshakes() {
+        return numberOfSocksHandshakes.get();
+    }
+
+    public long getNumberOfFailedSocksHandshakes() {
+        return numberOfFailedSocksHandshakes.get();
+    }
+
+    public double getAverageSocksConnectTimeInMilliseconds() {
+        return averageSocksHandshakePhaseTimeInMilliseconds(socksConnectTimeInNanoseconds);
+    }
+
+    public double getAverageSocksNegotiationTimeInMilliseconds() {
+        return averageSocksHandshakePhaseTimeInMilliseconds(socksNegotiationTimeInNanoseconds);
+    }
+
+    public double getAverageSocksAuthenticationTimeInMilliseconds() {
+        return averageSocksHandshakePhaseTimeInMilliseconds(socksAuthenticationTimeInNanoseconds);
+    }
+
+    public double getAverageSocksCommandTimeInMilliseconds() {
+        return averageSocksHandshakePhaseTimeInMilliseconds(socksCommandTimeInNanoseconds);
+    }
+
+    private double averageSocksHandshakePhaseTimeInMilliseconds(AtomicLong phaseTimeInNanoseconds) {
+        long socksHandshakes = numberOfSocksHandshakes.get();
+        return socksHandshakes == 0 ? 0 : phaseTimeInNanoseconds.get() / 1_000_000.0 / socksHandshakes;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("numberOfCreatedConnections", getNumberOfCreatedConnections())
+                .append("numberOfExecutedRequests", getNumberOfExecutedRequests())
+                .append("connectionReuseRatio", getConnectionReuseRatio())
+                .append("numberOfTlsHandshakes", getNumberOfTlsHandshakes())
+                .append("tlsResumptionRate", getTlsResumptionRate())
+                .append("averageFullTlsHandshakeTimeInMilliseconds", getAverageFullTlsHandshakeTimeInMilliseconds())
+                .append("averageResumedTlsHandshakeTimeInMilliseconds", getAverageResumedTlsHandshakeTimeInMilliseconds())
+                .append("numberOfTunnelEstablishments", getNumberOfTunnelEstablishments())
+                .append("numberOfTunnelReuses", getNumberOfTunnelReuses())
+                .append("numberOfSocksHandshakes", getNumberOfSocksHandshakes())
+                .append("numberOfFailedSocksHandshakes", getNumberOfFailedSocksHandshakes())
+                .append("averageSocksConnectTimeInMilliseconds", getAverageSocksConnectTimeInMilliseconds())
+                .append("averageSocksNegotiationTimeInMilliseconds", getAverageSocksNegotiationTimeInMilliseconds())
+                .append("averageSocksAuthenticationTimeInMilliseconds", getAverageSocksAuthenticationTimeInMilliseconds())
+                .append("averageSocksCommandTimeInMilliseconds", getAverageSocksCommandTimeInMilliseconds())
+                .toString();
+    }
+
+}
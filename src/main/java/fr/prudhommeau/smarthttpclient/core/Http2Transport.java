@@ -0,0 +1,351 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.commons.StringUtils;
+import fr.prudhommeau.smarthttpclient.bean.Http2Configuration;
+import fr.prudhommeau.smarthttpclient.bean.HttpMethod;
+import fr.prudhommeau.smarthttpclient.bean.ResponsePolicy;
+import org.apache.http.Header;
+import org.apache.http.client.CookieStore;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.CookieOrigin;
+import org.apache.http.cookie.CookieSpec;
+import org.apache.http.cookie.MalformedCookieException;
+import org.apache.http.impl.cookie.RFC6265CookieSpecProvider;
+import org.apache.http.message.BasicHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Http2Transport {
+
+    private static final Logger logger = LoggerFactory.getLogger(Http2Transport.class);
+    private static final String HTTP2_TRANSPORT_THREAD_NAME = "Http2Transport";
+    private static final Set<String> RESTRICTED_HEADER_NAME_SET = Set.of("connection", "content-length", "date", "expect", "from", "host", "upgrade", "via", "warning");
+    private static final CookieSpec COOKIE_SPEC = new RFC6265CookieSpecProvider().create(null);
+
+    private final Http2Configuration http2Configuration;
+    private final ExecutorService executorService;
+    private final HttpClient[] httpClients;
+    private final Map<String, Semaphore[]> originToStreamPermitsMap = new ConcurrentHashMap<>();
+    private final Set<String> http11OnlyOriginSet = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger laneSequence = new AtomicInteger();
+    private final AtomicLong numberOfHttp2Responses = new AtomicLong();
+    private final AtomicLong numberOfHttp11Fallbacks = new AtomicLong();
+
+    public Http2Transport(Http2Configuration http2Configuration, SSLContext sslContext, int connectTimeoutInMilliseconds) {
+        this.http2Configuration = http2Configuration;
+        this.executorService = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, HTTP2_TRANSPORT_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Each client keeps its own connection per origin, so the number of clients is the number of multiplexed connections.
+        // Redirects are followed by the request thread, one exchange per hop
+        this.httpClients = new HttpClient[http2Configuration.getNumberOfConnectionsPerOrigin()];
+        for (int i = 0; i < httpClients.length; i++) {
+            httpClients[i] = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .sslContext(sslContext)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutInMilliseconds))
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .executor(executorService)
+                    .build();
+        }
+    }
+
+    public boolean isEligible(HttpRequestThread httpRequestThread) {
+        if (httpRequestThread.getProxy() != null || httpRequestThread.getForcedProtocolFamily() != null || !StringUtils.isNullOrEmpty(httpRequestThread.getForcedRemoteAddress())) {
+            return false;
+        }
+        // Bodies come back whole from this transport, a sink streams them over HTTP/1.1 instead
+        if (httpRequestThread.getResponseSink() != null) {
+            return false;
+        }
+        URI uri = URI.create(httpRequestThread.getRequestUri());
+        if ("http".equalsIgnoreCase(uri.getScheme()) && !http2Configuration.isCleartextEnabled()) {
+            return false;
+        }
+        return !http11OnlyOriginSet.contains(toOrigin(uri));
+    }
+
+    public HttpResponse<byte[]> send(HttpRequestThread httpRequestThread, URI uri, HttpMethod method, int timeoutInMilliseconds) throws IOException, InterruptedException {
+        String origin = toOrigin(uri);
+        HttpRequest httpRequest = buildRequest(httpRequestThread, uri, method, timeoutInMilliseconds);
+
+        Semaphore[] streamPermits = originToStreamPermitsMap.computeIfAbsent(origin, key -> {
+            Semaphore[] permits = new Semaphore[httpClients.length];
+            for (int i = 0; i < permits.length; i++) {
+                permits[i] = new Semaphore(http2Configuration.getMaxConcurrentStreamsPerConnection());
+            }
+            return permits;
+        });
+        int firstLane = Math.floorMod(laneSequence.getAndIncrement(), httpClients.length);
+        int lane = -1;
+        for (int i = 0; i < httpClients.length && lane == -1; i++) {
+            int candidateLane = (firstLane + i) % httpClients.length;
+            if (streamPermits[candidateLane].tryAcquire()) {
+                lane = candidateLane;
+            }
+        }
+        if (lane == -1) {
+            if (!streamPermits[firstLane].tryAcquire(timeoutInMilliseconds, TimeUnit.MILLISECONDS)) {
+                throw new ConnectionPoolTimeoutException("Timeout waiting for an HTTP/2 stream to [" + origin + "]");
+            }
+            lane = firstLane;
+        }
+
+        // Asynchronous so that the request thread can cancel the exchange, the stream permit goes back as soon as it is over either way
+        Semaphore streamPermit = streamPermits[lane];
+        CompletableFuture<HttpResponse<byte[]>> responseFuture;
+        try {
+            responseFuture = httpClients[lane].sendAsync(httpRequest, buildBodyHandler(httpRequestThread.resolveResponsePolicy()));
+        } catch (RuntimeException e) {
+            streamPermit.release();
+            throw e;
+        }
+        responseFuture.whenComplete((httpResponse, throwable) -> streamPermit.release());
+        httpRequestThread.setHttp2ResponseFuture(responseFuture);
+        HttpResponse<byte[]> httpResponse;
+        try {
+            httpResponse = responseFuture.get();
+        } catch (InterruptedException e) {
+            responseFuture.cancel(true);
+            throw e;
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("HTTP/2 exchange with [" + origin + "] cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            httpRequestThread.setHttp2ResponseFuture(null);
+        }
+        if (httpResponse.version() == HttpClient.Version.HTTP_2) {
+            numberOfHttp2Responses.incrementAndGet();
+        } else if (http11OnlyOriginSet.add(origin)) {
+            numberOfHttp11Fallbacks.incrementAndGet();
+            logger.debug("Origin [{}] does not speak HTTP/2, next requests will use the HTTP/1.1 connection pool", origin);
+        }
+        if (!httpRequestThread.isIgnoreCookies()) {
+            storeCookies(httpRequestThread.getCookieStore(), httpResponse, uri);
+        }
+        return httpResponse;
+    }
+
+    private HttpRequest buildRequest(HttpRequestThread httpRequestThread, URI uri, HttpMethod method, int timeoutInMilliseconds) throws FileNotFoundException {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(timeoutInMilliseconds));
+        Map<String, String> customHeaders = httpRequestThread.getCustomHeaders();
+        switch (method) {
+            case GET:
+                requestBuilder.GET();
+                break;
+            case DELETE:
+                requestBuilder.DELETE();
+                break;
+            case HEAD:
+                requestBuilder.method(method.name(), HttpRequest.BodyPublishers.noBody());
+                break;
+            default:
+                requestBuilder.method(method.name(), buildBodyPublisher(httpRequestThread, requestBuilder, customHeaders));
+                break;
+        }
+        for (Map.Entry<String, String> header : customHeaders.entrySet()) {
+            if (!RESTRICTED_HEADER_NAME_SET.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                requestBuilder.setHeader(header.getKey(), header.getValue());
+            }
+        }
+        CookieStore cookieStore = httpRequestThread.getCookieStore();
+        if (cookieStore != null && !httpRequestThread.isIgnoreCookies()) {
+            CookieOrigin cookieOrigin = toCookieOrigin(uri);
+            List<Cookie> matchingCookieList = new ArrayList<>();
+            Date now = new Date();
+            List<Cookie> candidateCookieList = cookieStore instanceof ConcurrentCookieStore
+                    ? ((ConcurrentCookieStore) cookieStore).getCookies(cookieOrigin.getHost(), cookieOrigin.getPath())
+                    : cookieStore.getCookies();
+            for (Cookie cookie : candidateCookieList) {
+                if (!cookie.isExpired(now) && COOKIE_SPEC.match(cookie, cookieOrigin)) {
+                    matchingCookieList.add(cookie);
+                }
+            }
+            if (!matchingCookieList.isEmpty()) {
+                for (Header header : COOKIE_SPEC.formatCookies(matchingCookieList)) {
+                    requestBuilder.header(header.getName(), header.getValue());
+                }
+            }
+        }
+        return requestBuilder.build();
+    }
+
+    private static HttpRequest.BodyPublisher buildBodyPublisher(HttpRequestThread httpRequestThread, HttpRequest.Builder requestBuilder, Map<String, String> customHeaders) throws FileNotFoundException {
+        boolean contentTypeProvided = containsHeader(customHeaders, "Content-Type");
+        if (httpRequestThread.getBodyContentType() != null && !contentTypeProvided) {
+            requestBuilder.header("Content-Type", httpRequestThread.getBodyContentType());
+            contentTypeProvided = true;
+        }
+        if (httpRequestThread.getBodyAsByteArray() != null) {
+            return HttpRequest.BodyPublishers.ofByteArray(httpRequestThread.getBodyAsByteArray());
+        }
+        if (httpRequestThread.getBodyAsByteBuffer() != null) {
+            ByteBuffer byteBuffer = httpRequestThread.getBodyAsByteBuffer().duplicate();
+            if (byteBuffer.hasArray()) {
+                return HttpRequest.BodyPublishers.ofByteArray(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), byteBuffer.remaining());
+            }
+            ByteBufferEntity byteBufferEntity = new ByteBufferEntity(byteBuffer, null);
+            return HttpRequest.BodyPublishers.ofInputStream(byteBufferEntity::getContent);
+        }
+        if (httpRequestThread.getBodyAsPath() != null) {
+            return HttpRequest.BodyPublishers.ofFile(httpRequestThread.getBodyAsPath());
+        }
+        if (httpRequestThread.getBodyAsInputStream() != null) {
+            InputStream bodyAsInputStream = httpRequestThread.getBodyAsInputStream();
+            return HttpRequest.BodyPublishers.ofInputStream(() -> bodyAsInputStream);
+        }
+        if (httpRequestThread.getBody() != null) {
+            if (!contentTypeProvided) {
+                requestBuilder.header("Content-Type", "text/plain; charset=ISO-8859-1");
+            }
+            return HttpRequest.BodyPublishers.ofString(httpRequestThread.getBody(), StandardCharsets.ISO_8859_1);
+        }
+        if (httpRequestThread.getMethod() == HttpMethod.POST || !httpRequestThread.getPostBodyParams().isEmpty()) {
+            StringJoiner form = new StringJoiner("&");
+            for (Map.Entry<String, String> entry : ((Map<String, String>) httpRequestThread.getPostBodyParams()).entrySet()) {
+                form.add(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
+            }
+            requestBuilder.header("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+            return HttpRequest.BodyPublishers.ofString(form.toString(), StandardCharsets.UTF_8);
+        }
+        return HttpRequest.BodyPublishers.noBody();
+    }
+
+    private static void storeCookies(CookieStore cookieStore, HttpResponse<byte[]> httpResponse, URI uri) {
+        if (cookieStore == null) {
+            return;
+        }
+        CookieOrigin cookieOrigin = toCookieOrigin(uri);
+        for (String setCookie : httpResponse.headers().allValues("Set-Cookie")) {
+            try {
+                for (Cookie cookie : COOKIE_SPEC.parse(new BasicHeader("Set-Cookie", setCookie), cookieOrigin)) {
+                    COOKIE_SPEC.validate(cookie, cookieOrigin);
+                    cookieStore.addCookie(cookie);
+                }
+            } catch (MalformedCookieException e) {
+                logger.debug("Ignoring cookie [{}] : {}", setCookie, e.getMessage());
+            }
+        }
+    }
+
+    // A response rejected on its headers gets its stream cancelled instead of being read, the transport then resets it
+    private HttpResponse.BodyHandler<byte[]> buildBodyHandler(ResponsePolicy responsePolicy) {
+        if (responsePolicy == null) {
+            return HttpResponse.BodyHandlers.ofByteArray();
+        }
+        return responseInfo -> {
+            if (findRejectionReason(responsePolicy, responseInfo.statusCode(), responseInfo.headers()) != null) {
+                return new HttpResponse.BodySubscriber<>() {
+                    @Override
+                    public CompletionStage<byte[]> getBody() {
+                        return CompletableFuture.completedFuture(new byte[0]);
+                    }
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        subscription.cancel();
+                    }
+
+                    @Override
+                    public void onNext(List<ByteBuffer> item) {
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                };
+            }
+            return HttpResponse.BodySubscribers.ofByteArray();
+        };
+    }
+
+    String findRejectionReason(ResponsePolicy responsePolicy, HttpResponse<byte[]> httpResponse) {
+        String rejectionReason = findRejectionReason(responsePolicy, httpResponse.statusCode(), httpResponse.headers());
+        if (rejectionReason == null && httpResponse.body().length > responsePolicy.getMaxBodySizeInBytes()) {
+            rejectionReason = "body exceeds [" + responsePolicy.getMaxBodySizeInBytes() + "] bytes";
+        }
+        return rejectionReason;
+    }
+
+    private static String findRejectionReason(ResponsePolicy responsePolicy, int statusCode, HttpHeaders httpHeaders) {
+        return ResponseGuard.findRejectionReason(responsePolicy, statusCode, httpHeaders.firstValue("content-type").orElse(null), httpHeaders.firstValueAsLong("content-length").orElse(-1));
+    }
+
+    public Header[] toHeaders(HttpResponse<?> httpResponse) {
+        List<Header> headerList = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : httpResponse.headers().map().entrySet()) {
+            for (String value : entry.getValue()) {
+                headerList.add(new BasicHeader(entry.getKey(), value));
+            }
+        }
+        return headerList.toArray(new Header[0]);
+    }
+
+    private static boolean containsHeader(Map<String, String> headers, String headerName) {
+        return headers.keySet().stream().anyMatch(headerName::equalsIgnoreCase);
+    }
+
+    private static String toOrigin(URI uri) {
+        return uri.getScheme().toLowerCase(Locale.ROOT) + "://" + uri.getAuthority();
+    }
+
+    private static CookieOrigin toCookieOrigin(URI uri) {
+        boolean secured = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : (secured ? 443 : 80);
+        String path = StringUtils.isNullOrEmpty(uri.getPath()) ? "/" : uri.getPath();
+        return new CookieOrigin(uri.getHost(), port, path, secured);
+    }
+
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    public long getNumberOfHttp2Responses() {
+        return numberOfHttp2Responses.get();
+    }
+
+    public long getNumberOfHttp11Fallbacks() {
+        return numberOfHttp11Fallbacks.get();
+    }
+
+}
@@ -1,101 +1,195 @@
 package fr.prudhommeau.smarthttpclient.core;
 
+import fr.prudhommeau.smarthttpclient.bean.ConcurrencyLimitConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.ConcurrencyLimitStatistics;
+import fr.prudhommeau.smarthttpclient.bean.ConnectionPoolConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.Http2Configuration;
 import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.JournalConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.ListenerDispatchConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.ProxyAffinityConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import fr.prudhommeau.smarthttpclient.bean.RangeDownloadConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.RedirectConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.ResponsePolicy;
+import fr.prudhommeau.smarthttpclient.bean.SchedulingConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.SchedulingQueueStatistics;
+import fr.prudhommeau.smarthttpclient.bean.Socks5Configuration;
+import fr.prudhommeau.smarthttpclient.bean.TlsConfiguration;
 import fr.prudhommeau.smarthttpclient.exceptions.HttpRequestThreadReadTimeException;
 import fr.prudhommeau.smarthttpclient.exceptions.HttpRequestThreadResponseTimeException;
 import fr.prudhommeau.threadpoolmanager.SmartThread;
 import fr.prudhommeau.threadpoolmanager.SmartThreadPool;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthProtocolState;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
 import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.RouteInfo;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.xbill.DNS.AAAARecord;
 import org.xbill.DNS.ARecord;
 import org.xbill.DNS.Lookup;
 import org.xbill.DNS.Type;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.StandardProtocolFamily;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 
-public class HttpClientManager {
+public class HttpClientManager implements AutoCloseable {
 
     public static final int DEFAULT_REQUEST_TIMEOUT_IN_MILLISECONDS = 30000;
 
     public static final int NUMBER_OF_RETRIES_WARNING_THRESHOLD = 5;
-    public static final int MAXIMUM_NUMBER_OF_REDIRECTS = 5;
+    public static final long CANCELLATION_GRACE_PERIOD_IN_MILLISECONDS = 1000;
+    public static final int MAXIMUM_NUMBER_OF_REDIRECTS = RedirectConfiguration.DEFAULT_MAX_NUMBER_OF_REDIRECTS;
 
     public static final String HTTP_CONTEXT_ATTRIBUTE_STANDARD_KEY_HTTP_ROUTE = "http.route";
     public static final String HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_HTTP_PROXY = "custom.http-proxy";
     public static final String HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY = "custom.socks-proxy";
     public static final String HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_FORCE_PROTOCOL_FAMILY = "custom.force-protocol-family";
+    // Direct and SOCKS connections share a route, as do two accounts on one HTTP proxy, the pooled connection state is what keeps them apart
+    static final Object DIRECT_CONNECTION_STATE = "direct";
 
     private static final Logger logger = LoggerFactory.getLogger(HttpClientManager.class);
-    private static final ProxyPool PROXY_POOL = new ProxyPool();
+    private static final ProxyPool DEFAULT_PROXY_POOL = new ProxyPool();
     private static final String DEAD_HTTP_REQUEST_THREAD_TIMER_THREAD_NAME = "DeadHttpRequestThreadTimer";
+    private static final String IDLE_CONNECTION_EVICTOR_THREAD_NAME = "IdleConnectionEvictor";
+    private static final String JSSE_PROPERTY_KEY_STORE = "javax.net.ssl.keyStore";
+    private static final String JSSE_PROPERTY_KEY_STORE_PASSWORD = "javax.net.ssl.keyStorePassword";
+    private static final String JSSE_PROPERTY_KEY_STORE_TYPE = "javax.net.ssl.keyStoreType";
+    private static final String JSSE_KEY_STORE_NONE = "NONE";
+    private static final long DRAIN_POLL_PERIOD_IN_MILLISECONDS = 10;
+    // Held here because java.util.logging only keeps weak references to its loggers, and would forget the levels set on them
+    private static final java.util.logging.Logger WIRE_LOGGER = java.util.logging.Logger.getLogger("org.apache.http.wire");
+    private static final java.util.logging.Logger HEADERS_LOGGER = java.util.logging.Logger.getLogger("org.apache.http.headers");
+    private static final Handler WIRE_LOGGING_HANDLER = createWireLoggingHandler();
 
     private final SmartThreadPool smartThreadPool = new SmartThreadPool();
     private final List<HttpRequestThread.OnHttpThreadResponseListener> httpThreadResponseListenerList = Collections.synchronizedList(new ArrayList<>());
     private final List<HttpRequestThread.OnHttpThreadDetailedResponseListener> httpThreadDetailedResponseListenerList = Collections.synchronizedList(new ArrayList<>());
     private final List<HttpRequestThread.OnHttpThreadRawResponseListener> httpThreadRawResponseListenerList = Collections.synchronizedList(new ArrayList<>());
+    private final List<HttpRequestThread.OnHttpThreadSinkResponseListener> httpThreadSinkResponseListenerList = Collections.synchronizedList(new ArrayList<>());
     private final List<HttpRequestThread.OnHttpThreadErrorListener> httpThreadErrorListenerList = Collections.synchronizedList(new ArrayList<>());
     private final Map<Object, HttpRequestThread.OnStepHttpThreadResponseListener> stepHttpThreadResponseListenerMap = Collections.synchronizedMap(new HashMap<>());
     private final Map<Object, HttpRequestThread.OnStepHttpThreadDetailedResponseListener> stepHttpThreadDetailedResponseListenerMap = Collections.synchronizedMap(new HashMap<>());
     private final Map<Object, HttpRequestThread.OnStepHttpThreadRawResponseListener> stepHttpThreadRawResponseListenerMap = Collections.synchronizedMap(new HashMap<>());
+    private final Map<Object, HttpRequestThread.OnStepHttpThreadSinkResponseListener> stepHttpThreadSinkResponseListenerMap = Collections.synchronizedMap(new HashMap<>());
     private final Map<Object, HttpRequestThread.OnStepHttpThreadErrorListener> stepHttpThreadErrorListenerMap = Collections.synchronizedMap(new HashMap<>());
     private final List<SmartThreadPool.ThreadPoolEmptyEventListener> threadPoolEmptyEventListenerList = Collections.synchronizedList(new ArrayList<>());
+    private final ConnectionStatistics connectionStatistics = new ConnectionStatistics();
+    private final Map<Object, ConcurrentCookieStore> sessionCookieStoreMap = new ConcurrentHashMap<>();
+    private final Map<Proxy, AuthScheme> proxyAuthSchemeMap = new ConcurrentHashMap<>();
+    // From submission to completion, scheduled and parked requests included, so that any of them can be cancelled
+    private final Set<HttpRequestThread> inFlightHttpRequestThreadSet = ConcurrentHashMap.newKeySet();
+    private final HttpRequestScheduler httpRequestScheduler = new HttpRequestScheduler(new SchedulingConfiguration(), this::launchScheduledHttpRequestThread, this::onHttpRequestThreadSchedulingFailure);
+
+    private final Thread deadHttpRequestThreadTimer;
+    private final Thread idleConnectionEvictor;
 
     private PoolingHttpClientConnectionManager connectionManager;
+    private ConnectionPoolConfiguration connectionPoolConfiguration;
+    private final TlsConfiguration tlsConfiguration;
+    private final ProxyPool proxyPool;
+    private final SSLContext sslContext;
+    private volatile ProxyAffinityCache proxyAffinityCache;
+    private volatile Http2Transport http2Transport;
+    private volatile AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+    private volatile HttpRequestJournal httpRequestJournal;
+    private volatile ListenerDispatcher listenerDispatcher;
+    private volatile ResponsePolicy responsePolicy;
+    private volatile RedirectConfiguration redirectConfiguration = new RedirectConfiguration();
+    private volatile RedirectCache redirectCache = new RedirectCache(redirectConfiguration);
+    private volatile Socks5Connector socks5Connector = new Socks5Connector(new Socks5Configuration(), connectionStatistics);
     private Class<? extends Proxifiable> defaultProxifiable;
     private Object initiator;
     private int requestTimeoutInMilliseconds = DEFAULT_REQUEST_TIMEOUT_IN_MILLISECONDS;
+    private volatile boolean closed;
 
     public HttpClientManager(Object initiator) {
+        this(initiator, new ConnectionPoolConfiguration());
+    }
+
+    public HttpClientManager(Object initiator, ConnectionPoolConfiguration connectionPoolConfiguration) {
+        this(initiator, connectionPoolConfiguration, new TlsConfiguration());
+    }
+
+    public HttpClientManager(Object initiator, ConnectionPoolConfiguration connectionPoolConfiguration, TlsConfiguration tlsConfiguration) {
+        this(initiator, connectionPoolConfiguration, tlsConfiguration, DEFAULT_PROXY_POOL);
+    }
+
+    public HttpClientManager(Object initiator, ConnectionPoolConfiguration connectionPoolConfiguration, TlsConfiguration tlsConfiguration, ProxyPool proxyPool) {
         this.initiator = initiator;
+        this.connectionPoolConfiguration = connectionPoolConfiguration;
+        this.tlsConfiguration = tlsConfiguration;
+        this.proxyPool = proxyPool;
+        this.sslContext = configureSslContext(tlsConfiguration);
         smartThreadPool.setInitiator(this.initiator);
 
-        configureDebug(true);
-
         PlainConnectionSocketFactory socksConnectionManagerHttpConnectionSocketFactory = new PlainConnectionSocketFactory() {
-            @Override
-            public Socket createSocket(final HttpContext context) throws IOException {
-                if (context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY) != null) {
-                    Proxy socksProxy = (Proxy) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY);
-                    InetSocketAddress inetSocketAddress = new InetSocketAddress(socksProxy.getIp(), Integer.parseInt(socksProxy.getPort()));
-                    java.net.Proxy proxy = new java.net.Proxy(java.net.Proxy.Type.SOCKS, inetSocketAddress);
-                    return new Socket(proxy);
-                }
-                return super.createSocket(context);
-            }
-
             @Override
             public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context) throws IOException {
                 StandardProtocolFamily standardProtocolFamily = (StandardProtocolFamily) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_FORCE_PROTOCOL_FAMILY);
                 Proxy httpProxy = (Proxy) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_HTTP_PROXY);
                 Proxy socksProxy = (Proxy) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY);
+                if (socksProxy != null) {
+                    if (standardProtocolFamily != null) {
+                        logger.debug("An attempt of rewriting protocol family to [{}] was made but a SOCKS proxy [{}] has also been configured. Ignoring standard protocol family rewrite... ", standardProtocolFamily, socksProxy);
+                    }
+                    return socks5Connector.connect(socket, socksProxy, host, remoteAddress, connectTimeout);
+                }
                 if (standardProtocolFamily != null) {
                     if (httpProxy != null) {
-                        logger.warn("An attempt of rewriting protocol family to [" + standardProtocolFamily + "] was made but an HTTP proxy [" + httpProxy + "] has also been configured. Ignoring standard protocol family rewrite... ");
-                        return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
-                    } else if (socksProxy != null) {
-                        logger.debug("An attempt of rewriting protocol family to [" + standardProtocolFamily + "] was made but a SOCKS proxy [" + socksProxy + "] has also been configured. Ignoring standard protocol family rewrite... ");
+                        logger.warn("An attempt of rewriting protocol family to [{}] was made but an HTTP proxy [{}] has also been configured. Ignoring standard protocol family rewrite... ", standardProtocolFamily, httpProxy);
                         return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
                     }
                     HttpRoute httpRoute = (HttpRoute) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_STANDARD_KEY_HTTP_ROUTE);
@@ -115,16 +209,18 @@ public class HttpClientManager {
             }
         };
 
-        SSLConnectionSocketFactory socksConnectionManagerHttpsConnectionSocketFactory = new SSLConnectionSocketFactory(SSLContexts.createSystemDefault(), NoopHostnameVerifier.INSTANCE) {
+        SSLConnectionSocketFactory socksConnectionManagerHttpsConnectionSocketFactory = new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE) {
             @Override
-            public Socket createSocket(final HttpContext context) throws IOException {
-                if (context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY) != null) {
-                    Proxy socksProxy = (Proxy) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY);
-                    InetSocketAddress inetSocketAddress = new InetSocketAddress(socksProxy.getIp(), Integer.parseInt(socksProxy.getPort()));
-                    java.net.Proxy proxy = new java.net.Proxy(java.net.Proxy.Type.SOCKS, inetSocketAddress);
-                    return new Socket(proxy);
+            public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+                long handshakeStartedOn = System.currentTimeMillis();
+                long handshakeStartedOnInNanoseconds = System.nanoTime();
+                Socket layeredSocket = super.createLayeredSocket(socket, target, port, context);
+                if (layeredSocket instanceof SSLSocket) {
+                    // A resumed session keeps the creation time of the handshake it was resumed from
+                    SSLSession sslSession = ((SSLSocket) layeredSocket).getSession();
+                    connectionStatistics.recordTlsHandshake(System.nanoTime() - handshakeStartedOnInNanoseconds, sslSession.getCreationTime() < handshakeStartedOn);
                 }
-                return super.createSocket(context);
+                return layeredSocket;
             }
 
             @Override
@@ -132,12 +228,16 @@ public class HttpClientManager {
                 StandardProtocolFamily standardProtocolFamily = (StandardProtocolFamily) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_FORCE_PROTOCOL_FAMILY);
                 Proxy httpProxy = (Proxy) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_HTTP_PROXY);
                 Proxy socksProxy = (Proxy) context.getAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY);
+                if (socksProxy != null) {
+                    if (standardProtocolFamily != null) {
+                        logger.debug("An attempt of rewriting protocol family to [{}] was made but a SOCKS proxy [{}] has also been configured. Ignoring standard protocol family rewrite... ", standardProtocolFamily, socksProxy);
+                    }
+                    Socket tunnel = socks5Connector.connect(socket, socksProxy, host, remoteAddress, connectTimeout);
+                    return createLayeredSocket(tunnel, host.getHostName(), remoteAddress.getPort(), context);
+                }
                 if (standardProtocolFamily != null) {
                     if (httpProxy != null) {
-                        logger.debug("An attempt of rewriting protocol family to [" + standardProtocolFamily + "] was made but an HTTP proxy [" + httpProxy + "] has also been configured. Ignoring standard protocol family rewrite... ");
-                        return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
-                    } else if (socksProxy != null) {
-                        logger.debug("An attempt of rewriting protocol family to [" + standardProtocolFamily + "] was made but a SOCKS proxy [" + socksProxy + "] has also been configured. Ignoring standard protocol family rewrite... ");
+                        logger.debug("An attempt of rewriting protocol family to [{}] was made but an HTTP proxy [{}] has also been configured. Ignoring standard protocol family rewrite... ", standardProtocolFamily, httpProxy);
                         return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
                     }
                     HttpRoute httpRoute = (HttpRoute) context.getAttribute("http.route");
@@ -161,18 +261,24 @@ public class HttpClientManager {
                 .register("http", socksConnectionManagerHttpConnectionSocketFactory)
                 .register("https", socksConnectionManagerHttpsConnectionSocketFactory)
                 .build();
-        connectionManager = new PoolingHttpClientConnectionManager(socksConnectionManagerSocksRegistry);
-        connectionManager.setMaxTotal(requestTimeoutInMilliseconds);
-        connectionManager.setDefaultMaxPerRoute(requestTimeoutInMilliseconds);
+        HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> countingConnectionFactory = (route, connectionConfig) -> {
+            connectionStatistics.incrementNumberOfCreatedConnections();
+            if (route.isTunnelled()) {
+                connectionStatistics.incrementNumberOfTunnelEstablishments();
+            }
+            return ManagedHttpClientConnectionFactory.INSTANCE.create(route, connectionConfig);
+        };
+        connectionManager = new PoolingHttpClientConnectionManager(socksConnectionManagerSocksRegistry, countingConnectionFactory, null, null, connectionPoolConfiguration.getTimeToLiveInMilliseconds(), TimeUnit.MILLISECONDS);
+        applyConnectionPoolConfiguration(connectionPoolConfiguration);
 
         SocketConfig socketConfig = SocketConfig.custom()
                 .setSoTimeout(requestTimeoutInMilliseconds)
                 .build();
         connectionManager.setDefaultSocketConfig(socketConfig);
 
-        Thread deadHttpRequestThreadTimer = new Thread(() -> {
-            logger.debug("Start dead http request thread timer for SmartThreadPool [" + smartThreadPool + "]");
-            while (!smartThreadPool.isInterrupted()) {
+        deadHttpRequestThreadTimer = new Thread(() -> {
+            logger.debug("Start dead http request thread timer for SmartThreadPool [{}]", smartThreadPool);
+            while (!closed && !smartThreadPool.isInterrupted()) {
                 LocalDateTime now = LocalDateTime.now();
                 ReentrantLock lock = getSmartThreadPool().getLock();
                 lock.lock();
@@ -198,14 +304,22 @@ public class HttpClientManager {
                         }
                     }
                     for (HttpRequestThread httpRequestThread : threadToInterruptForResponseTimeThresholdList) {
-                        HttpRequestThreadResponseTimeException exception = new HttpRequestThreadResponseTimeException("HTTP response exceeded " + requestTimeoutInMilliseconds + " milliseconds");
-                        httpRequestThread.executeHttpRequestThreadRetryStrategy(exception);
-                        logger.debug("Stopping " + httpRequestThread + " because HTTP response exceeded " + requestTimeoutInMilliseconds + " milliseconds");
+                        try (MDC.MDCCloseable ignored = MDC.putCloseable(HttpRequestThread.MDC_KEY_CORRELATION_ID, httpRequestThread.getCorrelationId())) {
+                            HttpRequestThreadResponseTimeException exception = new HttpRequestThreadResponseTimeException("HTTP response exceeded " + requestTimeoutInMilliseconds + " milliseconds");
+                            httpRequestThread.executeHttpRequestThreadRetryStrategy(exception);
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Stopping {} because HTTP response exceeded {} milliseconds", httpRequestThread, requestTimeoutInMilliseconds);
+                            }
+                        }
                     }
                     for (HttpRequestThread httpRequestThread : threadToInterruptForReadTimeThresholdList) {
-                        HttpRequestThreadReadTimeException exception = new HttpRequestThreadReadTimeException("HTTP response read exceeded " + requestTimeoutInMilliseconds + " milliseconds");
-                        httpRequestThread.executeHttpRequestThreadRetryStrategy(exception);
-                        logger.debug("Stopping " + httpRequestThread + " because HTTP response read exceeded " + requestTimeoutInMilliseconds + " milliseconds");
+                        try (MDC.MDCCloseable ignored = MDC.putCloseable(HttpRequestThread.MDC_KEY_CORRELATION_ID, httpRequestThread.getCorrelationId())) {
+                            HttpRequestThreadReadTimeException exception = new HttpRequestThreadReadTimeException("HTTP response read exceeded " + requestTimeoutInMilliseconds + " milliseconds");
+                            httpRequestThread.executeHttpRequestThreadRetryStrategy(exception);
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Stopping {} because HTTP response read exceeded {} milliseconds", httpRequestThread, requestTimeoutInMilliseconds);
+                            }
+                        }
                     }
                 } finally {
                     lock.unlock();
@@ -213,40 +327,234 @@ public class HttpClientManager {
                 try {
                     Thread.sleep(1000);
                 } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+                    // Interrupted by close, nothing is left to watch
+                    break;
                 }
             }
-            logger.debug("Stop dead http request thread timer for SmartThreadPool [" + smartThreadPool + "]");
+            logger.debug("Stop dead http request thread timer for SmartThreadPool [{}]", smartThreadPool);
         });
         deadHttpRequestThreadTimer.setName(DEAD_HTTP_REQUEST_THREAD_TIMER_THREAD_NAME);
         deadHttpRequestThreadTimer.start();
+
+        idleConnectionEvictor = new Thread(() -> {
+            logger.debug("Start idle connection evictor for SmartThreadPool [{}]", smartThreadPool);
+            while (!closed && !smartThreadPool.isInterrupted()) {
+                try {
+                    Thread.sleep(this.connectionPoolConfiguration.getEvictionPeriodInMilliseconds());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(this.connectionPoolConfiguration.getMaxIdleTimeInMilliseconds(), TimeUnit.MILLISECONDS);
+                ProxyAffinityCache currentProxyAffinityCache = proxyAffinityCache;
+                if (currentProxyAffinityCache != null) {
+                    currentProxyAffinityCache.purgeExpiredAffinities();
+                }
+                AdaptiveConcurrencyLimiter currentAdaptiveConcurrencyLimiter = adaptiveConcurrencyLimiter;
+                if (currentAdaptiveConcurrencyLimiter != null) {
+                    currentAdaptiveConcurrencyLimiter.purgeIdleDestinations();
+                }
+                Date now = new Date();
+                for (ConcurrentCookieStore sessionCookieStore : sessionCookieStoreMap.values()) {
+                    sessionCookieStore.clearExpired(now);
+                }
+            }
+            logger.debug("Stop idle connection evictor for SmartThreadPool [{}]", smartThreadPool);
+        });
+        idleConnectionEvictor.setName(IDLE_CONNECTION_EVICTOR_THREAD_NAME);
+        idleConnectionEvictor.setDaemon(true);
+        idleConnectionEvictor.start();
+    }
+
+    // A caller context is used as it is, its session cache may be shared with other clients. The system default context is JVM wide too, so the manager tunes a context of its own
+    private static SSLContext configureSslContext(TlsConfiguration tlsConfiguration) {
+        if (tlsConfiguration.getSslContext() != null) {
+            return tlsConfiguration.getSslContext();
+        }
+        SSLContext sslContext = createSystemKeyMaterialSslContext();
+        sslContext.getClientSessionContext().setSessionCacheSize(tlsConfiguration.getSessionCacheSize());
+        sslContext.getClientSessionContext().setSessionTimeout(tlsConfiguration.getSessionTimeoutInSeconds());
+        return sslContext;
+    }
+
+    // Same client certificate as the system default context, read from the javax.net.ssl.keyStore properties, and the default trust managers
+    private static SSLContext createSystemKeyMaterialSslContext() {
+        SSLContextBuilder sslContextBuilder = SSLContexts.custom();
+        String keyStorePath = System.getProperty(JSSE_PROPERTY_KEY_STORE);
+        if (keyStorePath != null && !keyStorePath.isEmpty()) {
+            String keyStorePassword = System.getProperty(JSSE_PROPERTY_KEY_STORE_PASSWORD);
+            char[] keyStorePasswordChars = keyStorePassword != null ? keyStorePassword.toCharArray() : null;
+            String keyStoreType = System.getProperty(JSSE_PROPERTY_KEY_STORE_TYPE);
+            try {
+                KeyStore keyStore = KeyStore.getInstance(keyStoreType != null && !keyStoreType.isEmpty() ? keyStoreType : KeyStore.getDefaultType());
+                if (JSSE_KEY_STORE_NONE.equals(keyStorePath)) {
+                    keyStore.load(null, keyStorePasswordChars);
+                } else {
+                    try (InputStream keyStoreInputStream = Files.newInputStream(Paths.get(keyStorePath))) {
+                        keyStore.load(keyStoreInputStream, keyStorePasswordChars);
+                    }
+                }
+                sslContextBuilder.loadKeyMaterial(keyStore, keyStorePasswordChars);
+            } catch (IOException | GeneralSecurityException e) {
+                throw new RuntimeException("Unable to load the client key store [" + keyStorePath + "]", e);
+            }
+        }
+        try {
+            return sslContextBuilder.build();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void applyConnectionPoolConfiguration(ConnectionPoolConfiguration connectionPoolConfiguration) {
+        if (connectionPoolConfiguration.getTimeToLiveInMilliseconds() != this.connectionPoolConfiguration.getTimeToLiveInMilliseconds()) {
+            logger.warn("Connection time to live can only be set at construction, keeping [{}] milliseconds", this.connectionPoolConfiguration.getTimeToLiveInMilliseconds());
+            connectionPoolConfiguration.setTimeToLiveInMilliseconds(this.connectionPoolConfiguration.getTimeToLiveInMilliseconds());
+        }
+        this.connectionPoolConfiguration = connectionPoolConfiguration;
+        connectionManager.setMaxTotal(connectionPoolConfiguration.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(connectionPoolConfiguration.getDefaultMaxPerRoute());
+        connectionManager.setValidateAfterInactivity(connectionPoolConfiguration.getValidateAfterInactivityInMilliseconds());
     }
 
-    public static ProxyPool getProxyPool() {
-        return PROXY_POOL;
+    public int warmUpConnections(String uri, Proxy proxy, int numberOfConnections) {
+        HttpHost host = HttpUtils.uriToHttpHost(uri);
+        boolean secured = "https".equalsIgnoreCase(host.getSchemeName());
+        HttpHost targetHost = new HttpHost(host.getHostName(), host.getPort() > 0 ? host.getPort() : (secured ? 443 : 80), host.getSchemeName());
+        HttpClientContext context = HttpClientContext.create();
+        HttpRoute httpRoute;
+        if (proxy != null && proxy.getType() == ProxyType.HTTP) {
+            if (secured) {
+                logger.warn("Cannot warm up [{}] through HTTP proxy [{}] as it requires a CONNECT tunnel, skipping...", uri, proxy);
+                return 0;
+            }
+            httpRoute = new HttpRoute(targetHost, null, proxy.asHost(), false);
+            context.setAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_HTTP_PROXY, proxy);
+        } else {
+            if (proxy != null && proxy.getType() == ProxyType.SOCKS) {
+                context.setAttribute(HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY, proxy);
+                if (socks5Connector.getSocks5Configuration().isRemoteDnsResolution()) {
+                    targetHost = Socks5Connector.asUnresolvedHost(targetHost);
+                }
+            }
+            httpRoute = new HttpRoute(targetHost, null, secured);
+        }
+        context.setAttribute(HTTP_CONTEXT_ATTRIBUTE_STANDARD_KEY_HTTP_ROUTE, httpRoute);
+        Object connectionState = connectionStateFor(proxy);
+
+        // Every connection is held until all of them are open, otherwise the pool would hand the same one back
+        List<HttpClientConnection> connectionList = new ArrayList<>();
+        int numberOfOpenConnections = 0;
+        try {
+            for (int i = 0; i < numberOfConnections; i++) {
+                ConnectionRequest connectionRequest = connectionManager.requestConnection(httpRoute, connectionState);
+                HttpClientConnection connection = connectionRequest.get(requestTimeoutInMilliseconds, TimeUnit.MILLISECONDS);
+                connectionList.add(connection);
+                if (!connection.isOpen()) {
+                    connectionManager.connect(connection, httpRoute, requestTimeoutInMilliseconds, context);
+                    connectionManager.routeComplete(connection, httpRoute, context);
+                }
+                numberOfOpenConnections++;
+            }
+        } catch (IOException | ExecutionException e) {
+            logger.warn("Unable to warm up connection to [{}] through [{}] : {} - {}", uri, proxy, e.getClass(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (HttpClientConnection connection : connectionList) {
+                connectionManager.releaseConnection(connection, connectionState, connectionPoolConfiguration.getMaxIdleTimeInMilliseconds(), TimeUnit.MILLISECONDS);
+            }
+        }
+        logger.debug("Warmed up [{}] connections to [{}] through [{}]", numberOfOpenConnections, uri, proxy);
+        return numberOfOpenConnections;
+    }
+
+    public ProxyPool getProxyPool() {
+        return proxyPool;
+    }
+
+    // Shared by every manager built without a pool of its own
+    public static ProxyPool getDefaultProxyPool() {
+        return DEFAULT_PROXY_POOL;
     }
 
     public CloseableHttpResponse launchSynchronousHttpRequestThread(HttpRequestThread httpRequestThread) throws IOException {
+        checkNotClosed();
         httpRequestThread.setHttpClientManager(this);
         httpRequestThread.buildRequest();
-        return httpRequestThread.getClient().execute(httpRequestThread.getUriRequest(), httpRequestThread.getContext());
+        return httpRequestThread.executeFollowingRedirects();
+    }
+
+    public long downloadToFile(String uri, Path path) throws IOException {
+        return downloadToFile(uri, path, new RangeDownloadConfiguration());
+    }
+
+    // Splits the download into parallel byte ranges when the server advertises them, a single stream otherwise
+    public long downloadToFile(String uri, Path path, RangeDownloadConfiguration rangeDownloadConfiguration) throws IOException {
+        return new RangeDownloader(this, rangeDownloadConfiguration).download(uri, path);
     }
 
     public void launchHttpRequestThread(HttpRequestThread httpRequestThread) {
+        checkNotClosed();
         if (httpRequestThread.getProxifiable() == null) {
             httpRequestThread.setProxifiable(getDefaultProxifiable());
         }
         httpRequestThread.setHttpClientManager(this);
+        if (httpRequestThread.getCookieSessionKey() != null && !httpRequestThread.isIgnoreCookies()) {
+            httpRequestThread.setCookieStore(getSessionCookieStore(httpRequestThread.getCookieSessionKey()));
+        }
+        if (httpRequestThread.isRandomProxied() && !proxyPool.existsProxies(httpRequestThread.getProxifiable())) {
+            throw new RuntimeException("Proxy pool does not contain eligible proxy for [" + this.getDefaultProxifiable() + "]");
+        }
+        // A journal being replaced refuses new requests, they go to the one that replaces it
+        HttpRequestJournal currentHttpRequestJournal = httpRequestJournal;
+        while (currentHttpRequestJournal != null && httpRequestThread.getHttpRequestJournal() == null && !currentHttpRequestJournal.recordSubmission(httpRequestThread)) {
+            currentHttpRequestJournal = httpRequestJournal;
+        }
+        currentHttpRequestJournal = httpRequestThread.getHttpRequestJournal();
+        inFlightHttpRequestThreadSet.add(httpRequestThread);
+        try {
+            httpRequestScheduler.submit(httpRequestThread);
+        } catch (RuntimeException e) {
+            inFlightHttpRequestThreadSet.remove(httpRequestThread);
+            // A rejected request is over for the caller, it must not come back on the next start
+            if (currentHttpRequestJournal != null) {
+                currentHttpRequestJournal.recordCompletion(httpRequestThread);
+            }
+            throw e;
+        }
+    }
+
+    // The proxy is only picked once the scheduler lets the request go, so that its health is as fresh as possible
+    private void launchScheduledHttpRequestThread(HttpRequestThread httpRequestThread) {
+        AdaptiveConcurrencyLimiter currentAdaptiveConcurrencyLimiter = adaptiveConcurrencyLimiter;
+        if (httpRequestThread.isCancelled()) {
+            // Still goes through the pool, which gives its slot back as soon as it starts, without taking a proxy or a permit
+            launchInternalHttpRequestThread(httpRequestThread);
+            return;
+        }
         if (httpRequestThread.isRandomProxied()) {
-            if (!PROXY_POOL.existsProxies(httpRequestThread.getProxifiable())) {
-                throw new RuntimeException("Proxy pool does not contain eligible proxy for [" + this.getDefaultProxifiable() + "]");
+            ProxyAffinityCache currentProxyAffinityCache = proxyAffinityCache;
+            Proxy proxy;
+            if (currentProxyAffinityCache != null && currentAdaptiveConcurrencyLimiter != null) {
+                proxy = currentProxyAffinityCache.pickNext(HttpUtils.uriToHttpHost(httpRequestThread.getUri()), httpRequestThread.getProxifiable(), httpRequestThread.getForcedProtocolFamily(), currentAdaptiveConcurrencyLimiter::hasCapacity);
+            } else if (currentProxyAffinityCache != null) {
+                proxy = currentProxyAffinityCache.pickNext(HttpUtils.uriToHttpHost(httpRequestThread.getUri()), httpRequestThread.getProxifiable(), httpRequestThread.getForcedProtocolFamily());
+            } else if (currentAdaptiveConcurrencyLimiter != null) {
+                proxy = proxyPool.pickNext(httpRequestThread.getProxifiable(), httpRequestThread.getForcedProtocolFamily(), currentAdaptiveConcurrencyLimiter::hasCapacity);
+            } else {
+                proxy = proxyPool.pickNext(httpRequestThread.getProxifiable(), httpRequestThread.getForcedProtocolFamily());
             }
-            Proxy proxy = PROXY_POOL.pickNext(httpRequestThread.getProxifiable(), httpRequestThread.getForcedProtocolFamily());
             httpRequestThread.setProxy(proxy);
-            launchInternalHttpRequestThread(httpRequestThread);
-        } else {
-            launchInternalHttpRequestThread(httpRequestThread);
         }
+        // A parked thread keeps its scheduler slot and is launched as soon as its destination releases a permit
+        if (currentAdaptiveConcurrencyLimiter != null && !currentAdaptiveConcurrencyLimiter.acquireOrPark(httpRequestThread)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Parking [{}] until [{}] gets below its concurrency limit", httpRequestThread, AdaptiveConcurrencyLimiter.resolveDestination(httpRequestThread));
+            }
+            return;
+        }
+        launchInternalHttpRequestThread(httpRequestThread);
     }
 
     private void launchInternalHttpRequestThread(HttpRequestThread httpRequestThread) {
@@ -254,24 +562,441 @@ public class HttpClientManager {
         httpRequestThread.launchRequest(this);
     }
 
+    private void onHttpRequestThreadSchedulingFailure(HttpRequestThread httpRequestThread, RuntimeException exception) {
+        inFlightHttpRequestThreadSet.remove(httpRequestThread);
+        HttpRequestJournal currentHttpRequestJournal = httpRequestThread.getHttpRequestJournal();
+        if (currentHttpRequestJournal != null) {
+            currentHttpRequestJournal.recordCompletion(httpRequestThread);
+        }
+        if (!httpRequestThread.notifyErrorListeners(exception) && !httpRequestThread.isIgnoreErrors()) {
+            logger.error("Unable to run scheduled thread [{}] : {} - {}", httpRequestThread, exception.getClass(), exception.getMessage());
+        }
+    }
+
+    void onHttpRequestThreadCompleted(HttpRequestThread httpRequestThread) {
+        AdaptiveConcurrencyLimiter.Permit permit = httpRequestThread.getConcurrencyLimitPermit();
+        if (permit != null) {
+            HttpRequestThread unparkedHttpRequestThread = permit.release();
+            if (unparkedHttpRequestThread != null) {
+                try {
+                    launchInternalHttpRequestThread(unparkedHttpRequestThread);
+                } catch (RuntimeException e) {
+                    onHttpRequestThreadSchedulingFailure(unparkedHttpRequestThread, e);
+                    onHttpRequestThreadCompleted(unparkedHttpRequestThread);
+                }
+            }
+        }
+        HttpRequestJournal currentHttpRequestJournal = httpRequestThread.getHttpRequestJournal();
+        if (currentHttpRequestJournal != null && !httpRequestThread.isRetried()) {
+            currentHttpRequestJournal.recordCompletion(httpRequestThread);
+        }
+        inFlightHttpRequestThreadSet.remove(httpRequestThread);
+        httpRequestScheduler.onCompleted(httpRequestThread);
+    }
+
+    public int cancel(Object requestId) {
+        int numberOfCancelledRequests = 0;
+        for (HttpRequestThread httpRequestThread : inFlightHttpRequestThreadSet) {
+            if (Objects.equals(requestId, httpRequestThread.getRequestId()) && httpRequestThread.cancel()) {
+                numberOfCancelledRequests++;
+            }
+        }
+        return numberOfCancelledRequests;
+    }
+
+    public int cancelAll() {
+        int numberOfCancelledRequests = 0;
+        for (HttpRequestThread httpRequestThread : inFlightHttpRequestThreadSet) {
+            if (httpRequestThread.cancel()) {
+                numberOfCancelledRequests++;
+            }
+        }
+        return numberOfCancelledRequests;
+    }
+
+    public int getNumberOfInFlightRequests() {
+        return inFlightHttpRequestThreadSet.size();
+    }
+
+    // Cancels whatever is still in flight right away, see close(long) to let it finish first
+    @Override
+    public void close() {
+        close(0);
+    }
+
+    // Stops taking requests and waits up to the timeout for those in flight, then rejects what is still queued, cancels and interrupts what still runs, and only then stops the timers, the transports and the pool
+    public void close(long drainTimeoutInMilliseconds) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        logger.debug("Closing HttpClientManager for [{}] with [{}] requests in flight", initiator, inFlightHttpRequestThreadSet.size());
+        boolean interrupted = false;
+        try {
+            if (!awaitInFlightRequests(drainTimeoutInMilliseconds)) {
+                stopInFlightRequests(drainTimeoutInMilliseconds);
+                if (!awaitInFlightRequests(CANCELLATION_GRACE_PERIOD_IN_MILLISECONDS)) {
+                    logger.warn("[{}] requests still in flight after [{}] milliseconds, closing anyway", inFlightHttpRequestThreadSet.size(), CANCELLATION_GRACE_PERIOD_IN_MILLISECONDS);
+                }
+            } else {
+                httpRequestScheduler.shutdown();
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            stopInFlightRequests(drainTimeoutInMilliseconds);
+        }
+        ListenerDispatcher currentListenerDispatcher = listenerDispatcher;
+        if (currentListenerDispatcher != null) {
+            try {
+                if (!currentListenerDispatcher.shutdown(CANCELLATION_GRACE_PERIOD_IN_MILLISECONDS)) {
+                    logger.warn("[{}] listener dispatches still pending after [{}] milliseconds", currentListenerDispatcher.getNumberOfPendingDispatches(), CANCELLATION_GRACE_PERIOD_IN_MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        interrupted |= stopThread(deadHttpRequestThreadTimer);
+        interrupted |= stopThread(idleConnectionEvictor);
+        Http2Transport currentHttp2Transport = http2Transport;
+        if (currentHttp2Transport != null) {
+            currentHttp2Transport.shutdown();
+        }
+        HttpRequestJournal currentHttpRequestJournal = httpRequestJournal;
+        if (currentHttpRequestJournal != null) {
+            currentHttpRequestJournal.close();
+        }
+        // Replaced journals still waiting on requests that did not stop in time
+        for (HttpRequestThread httpRequestThread : inFlightHttpRequestThreadSet) {
+            HttpRequestJournal replacedHttpRequestJournal = httpRequestThread.getHttpRequestJournal();
+            if (replacedHttpRequestJournal != null) {
+                replacedHttpRequestJournal.close();
+            }
+        }
+        connectionManager.shutdown();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        logger.debug("Closed HttpClientManager for [{}]", initiator);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Queued requests first, so that none of them gets launched while the running ones are being stopped
+    private void stopInFlightRequests(long drainTimeoutInMilliseconds) {
+        int numberOfRejectedRequests = httpRequestScheduler.shutdown();
+        int numberOfCancelledRequests = cancelAll();
+        int numberOfInterruptedThreads = 0;
+        ReentrantLock lock = smartThreadPool.getLock();
+        lock.lock();
+        try {
+            for (SmartThread smartThread : smartThreadPool.getRunningInstances()) {
+                smartThreadPool.interruptSmartThread(smartThread);
+                numberOfInterruptedThreads++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        logger.debug("Rejected [{}] queued requests, cancelled [{}] and interrupted [{}] running threads after [{}] milliseconds", numberOfRejectedRequests, numberOfCancelledRequests, numberOfInterruptedThreads, drainTimeoutInMilliseconds);
+    }
+
+    private boolean awaitInFlightRequests(long timeoutInMilliseconds) throws InterruptedException {
+        long deadlineInNanoseconds = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMilliseconds);
+        while (!inFlightHttpRequestThreadSet.isEmpty()) {
+            long remainingInNanoseconds = deadlineInNanoseconds - System.nanoTime();
+            if (remainingInNanoseconds <= 0) {
+                return false;
+            }
+            Thread.sleep(Math.min(DRAIN_POLL_PERIOD_IN_MILLISECONDS, TimeUnit.NANOSECONDS.toMillis(remainingInNanoseconds) + 1));
+        }
+        return true;
+    }
+
+    // Returns whether the caller was interrupted while waiting
+    private static boolean stopThread(Thread thread) {
+        thread.interrupt();
+        try {
+            thread.join();
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("HttpClientManager for [" + initiator + "] is closed");
+        }
+    }
+
+    void onHttpRequestThreadRetried(HttpRequestThread httpRequestThread) {
+        HttpRequestJournal currentHttpRequestJournal = httpRequestThread.getHttpRequestJournal();
+        if (currentHttpRequestJournal != null) {
+            currentHttpRequestJournal.recordRetry(httpRequestThread);
+        }
+    }
+
+    // The new journal takes the next requests right away, the previous one keeps recording those it already has and closes once they are completed
+    public synchronized void setJournalConfiguration(JournalConfiguration journalConfiguration) {
+        HttpRequestJournal previousHttpRequestJournal = httpRequestJournal;
+        if (previousHttpRequestJournal != null && journalConfiguration != null && previousHttpRequestJournal.getJournalConfiguration().getJournalPath().equals(journalConfiguration.getJournalPath())) {
+            // Both would compact into the same file
+            if (!previousHttpRequestJournal.closeIfDrained()) {
+                throw new IllegalStateException("Journal [" + journalConfiguration.getJournalPath() + "] still has [" + previousHttpRequestJournal.getNumberOfOpenEntries() + "] requests in flight");
+            }
+        }
+        try {
+            httpRequestJournal = journalConfiguration != null ? new HttpRequestJournal(journalConfiguration) : null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (previousHttpRequestJournal != null) {
+            previousHttpRequestJournal.closeWhenDrained();
+        }
+    }
+
+    public HttpRequestJournal getHttpRequestJournal() {
+        return httpRequestJournal;
+    }
+
+    public int replayJournal() {
+        return replayJournal(httpRequestThread -> {
+        });
+    }
+
+    // Relaunches what the previous run left unfinished, the customizer puts back what the journal does not keep, such as metadata
+    public int replayJournal(Consumer<HttpRequestThread> httpRequestThreadCustomizer) {
+        HttpRequestJournal currentHttpRequestJournal = httpRequestJournal;
+        if (currentHttpRequestJournal == null) {
+            throw new IllegalStateException("No journal configured");
+        }
+        List<HttpRequestThread> httpRequestThreadList = currentHttpRequestJournal.pollRecoveredHttpRequestThreadList();
+        for (HttpRequestThread httpRequestThread : httpRequestThreadList) {
+            httpRequestThreadCustomizer.accept(httpRequestThread);
+            launchHttpRequestThread(httpRequestThread);
+        }
+        return httpRequestThreadList.size();
+    }
+
+    // Listeners run on the request thread while no configuration is set, the previous dispatcher finishes what it was given
+    public void setListenerDispatchConfiguration(ListenerDispatchConfiguration listenerDispatchConfiguration) {
+        replaceListenerDispatcher(listenerDispatchConfiguration != null ? new ListenerDispatcher(listenerDispatchConfiguration) : null);
+    }
+
+    // The executor stays the caller's, it is not shut down along with the manager
+    public void setListenerDispatchConfiguration(ListenerDispatchConfiguration listenerDispatchConfiguration, ExecutorService executorService) {
+        replaceListenerDispatcher(new ListenerDispatcher(listenerDispatchConfiguration, executorService));
+    }
+
+    private void replaceListenerDispatcher(ListenerDispatcher newListenerDispatcher) {
+        ListenerDispatcher previousListenerDispatcher = listenerDispatcher;
+        listenerDispatcher = newListenerDispatcher;
+        if (previousListenerDispatcher != null) {
+            try {
+                previousListenerDispatcher.shutdown(0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public ListenerDispatcher getListenerDispatcher() {
+        return listenerDispatcher;
+    }
+
+    public void setConcurrencyLimitConfiguration(ConcurrencyLimitConfiguration concurrencyLimitConfiguration) {
+        adaptiveConcurrencyLimiter = concurrencyLimitConfiguration != null ? new AdaptiveConcurrencyLimiter(concurrencyLimitConfiguration) : null;
+    }
+
+    public List<ConcurrencyLimitStatistics> getConcurrencyLimitStatisticsList() {
+        AdaptiveConcurrencyLimiter currentAdaptiveConcurrencyLimiter = adaptiveConcurrencyLimiter;
+        return currentAdaptiveConcurrencyLimiter != null ? currentAdaptiveConcurrencyLimiter.getStatisticsList() : new ArrayList<>();
+    }
+
+    // Requests carrying the same cookie session key share one store, the others keep a store of their own
+    public ConcurrentCookieStore getSessionCookieStore(Object cookieSessionKey) {
+        return sessionCookieStoreMap.computeIfAbsent(cookieSessionKey, key -> new ConcurrentCookieStore());
+    }
+
+    public ConcurrentCookieStore removeSessionCookieStore(Object cookieSessionKey) {
+        return sessionCookieStoreMap.remove(cookieSessionKey);
+    }
+
+    public HttpRequestPipeline createPipeline(Flow.Publisher<HttpRequestThread> httpRequestThreadPublisher) {
+        return createPipeline(httpRequestThreadPublisher, getSchedulingConfiguration().getMaxNumberOfInFlightRequests());
+    }
+
+    public HttpRequestPipeline createPipeline(Flow.Publisher<HttpRequestThread> httpRequestThreadPublisher, int maxNumberOfInFlightRequests) {
+        return new HttpRequestPipeline(this, httpRequestThreadPublisher, maxNumberOfInFlightRequests);
+    }
+
+    public void setSchedulingConfiguration(SchedulingConfiguration schedulingConfiguration) {
+        httpRequestScheduler.setSchedulingConfiguration(schedulingConfiguration);
+    }
+
+    public SchedulingConfiguration getSchedulingConfiguration() {
+        return httpRequestScheduler.getSchedulingConfiguration();
+    }
+
+    public void setSchedulingQueueWeight(Object schedulingQueueKey, int weight) {
+        httpRequestScheduler.setQueueWeight(schedulingQueueKey, weight);
+    }
+
+    public void registerSubmissionDemandListener(HttpRequestScheduler.OnSubmissionDemandListener onSubmissionDemandListener) {
+        httpRequestScheduler.registerSubmissionDemandListener(onSubmissionDemandListener);
+    }
+
+    public List<SchedulingQueueStatistics> getSchedulingQueueStatisticsList() {
+        return httpRequestScheduler.getQueueStatisticsList();
+    }
+
+    public HttpRequestScheduler getHttpRequestScheduler() {
+        return httpRequestScheduler;
+    }
+
+    public void reportProxyConnectionFailure(Proxy proxy, Class<? extends Proxifiable> proxifiable) {
+        proxyPool.incrementNumberOfConnectionFailures(proxy, proxifiable);
+        ProxyAffinityCache currentProxyAffinityCache = proxyAffinityCache;
+        if (currentProxyAffinityCache != null) {
+            currentProxyAffinityCache.invalidate(proxy);
+        }
+    }
+
+    public void setProxyAffinityConfiguration(ProxyAffinityConfiguration proxyAffinityConfiguration) {
+        proxyAffinityCache = proxyAffinityConfiguration != null ? new ProxyAffinityCache(proxyPool, proxyAffinityConfiguration) : null;
+    }
+
+    public void setHttp2Configuration(Http2Configuration http2Configuration) {
+        Http2Transport previousHttp2Transport = http2Transport;
+        http2Transport = http2Configuration != null ? new Http2Transport(http2Configuration, sslContext, requestTimeoutInMilliseconds) : null;
+        if (previousHttp2Transport != null) {
+            previousHttp2Transport.shutdown();
+        }
+    }
+
+    public Http2Transport getHttp2Transport() {
+        return http2Transport;
+    }
+
+    static Object connectionStateFor(Proxy proxy) {
+        return proxy != null && (proxy.getType() == ProxyType.SOCKS || proxy.getUsername() != null) ? proxy : DIRECT_CONNECTION_STATE;
+    }
+
+    void prepareProxyAuthentication(Proxy proxy, HttpClientContext context) {
+        Credentials credentials = new UsernamePasswordCredentials(proxy.getUsername(), proxy.getPassword());
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(new AuthScope(proxy.getIp(), proxy.getPort()), credentials);
+        context.setCredentialsProvider(credentialsProvider);
+        AuthScheme proxyAuthScheme = proxyAuthSchemeMap.get(proxy);
+        if (proxyAuthScheme != null) {
+            // Answering up front spares the 407 round trip every new connection or tunnel would otherwise take
+            AuthState proxyAuthState = new AuthState();
+            proxyAuthState.update(proxyAuthScheme, credentials);
+            proxyAuthState.setState(AuthProtocolState.SUCCESS);
+            context.setAttribute(HttpClientContext.PROXY_AUTH_STATE, proxyAuthState);
+        }
+    }
+
+    void onHttpProxyExchangeCompleted(Proxy proxy, HttpClientContext context) {
+        RouteInfo httpRoute = context.getHttpRoute();
+        if (httpRoute != null && httpRoute.isTunnelled()) {
+            connectionStatistics.incrementNumberOfTunnelledRequests();
+        }
+        AuthState proxyAuthState = context.getProxyAuthState();
+        if (proxy.getUsername() == null || proxyAuthState == null) {
+            return;
+        }
+        // Only Basic is kept, it carries no per-exchange state and can be replayed before the proxy asks for it
+        if (proxyAuthState.getState() == AuthProtocolState.SUCCESS && proxyAuthState.getAuthScheme() instanceof BasicScheme) {
+            proxyAuthSchemeMap.put(proxy, proxyAuthState.getAuthScheme());
+        } else if (proxyAuthState.getState() == AuthProtocolState.FAILURE) {
+            proxyAuthSchemeMap.remove(proxy);
+        }
+    }
+
+    // Applies to every request that does not carry a policy of its own
+    public void setResponsePolicy(ResponsePolicy responsePolicy) {
+        this.responsePolicy = responsePolicy;
+    }
+
+    public ResponsePolicy getResponsePolicy() {
+        return responsePolicy;
+    }
+
+    // Starts over with an empty redirect cache
+    public void setRedirectConfiguration(RedirectConfiguration redirectConfiguration) {
+        this.redirectCache = new RedirectCache(redirectConfiguration);
+        this.redirectConfiguration = redirectConfiguration;
+    }
+
+    public RedirectConfiguration getRedirectConfiguration() {
+        return redirectConfiguration;
+    }
+
+    public RedirectCache getRedirectCache() {
+        return redirectCache;
+    }
+
+    public void setSocks5Configuration(Socks5Configuration socks5Configuration) {
+        this.socks5Connector = new Socks5Connector(socks5Configuration, connectionStatistics);
+    }
+
+    public Socks5Configuration getSocks5Configuration() {
+        return socks5Connector.getSocks5Configuration();
+    }
+
+    public ConnectionStatistics getConnectionStatistics() {
+        return connectionStatistics;
+    }
+
     public PoolingHttpClientConnectionManager getConnectionManager() {
         return connectionManager;
     }
 
-    public void configureDebug(boolean enabled) {
-        if (enabled) {
-            java.util.logging.Logger.getLogger("org.apache.http.wire").setLevel(Level.FINEST);
-            java.util.logging.Logger.getLogger("org.apache.http.headers").setLevel(Level.FINEST);
-            System.setProperty("org.apache.commons.logging.Log", "org.apache.commons.logging.impl.SimpleLog");
-            System.setProperty("org.apache.commons.logging.simplelog.showdatetime", "true");
-            System.setProperty("org.apache.commons.logging.simplelog.log.httpclient.wire", "error");
-            System.setProperty("org.apache.commons.logging.simplelog.log.org.apache.http", "error");
-            System.setProperty("org.apache.commons.logging.simplelog.log.org.apache.http.headers", "debug");
-        } else {
-            java.util.logging.Logger.getLogger("org.apache.http").setLevel(Level.OFF);
+    public ConnectionPoolConfiguration getConnectionPoolConfiguration() {
+        return connectionPoolConfiguration;
+    }
+
+    public TlsConfiguration getTlsConfiguration() {
+        return tlsConfiguration;
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    // HttpClient logs through commons-logging, which goes to java.util.logging unless told otherwise, so levels can be switched at any time;
+    // headers follow right away, body bytes only on connections opened afterwards since HttpClient decides on wire logging per connection
+    public static synchronized void configureWireLogging(boolean enabled) {
+        for (java.util.logging.Logger wireLogger : List.of(WIRE_LOGGER, HEADERS_LOGGER)) {
+            wireLogger.removeHandler(WIRE_LOGGING_HANDLER);
+            if (enabled) {
+                wireLogger.setLevel(Level.FINEST);
+                wireLogger.addHandler(WIRE_LOGGING_HANDLER);
+            } else {
+                wireLogger.setLevel(null);
+            }
+            wireLogger.setUseParentHandlers(!enabled);
         }
     }
 
+    public static boolean isWireLoggingEnabled() {
+        return WIRE_LOGGER.isLoggable(Level.FINEST);
+    }
+
+    private static Handler createWireLoggingHandler() {
+        Handler handler = new ConsoleHandler();
+        handler.setLevel(Level.ALL);
+        return handler;
+    }
+
+    public void configureDebug(boolean enabled) {
+        configureWireLogging(enabled);
+    }
+
     public void registerHttpThreadResponseListener(HttpRequestThread.OnHttpThreadResponseListener httpThreadResponseListener) {
         initiator = httpThreadResponseListener;
         httpThreadResponseListenerList.add(httpThreadResponseListener);
@@ -285,6 +1010,10 @@ public class HttpClientManager {
         httpThreadRawResponseListenerList.add(onHttpThreadRawResponseListener);
     }
 
+    public void registerHttpThreadSinkResponseListener(HttpRequestThread.OnHttpThreadSinkResponseListener onHttpThreadSinkResponseListener) {
+        httpThreadSinkResponseListenerList.add(onHttpThreadSinkResponseListener);
+    }
+
     public void registerHttpThreadErrorListener(HttpRequestThread.OnHttpThreadErrorListener httpThreadErrorListener) {
         httpThreadErrorListenerList.add(httpThreadErrorListener);
     }
@@ -301,6 +1030,10 @@ public class HttpClientManager {
         stepHttpThreadRawResponseListenerMap.put(step, onStepHttpThreadRawResponseListener);
     }
 
+    public void registerStepHttpThreadSinkResponseListener(Object step, HttpRequestThread.OnStepHttpThreadSinkResponseListener onStepHttpThreadSinkResponseListener) {
+        stepHttpThreadSinkResponseListenerMap.put(step, onStepHttpThreadSinkResponseListener);
+    }
+
     public void registerStepHttpThreadErrorListener(Object step, HttpRequestThread.OnStepHttpThreadErrorListener onStepHttpThreadErrorListener) {
         stepHttpThreadErrorListenerMap.put(step, onStepHttpThreadErrorListener);
     }
@@ -317,6 +1050,10 @@ public class HttpClientManager {
         return httpThreadRawResponseListenerList;
     }
 
+    public List<HttpRequestThread.OnHttpThreadSinkResponseListener> getHttpThreadSinkResponseListenerList() {
+        return httpThreadSinkResponseListenerList;
+    }
+
     public List<HttpRequestThread.OnHttpThreadErrorListener> getHttpThreadErrorListenerList() {
         return httpThreadErrorListenerList;
     }
@@ -333,6 +1070,10 @@ public class HttpClientManager {
         return stepHttpThreadRawResponseListenerMap;
     }
 
+    public Map<Object, HttpRequestThread.OnStepHttpThreadSinkResponseListener> getStepHttpThreadSinkResponseListenerMap() {
+        return stepHttpThreadSinkResponseListenerMap;
+    }
+
     public Map<Object, HttpRequestThread.OnStepHttpThreadErrorListener> getStepHttpThreadErrorListenerMap() {
         return stepHttpThreadErrorListenerMap;
     }
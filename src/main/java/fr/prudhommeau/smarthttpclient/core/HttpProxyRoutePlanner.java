@@ -0,0 +1,24 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.impl.conn.DefaultRoutePlanner;
+import org.apache.http.protocol.HttpContext;
+
+// One planner for every request, the proxy comes from the context so tunnelled routes stay comparable and get pooled per (proxy, target)
+class HttpProxyRoutePlanner extends DefaultRoutePlanner {
+
+    static final HttpProxyRoutePlanner INSTANCE = new HttpProxyRoutePlanner();
+
+    private HttpProxyRoutePlanner() {
+        super(null);
+    }
+
+    @Override
+    protected HttpHost determineProxy(HttpHost target, HttpRequest request, HttpContext context) {
+        Proxy httpProxy = (Proxy) context.getAttribute(HttpClientManager.HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_HTTP_PROXY);
+        return httpProxy != null ? httpProxy.asHost() : null;
+    }
+
+}
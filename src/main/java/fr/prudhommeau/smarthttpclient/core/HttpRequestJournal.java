@@ -0,0 +1,557 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.HttpMethod;
+import fr.prudhommeau.smarthttpclient.bean.JournalConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+public class HttpRequestJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpRequestJournal.class);
+
+    private static final String FLUSHER_THREAD_NAME = "HttpRequestJournalFlusher";
+    private static final String COMPACTION_FILE_SUFFIX = ".compacting";
+    private static final int RECORD_HEADER_SIZE_IN_BYTES = 8;
+    private static final int INITIAL_RECORD_BUFFER_SIZE_IN_BYTES = 1024;
+
+    private static final byte RECORD_TYPE_SUBMITTED = 1;
+    private static final byte RECORD_TYPE_RETRIED = 2;
+    private static final byte RECORD_TYPE_COMPLETED = 3;
+
+    private static final byte REQUEST_ID_TYPE_NULL = 0;
+    private static final byte REQUEST_ID_TYPE_STRING = 1;
+    private static final byte REQUEST_ID_TYPE_LONG = 2;
+    private static final byte REQUEST_ID_TYPE_INTEGER = 3;
+    private static final byte REQUEST_ID_TYPE_SERIALIZED = 4;
+
+    private final JournalConfiguration journalConfiguration;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final CRC32 crc32 = new CRC32();
+    private final Thread flusher;
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(INITIAL_RECORD_BUFFER_SIZE_IN_BYTES);
+    private FileChannel fileChannel;
+    private volatile MappedByteBuffer mappedByteBuffer;
+    private int writePosition;
+    private long nextEntryId = 1;
+    private long numberOfCompactions;
+    private List<JournalEntry> recoveredJournalEntryList;
+    // Entries handed out in this run and not completed yet, a replaced journal only closes once they are all done
+    private final Set<Long> openEntryIdSet = new HashSet<>();
+    private boolean draining;
+    private volatile boolean dirty;
+    private volatile boolean closed;
+
+    public HttpRequestJournal(JournalConfiguration journalConfiguration) throws IOException {
+        if (journalConfiguration.getJournalPath() == null) {
+            throw new IllegalArgumentException("Journal configuration needs a journal path");
+        }
+        this.journalConfiguration = journalConfiguration;
+        Path journalPath = journalConfiguration.getJournalPath();
+        List<JournalEntry> pendingJournalEntryList = new ArrayList<>();
+        if (Files.exists(journalPath)) {
+            try (FileChannel existingFileChannel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+                MappedByteBuffer existingMappedByteBuffer = existingFileChannel.map(FileChannel.MapMode.READ_ONLY, 0, existingFileChannel.size());
+                pendingJournalEntryList = scan(existingMappedByteBuffer, (int) existingFileChannel.size());
+            }
+            logger.info("Recovered [{}] unfinished requests from journal [{}]", pendingJournalEntryList.size(), journalPath);
+        }
+        for (JournalEntry journalEntry : pendingJournalEntryList) {
+            nextEntryId = Math.max(nextEntryId, journalEntry.entryId + 1);
+        }
+        recoveredJournalEntryList = pendingJournalEntryList;
+        // Starting from a compacted file drops the finished requests of the previous run straight away
+        rewrite(pendingJournalEntryList, 0);
+
+        flusher = new Thread(() -> {
+            logger.debug("Start journal flusher for [{}]", journalPath);
+            while (!closed) {
+                try {
+                    Thread.sleep(journalConfiguration.getFlushIntervalInMilliseconds());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                flush();
+            }
+            logger.debug("Stop journal flusher for [{}]", journalPath);
+        });
+        flusher.setName(FLUSHER_THREAD_NAME);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private static class JournalEntry {
+
+        private final long entryId;
+        private String uri;
+        private HttpMethod method;
+        private Object requestId;
+        private boolean randomProxied;
+        private int numberOfRetries;
+        private final List<HttpRequestThread.RetryHistory> retryHistoryList = new ArrayList<>();
+
+        private JournalEntry(long entryId) {
+            this.entryId = entryId;
+        }
+    }
+
+    // Returns false once the journal has been replaced, the request then belongs to its successor
+    public boolean recordSubmission(HttpRequestThread httpRequestThread) {
+        lock.lock();
+        try {
+            if (draining) {
+                return false;
+            }
+            long entryId = nextEntryId++;
+            httpRequestThread.setJournalEntryId(entryId);
+            httpRequestThread.setHttpRequestJournal(this);
+            JournalEntry journalEntry = new JournalEntry(entryId);
+            journalEntry.uri = httpRequestThread.getUri();
+            journalEntry.method = httpRequestThread.getMethod();
+            journalEntry.requestId = httpRequestThread.getRequestId();
+            journalEntry.randomProxied = httpRequestThread.isRandomProxied();
+            journalEntry.numberOfRetries = httpRequestThread.getNumberOfRetries();
+            journalEntry.retryHistoryList.addAll(httpRequestThread.getRetryHistoryList());
+            append(encodeSubmission(journalEntry).flip());
+            openEntryIdSet.add(entryId);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordRetry(HttpRequestThread httpRequestThread) {
+        if (httpRequestThread.getJournalEntryId() == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            List<HttpRequestThread.RetryHistory> retryHistoryList = httpRequestThread.getRetryHistoryList();
+            startRecord(RECORD_TYPE_RETRIED, httpRequestThread.getJournalEntryId());
+            recordBuffer.put((byte) (httpRequestThread.isRandomProxied() ? 1 : 0));
+            recordBuffer.putInt(httpRequestThread.getNumberOfRetries());
+            if (retryHistoryList.isEmpty()) {
+                recordBuffer.putInt(0);
+            } else {
+                recordBuffer.putInt(1);
+                putRetryHistory(retryHistoryList.get(retryHistoryList.size() - 1));
+            }
+            append(recordBuffer.flip());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordCompletion(HttpRequestThread httpRequestThread) {
+        if (httpRequestThread.getJournalEntryId() == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            // A request whose retry could not be launched is completed by both attempts
+            if (!openEntryIdSet.remove(httpRequestThread.getJournalEntryId())) {
+                return;
+            }
+            append(startRecord(RECORD_TYPE_COMPLETED, httpRequestThread.getJournalEntryId()).flip());
+            if (draining && openEntryIdSet.isEmpty()) {
+                close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Hands out the requests the previous run did not finish, once, rebuilt with their retry state
+    public List<HttpRequestThread> pollRecoveredHttpRequestThreadList() {
+        List<JournalEntry> journalEntryList;
+        lock.lock();
+        try {
+            journalEntryList = recoveredJournalEntryList;
+            recoveredJournalEntryList = new ArrayList<>();
+            for (JournalEntry journalEntry : journalEntryList) {
+                openEntryIdSet.add(journalEntry.entryId);
+            }
+        } finally {
+            lock.unlock();
+        }
+        List<HttpRequestThread> httpRequestThreadList = new ArrayList<>();
+        for (JournalEntry journalEntry : journalEntryList) {
+            HttpRequestThread<Object> httpRequestThread = new HttpRequestThread<>();
+            httpRequestThread.setJournalEntryId(journalEntry.entryId);
+            httpRequestThread.setHttpRequestJournal(this);
+            httpRequestThread.setUri(journalEntry.uri);
+            httpRequestThread.setMethod(journalEntry.method);
+            httpRequestThread.setRequestId(journalEntry.requestId);
+            httpRequestThread.setRandomProxied(journalEntry.randomProxied);
+            httpRequestThread.setNumberOfRetries(journalEntry.numberOfRetries);
+            httpRequestThread.setRetryHistoryList(journalEntry.retryHistoryList);
+            httpRequestThreadList.add(httpRequestThread);
+        }
+        return httpRequestThreadList;
+    }
+
+    private ByteBuffer startRecord(byte recordType, long entryId) {
+        recordBuffer.clear();
+        recordBuffer.put(recordType);
+        recordBuffer.putLong(entryId);
+        return recordBuffer;
+    }
+
+    private ByteBuffer encodeSubmission(JournalEntry journalEntry) {
+        startRecord(RECORD_TYPE_SUBMITTED, journalEntry.entryId);
+        putString(journalEntry.uri);
+        ensureRecordCapacity(1);
+        recordBuffer.put((byte) (journalEntry.method != null ? journalEntry.method.ordinal() : -1));
+        putRequestId(journalEntry.requestId);
+        ensureRecordCapacity(9);
+        recordBuffer.put((byte) (journalEntry.randomProxied ? 1 : 0));
+        recordBuffer.putInt(journalEntry.numberOfRetries);
+        recordBuffer.putInt(journalEntry.retryHistoryList.size());
+        for (HttpRequestThread.RetryHistory retryHistory : journalEntry.retryHistoryList) {
+            putRetryHistory(retryHistory);
+        }
+        return recordBuffer;
+    }
+
+    private void putRetryHistory(HttpRequestThread.RetryHistory retryHistory) {
+        Proxy proxy = retryHistory.getProxy();
+        ensureRecordCapacity(1);
+        recordBuffer.put((byte) (proxy != null ? 1 : 0));
+        if (proxy != null) {
+            putString(proxy.getIp());
+            ensureRecordCapacity(5);
+            recordBuffer.putInt(proxy.getPort());
+            recordBuffer.put((byte) (proxy.getType() != null ? proxy.getType().ordinal() : -1));
+        }
+        putString(retryHistory.getErrorDetails());
+    }
+
+    private void putRequestId(Object requestId) {
+        ensureRecordCapacity(9);
+        if (requestId == null) {
+            recordBuffer.put(REQUEST_ID_TYPE_NULL);
+        } else if (requestId instanceof String) {
+            recordBuffer.put(REQUEST_ID_TYPE_STRING);
+            putString((String) requestId);
+        } else if (requestId instanceof Long) {
+            recordBuffer.put(REQUEST_ID_TYPE_LONG);
+            recordBuffer.putLong((Long) requestId);
+        } else if (requestId instanceof Integer) {
+            recordBuffer.put(REQUEST_ID_TYPE_INTEGER);
+            recordBuffer.putInt((Integer) requestId);
+        } else if (requestId instanceof Serializable) {
+            recordBuffer.put(REQUEST_ID_TYPE_SERIALIZED);
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+                objectOutputStream.writeObject(requestId);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            putBytes(byteArrayOutputStream.toByteArray());
+        } else {
+            // Better to replay with its text than to lose the request
+            recordBuffer.put(REQUEST_ID_TYPE_STRING);
+            putString(requestId.toString());
+        }
+    }
+
+    private void putString(String value) {
+        putBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private void putBytes(byte[] bytes) {
+        ensureRecordCapacity(4 + (bytes != null ? bytes.length : 0));
+        if (bytes == null) {
+            recordBuffer.putInt(-1);
+        } else {
+            recordBuffer.putInt(bytes.length);
+            recordBuffer.put(bytes);
+        }
+    }
+
+    private void ensureRecordCapacity(int numberOfBytes) {
+        if (recordBuffer.remaining() < numberOfBytes) {
+            ByteBuffer largerRecordBuffer = ByteBuffer.allocate(Math.max(recordBuffer.capacity() * 2, recordBuffer.position() + numberOfBytes));
+            recordBuffer.flip();
+            largerRecordBuffer.put(recordBuffer);
+            recordBuffer = largerRecordBuffer;
+        }
+    }
+
+    // Length last, so that a record torn by a crash reads as the zeroed end of the journal or fails its checksum
+    private void append(ByteBuffer record) {
+        if (closed) {
+            throw new IllegalStateException("Journal [" + journalConfiguration.getJournalPath() + "] is closed");
+        }
+        int recordLength = record.remaining();
+        if (writePosition + RECORD_HEADER_SIZE_IN_BYTES + recordLength > mappedByteBuffer.capacity()) {
+            // Compaction encodes through the record buffer too
+            ByteBuffer recordCopy = ByteBuffer.allocate(recordLength);
+            recordCopy.put(record).flip();
+            record = recordCopy;
+            compact(RECORD_HEADER_SIZE_IN_BYTES + recordLength);
+        }
+        crc32.reset();
+        crc32.update(record.duplicate());
+        MappedByteBuffer currentMappedByteBuffer = mappedByteBuffer;
+        currentMappedByteBuffer.position(writePosition + RECORD_HEADER_SIZE_IN_BYTES);
+        currentMappedByteBuffer.put(record);
+        currentMappedByteBuffer.putInt(writePosition + 4, (int) crc32.getValue());
+        currentMappedByteBuffer.putInt(writePosition, recordLength);
+        writePosition += RECORD_HEADER_SIZE_IN_BYTES + recordLength;
+        dirty = true;
+    }
+
+    private void compact(int numberOfBytesToAppend) {
+        try {
+            List<JournalEntry> pendingJournalEntryList = scan(mappedByteBuffer, writePosition);
+            rewrite(pendingJournalEntryList, numberOfBytesToAppend);
+            numberOfCompactions++;
+            logger.debug("Compacted journal [{}] down to [{}] unfinished requests", journalConfiguration.getJournalPath(), pendingJournalEntryList.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Writes the given entries into a fresh file which atomically replaces the journal, so a crash leaves either one whole
+    private void rewrite(List<JournalEntry> pendingJournalEntryList, int numberOfBytesToAppend) throws IOException {
+        Path journalPath = journalConfiguration.getJournalPath();
+        Path compactionPath = journalPath.resolveSibling(journalPath.getFileName() + COMPACTION_FILE_SUFFIX);
+        List<ByteBuffer> recordList = new ArrayList<>();
+        long liveSizeInBytes = numberOfBytesToAppend;
+        for (JournalEntry journalEntry : pendingJournalEntryList) {
+            ByteBuffer record = encodeSubmission(journalEntry).flip();
+            ByteBuffer recordCopy = ByteBuffer.allocate(record.remaining());
+            recordCopy.put(record).flip();
+            recordList.add(recordCopy);
+            liveSizeInBytes += RECORD_HEADER_SIZE_IN_BYTES + recordCopy.remaining();
+        }
+        // Keeps at least half of the segment free, otherwise a large backlog would compact on every few appends
+        long segmentSizeInBytes = journalConfiguration.getSegmentSizeInBytes();
+        while (segmentSizeInBytes < liveSizeInBytes * 2) {
+            segmentSizeInBytes *= 2;
+        }
+        if (segmentSizeInBytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Journal [" + journalPath + "] cannot map [" + liveSizeInBytes + "] bytes of unfinished requests");
+        }
+
+        FileChannel compactionFileChannel = FileChannel.open(compactionPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer compactionMappedByteBuffer = compactionFileChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSizeInBytes);
+        FileChannel previousFileChannel = fileChannel;
+        fileChannel = compactionFileChannel;
+        mappedByteBuffer = compactionMappedByteBuffer;
+        writePosition = 0;
+        for (ByteBuffer record : recordList) {
+            append(record);
+        }
+        compactionMappedByteBuffer.force();
+        Files.move(compactionPath, journalPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+        if (previousFileChannel != null) {
+            previousFileChannel.close();
+        }
+    }
+
+    private static List<JournalEntry> scan(ByteBuffer buffer, int limit) {
+        Map<Long, JournalEntry> pendingJournalEntryMap = new LinkedHashMap<>();
+        ByteBuffer journalBuffer = buffer.duplicate();
+        CRC32 scanCrc32 = new CRC32();
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE_IN_BYTES <= limit) {
+            int recordLength = journalBuffer.getInt(position);
+            if (recordLength <= 0 || position + RECORD_HEADER_SIZE_IN_BYTES + recordLength > limit) {
+                break;
+            }
+            ByteBuffer record = journalBuffer.duplicate();
+            record.limit(position + RECORD_HEADER_SIZE_IN_BYTES + recordLength);
+            record.position(position + RECORD_HEADER_SIZE_IN_BYTES);
+            scanCrc32.reset();
+            scanCrc32.update(record.duplicate());
+            if ((int) scanCrc32.getValue() != journalBuffer.getInt(position + 4)) {
+                logger.warn("Journal record at offset [{}] is corrupted, ignoring the rest of the journal", position);
+                break;
+            }
+            byte recordType = record.get();
+            long entryId = record.getLong();
+            if (recordType == RECORD_TYPE_SUBMITTED) {
+                JournalEntry journalEntry = new JournalEntry(entryId);
+                journalEntry.uri = getString(record);
+                byte methodOrdinal = record.get();
+                journalEntry.method = methodOrdinal >= 0 ? HttpMethod.values()[methodOrdinal] : null;
+                journalEntry.requestId = getRequestId(record);
+                journalEntry.randomProxied = record.get() == 1;
+                journalEntry.numberOfRetries = record.getInt();
+                getRetryHistoryList(record, journalEntry.retryHistoryList);
+                pendingJournalEntryMap.put(entryId, journalEntry);
+            } else if (recordType == RECORD_TYPE_RETRIED) {
+                JournalEntry journalEntry = pendingJournalEntryMap.get(entryId);
+                if (journalEntry != null) {
+                    journalEntry.randomProxied = record.get() == 1;
+                    journalEntry.numberOfRetries = record.getInt();
+                    getRetryHistoryList(record, journalEntry.retryHistoryList);
+                }
+            } else if (recordType == RECORD_TYPE_COMPLETED) {
+                pendingJournalEntryMap.remove(entryId);
+            }
+            position += RECORD_HEADER_SIZE_IN_BYTES + recordLength;
+        }
+        return new ArrayList<>(pendingJournalEntryMap.values());
+    }
+
+    private static void getRetryHistoryList(ByteBuffer record, List<HttpRequestThread.RetryHistory> retryHistoryList) {
+        int numberOfRetryHistories = record.getInt();
+        for (int i = 0; i < numberOfRetryHistories; i++) {
+            HttpRequestThread.RetryHistory retryHistory = new HttpRequestThread.RetryHistory();
+            if (record.get() == 1) {
+                Proxy proxy = new Proxy();
+                proxy.setIp(getString(record));
+                proxy.setPort(record.getInt());
+                byte proxyTypeOrdinal = record.get();
+                proxy.setType(proxyTypeOrdinal >= 0 ? ProxyType.values()[proxyTypeOrdinal] : null);
+                retryHistory.setProxy(proxy);
+            }
+            retryHistory.setErrorDetails(getString(record));
+            retryHistoryList.add(retryHistory);
+        }
+    }
+
+    private static Object getRequestId(ByteBuffer record) {
+        byte requestIdType = record.get();
+        switch (requestIdType) {
+            case REQUEST_ID_TYPE_STRING:
+                return getString(record);
+            case REQUEST_ID_TYPE_LONG:
+                return record.getLong();
+            case REQUEST_ID_TYPE_INTEGER:
+                return record.getInt();
+            case REQUEST_ID_TYPE_SERIALIZED:
+                try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(getBytes(record)))) {
+                    return objectInputStream.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+            default:
+                return null;
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        byte[] bytes = getBytes(record);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] getBytes(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return bytes;
+    }
+
+    // Forcing the mapped pages costs a disk round trip, so the flusher does it once for every append of the interval
+    public void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        mappedByteBuffer.force();
+    }
+
+    // Stops taking new requests and closes as soon as those already recorded are completed
+    public void closeWhenDrained() {
+        lock.lock();
+        try {
+            draining = true;
+            if (openEntryIdSet.isEmpty()) {
+                close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Closes right away unless some recorded requests are still running
+    public boolean closeIfDrained() {
+        lock.lock();
+        try {
+            if (!openEntryIdSet.isEmpty()) {
+                return false;
+            }
+            draining = true;
+            close();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getNumberOfOpenEntries() {
+        lock.lock();
+        try {
+            return openEntryIdSet.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flusher.interrupt();
+            mappedByteBuffer.force();
+            fileChannel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getNumberOfCompactions() {
+        lock.lock();
+        try {
+            return numberOfCompactions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public JournalConfiguration getJournalConfiguration() {
+        return journalConfiguration;
+    }
+
+}
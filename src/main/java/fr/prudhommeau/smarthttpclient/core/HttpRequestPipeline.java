@@ -0,0 +1,236 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.HttpResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HttpRequestPipeline implements Flow.Publisher<HttpResult> {
+
+    public static final String METADATA_KEY_TICKET = "pipeline.ticket";
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpRequestPipeline.class);
+
+    private final HttpClientManager httpClientManager;
+    private final Flow.Publisher<HttpRequestThread> httpRequestThreadPublisher;
+    private final int maxNumberOfInFlightRequests;
+    private final Queue<HttpResult> pendingResultQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicInteger drainWorkInProgress = new AtomicInteger();
+    private final AtomicLong newDownstreamDemand = new AtomicLong();
+    private final AtomicLong numberOfRequestedButNotReceivedThreads = new AtomicLong();
+    private final AtomicLong numberOfInFlightThreads = new AtomicLong();
+
+    private volatile Flow.Subscriber<? super HttpResult> subscriber;
+    private volatile Flow.Subscription upstreamSubscription;
+    private volatile boolean upstreamCompleted;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+    private long downstreamDemand;
+    private boolean terminated;
+
+    HttpRequestPipeline(HttpClientManager httpClientManager, Flow.Publisher<HttpRequestThread> httpRequestThreadPublisher, int maxNumberOfInFlightRequests) {
+        if (maxNumberOfInFlightRequests <= 0) {
+            throw new IllegalArgumentException("Pipeline needs at least one request in flight, got [" + maxNumberOfInFlightRequests + "]");
+        }
+        this.httpClientManager = httpClientManager;
+        this.httpRequestThreadPublisher = httpRequestThreadPublisher;
+        this.maxNumberOfInFlightRequests = maxNumberOfInFlightRequests;
+    }
+
+    public static class Ticket {
+
+        private final HttpRequestPipeline httpRequestPipeline;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Ticket(HttpRequestPipeline httpRequestPipeline) {
+            this.httpRequestPipeline = httpRequestPipeline;
+        }
+
+        void onResponse(HttpRequestThread httpRequestThread, byte[] responseAsByteArray) {
+            if (completed.compareAndSet(false, true)) {
+                HttpResult httpResult = httpRequestPipeline.createHttpResult(httpRequestThread);
+                httpResult.setStatusCode(httpRequestThread.getResponseStatusCode());
+                httpResult.setHeaders(new ArrayList<>(httpRequestThread.getResponseHeaders()));
+                httpResult.setBody(responseAsByteArray);
+                httpResult.setResponseSinkResult(httpRequestThread.getResponseSinkResult());
+                httpResult.setRedirectHopList(new ArrayList<>(httpRequestThread.getRedirectHopList()));
+                httpRequestPipeline.onResult(httpResult);
+            }
+        }
+
+        void onError(HttpRequestThread httpRequestThread, Exception exception) {
+            if (completed.compareAndSet(false, true)) {
+                HttpResult httpResult = httpRequestPipeline.createHttpResult(httpRequestThread);
+                httpResult.setException(exception);
+                httpRequestPipeline.onResult(httpResult);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super HttpResult> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Pipeline only supports a single subscriber"));
+            return;
+        }
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    upstreamError = new IllegalArgumentException("Non-positive request signals are illegal, got [" + n + "]");
+                    cancelUpstream();
+                } else {
+                    newDownstreamDemand.accumulateAndGet(n, HttpRequestPipeline::addCapped);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+            }
+        });
+        httpRequestThreadPublisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                upstreamSubscription = subscription;
+                if (cancelled) {
+                    subscription.cancel();
+                    return;
+                }
+                drain();
+            }
+
+            @Override
+            public void onNext(HttpRequestThread httpRequestThread) {
+                launch(httpRequestThread);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                upstreamError = throwable;
+                numberOfRequestedButNotReceivedThreads.set(0);
+                drain();
+            }
+
+            @Override
+            public void onComplete() {
+                upstreamCompleted = true;
+                numberOfRequestedButNotReceivedThreads.set(0);
+                drain();
+            }
+        });
+    }
+
+    private void launch(HttpRequestThread httpRequestThread) {
+        Ticket ticket = new Ticket(this);
+        httpRequestThread.addMetadata(METADATA_KEY_TICKET, ticket);
+        // In flight first, so that a concurrent drain counts this request twice rather than not at all
+        numberOfInFlightThreads.incrementAndGet();
+        numberOfRequestedButNotReceivedThreads.decrementAndGet();
+        try {
+            httpClientManager.launchHttpRequestThread(httpRequestThread);
+        } catch (RuntimeException e) {
+            logger.debug("Unable to launch pipeline thread [{}] : {} - {}", httpRequestThread, e.getClass(), e.getMessage());
+            ticket.onError(httpRequestThread, e);
+        }
+    }
+
+    private HttpResult createHttpResult(HttpRequestThread httpRequestThread) {
+        HttpResult httpResult = new HttpResult();
+        httpResult.setRequestId(httpRequestThread.getRequestId());
+        httpResult.setUri(httpRequestThread.getUri());
+        httpResult.setProxy(httpRequestThread.getProxy());
+        httpResult.setMetadata(httpRequestThread.getMetadata());
+        return httpResult;
+    }
+
+    private void onResult(HttpResult httpResult) {
+        pendingResultQueue.offer(httpResult);
+        numberOfInFlightThreads.decrementAndGet();
+        drain();
+    }
+
+    // Serializes every signal to the subscriber, whichever thread produced the result or the demand
+    private void drain() {
+        if (drainWorkInProgress.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            if (terminated) {
+                return;
+            }
+            if (cancelled) {
+                pendingResultQueue.clear();
+            } else {
+                downstreamDemand = addCapped(downstreamDemand, newDownstreamDemand.getAndSet(0));
+                HttpResult httpResult;
+                while (downstreamDemand > 0 && (httpResult = pendingResultQueue.poll()) != null) {
+                    downstreamDemand--;
+                    subscriber.onNext(httpResult);
+                }
+                long numberOfRequestedButNotReceivedThreadsSnapshot = numberOfRequestedButNotReceivedThreads.get();
+                long numberOfInFlightThreadsSnapshot = numberOfInFlightThreads.get();
+                long numberOfActiveThreads = numberOfRequestedButNotReceivedThreadsSnapshot + numberOfInFlightThreadsSnapshot + pendingResultQueue.size();
+                if ((upstreamCompleted || upstreamError != null) && numberOfActiveThreads == 0) {
+                    terminated = true;
+                    if (upstreamError != null) {
+                        subscriber.onError(upstreamError);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                // Never ask upstream for more than the subscriber can take nor more than the pipeline may run at once
+                long numberOfThreadsToRequest = Math.min(maxNumberOfInFlightRequests, downstreamDemand) - numberOfActiveThreads;
+                Flow.Subscription currentUpstreamSubscription = upstreamSubscription;
+                if (numberOfThreadsToRequest > 0 && currentUpstreamSubscription != null && !upstreamCompleted && upstreamError == null) {
+                    numberOfRequestedButNotReceivedThreads.addAndGet(numberOfThreadsToRequest);
+                    currentUpstreamSubscription.request(numberOfThreadsToRequest);
+                }
+            }
+            missed = drainWorkInProgress.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription currentUpstreamSubscription = upstreamSubscription;
+        if (currentUpstreamSubscription != null) {
+            currentUpstreamSubscription.cancel();
+        }
+    }
+
+    private static long addCapped(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    public int getMaxNumberOfInFlightRequests() {
+        return maxNumberOfInFlightRequests;
+    }
+
+    public long getNumberOfInFlightRequests() {
+        return numberOfInFlightThreads.get();
+    }
+
+}
@@ -0,0 +1,368 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.BackpressurePolicy;
+import fr.prudhommeau.smarthttpclient.bean.SchedulingConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.SchedulingQueueStatistics;
+import fr.prudhommeau.smarthttpclient.exceptions.HttpRequestThreadRejectedException;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class HttpRequestScheduler {
+
+    public static final Object DEFAULT_QUEUE_KEY = "default";
+
+    private static final long STRIDE_NUMERATOR = 1L << 20;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition capacityAvailableCondition = lock.newCondition();
+    private final Map<Object, SchedulingQueue> queueMap = new HashMap<>();
+    private final Map<Object, Integer> queueWeightMap = new HashMap<>();
+    private final TreeSet<SchedulingQueue> activeQueueSet = new TreeSet<>(Comparator.comparingLong((SchedulingQueue schedulingQueue) -> schedulingQueue.pass).thenComparingLong(schedulingQueue -> schedulingQueue.id));
+    private final TreeSet<ScheduledHttpRequest> pendingRequestSet = new TreeSet<>(Comparator.comparingLong(scheduledHttpRequest -> scheduledHttpRequest.sequence));
+    private final Set<HttpRequestThread> inFlightHttpRequestThreadSet = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<OnSubmissionDemandListener> submissionDemandListenerList = new CopyOnWriteArrayList<>();
+    private final Consumer<HttpRequestThread> launcher;
+    private final BiConsumer<HttpRequestThread, RuntimeException> failureHandler;
+
+    private SchedulingConfiguration schedulingConfiguration;
+    private long globalPass;
+    private long sequence;
+    private long numberOfRejectedRequests;
+    private long numberOfDroppedRequests;
+    private boolean shutdown;
+
+    public HttpRequestScheduler(SchedulingConfiguration schedulingConfiguration, Consumer<HttpRequestThread> launcher, BiConsumer<HttpRequestThread, RuntimeException> failureHandler) {
+        this.schedulingConfiguration = schedulingConfiguration;
+        this.launcher = launcher;
+        this.failureHandler = failureHandler;
+    }
+
+    public interface OnSubmissionDemandListener {
+        void onSubmissionDemand(long numberOfRequests);
+    }
+
+    private static class ScheduledHttpRequest {
+
+        private final HttpRequestThread httpRequestThread;
+        private final SchedulingQueue schedulingQueue;
+        private final long enqueuedOnInNanoseconds;
+        private final long virtualDeadlineInNanoseconds;
+        private final long sequence;
+
+        private ScheduledHttpRequest(HttpRequestThread httpRequestThread, SchedulingQueue schedulingQueue, long enqueuedOnInNanoseconds, long virtualDeadlineInNanoseconds, long sequence) {
+            this.httpRequestThread = httpRequestThread;
+            this.schedulingQueue = schedulingQueue;
+            this.enqueuedOnInNanoseconds = enqueuedOnInNanoseconds;
+            this.virtualDeadlineInNanoseconds = virtualDeadlineInNanoseconds;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class SchedulingQueue {
+
+        // Higher priorities are served first, but every waiting request gets closer to the head as time passes
+        private final TreeSet<ScheduledHttpRequest> pendingRequestSet = new TreeSet<>(Comparator.comparingLong((ScheduledHttpRequest scheduledHttpRequest) -> scheduledHttpRequest.virtualDeadlineInNanoseconds).thenComparingLong(scheduledHttpRequest -> scheduledHttpRequest.sequence));
+        private final Object key;
+        private final long id;
+        private int weight;
+        private long pass;
+        private long numberOfDispatchedRequests;
+        private long totalWaitTimeInNanoseconds;
+        private long maxWaitTimeInNanoseconds;
+
+        private SchedulingQueue(Object key, long id, int weight) {
+            this.key = key;
+            this.id = id;
+            this.weight = weight;
+        }
+
+        private long getStride() {
+            return STRIDE_NUMERATOR / Math.max(1, weight);
+        }
+    }
+
+    public void submit(HttpRequestThread httpRequestThread) {
+        ScheduledHttpRequest droppedScheduledHttpRequest = null;
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw reject(httpRequestThread, "scheduler is shut down");
+            }
+            // Retries take over a request that is already accounted for, and blocking them would stall the threads completing requests
+            if (httpRequestThread.getNumberOfRetries() == 0) {
+                droppedScheduledHttpRequest = awaitCapacity(httpRequestThread);
+            }
+            Object key = resolveQueueKey(httpRequestThread);
+            SchedulingQueue schedulingQueue = queueMap.get(key);
+            if (schedulingQueue == null) {
+                schedulingQueue = new SchedulingQueue(key, sequence++, queueWeightMap.getOrDefault(key, schedulingConfiguration.getDefaultQueueWeight()));
+                queueMap.put(key, schedulingQueue);
+            }
+            long now = System.nanoTime();
+            long agingInNanoseconds = TimeUnit.MILLISECONDS.toNanos(schedulingConfiguration.getPriorityAgingInMilliseconds());
+            long virtualDeadlineInNanoseconds = now - httpRequestThread.getRequestPriority() * agingInNanoseconds;
+            if (schedulingQueue.pendingRequestSet.isEmpty()) {
+                // An idle queue must not bank the turns it did not use while it was empty
+                schedulingQueue.pass = Math.max(schedulingQueue.pass, globalPass);
+                activeQueueSet.add(schedulingQueue);
+            }
+            ScheduledHttpRequest scheduledHttpRequest = new ScheduledHttpRequest(httpRequestThread, schedulingQueue, now, virtualDeadlineInNanoseconds, sequence++);
+            schedulingQueue.pendingRequestSet.add(scheduledHttpRequest);
+            pendingRequestSet.add(scheduledHttpRequest);
+        } finally {
+            lock.unlock();
+        }
+        if (droppedScheduledHttpRequest != null) {
+            failureHandler.accept(droppedScheduledHttpRequest.httpRequestThread, new HttpRequestThreadRejectedException("Dropped to make room for a newer request, submission queue is full"));
+        }
+        dispatch();
+    }
+
+    private ScheduledHttpRequest awaitCapacity(HttpRequestThread httpRequestThread) {
+        while (getNumberOfSubmittedRequestsLocked() >= schedulingConfiguration.getMaxNumberOfSubmittedRequests()) {
+            BackpressurePolicy backpressurePolicy = schedulingConfiguration.getBackpressurePolicy();
+            if (backpressurePolicy == BackpressurePolicy.BLOCK && inFlightHttpRequestThreadSet.remove(Thread.currentThread())) {
+                // A listener submitting follow-up requests hands its own slot over instead of waiting on itself
+                continue;
+            }
+            if (backpressurePolicy == BackpressurePolicy.BLOCK) {
+                try {
+                    capacityAvailableCondition.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw reject(httpRequestThread, "interrupted while waiting for capacity");
+                }
+                if (shutdown) {
+                    throw reject(httpRequestThread, "scheduler is shut down");
+                }
+            } else if (backpressurePolicy == BackpressurePolicy.DROP_OLDEST && !pendingRequestSet.isEmpty()) {
+                ScheduledHttpRequest oldestScheduledHttpRequest = pendingRequestSet.pollFirst();
+                removePending(oldestScheduledHttpRequest);
+                numberOfDroppedRequests++;
+                return oldestScheduledHttpRequest;
+            } else {
+                throw reject(httpRequestThread, "submission queue is full");
+            }
+        }
+        return null;
+    }
+
+    private HttpRequestThreadRejectedException reject(HttpRequestThread httpRequestThread, String reason) {
+        numberOfRejectedRequests++;
+        return new HttpRequestThreadRejectedException("Rejected [" + httpRequestThread.getUri() + "], " + reason + " (" + getNumberOfSubmittedRequestsLocked() + "/" + schedulingConfiguration.getMaxNumberOfSubmittedRequests() + " submitted requests)");
+    }
+
+    private void removePending(ScheduledHttpRequest scheduledHttpRequest) {
+        SchedulingQueue schedulingQueue = scheduledHttpRequest.schedulingQueue;
+        schedulingQueue.pendingRequestSet.remove(scheduledHttpRequest);
+        if (schedulingQueue.pendingRequestSet.isEmpty()) {
+            activeQueueSet.remove(schedulingQueue);
+        }
+    }
+
+    public void onCompleted(HttpRequestThread httpRequestThread) {
+        if (release(httpRequestThread)) {
+            dispatch();
+            signalDemand();
+        }
+    }
+
+    private boolean release(HttpRequestThread httpRequestThread) {
+        lock.lock();
+        try {
+            boolean released = inFlightHttpRequestThreadSet.remove(httpRequestThread);
+            if (released) {
+                capacityAvailableCondition.signal();
+            }
+            return released;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Every released slot is one more request the producer may submit, as a reactive streams request(1)
+    private void signalDemand() {
+        for (OnSubmissionDemandListener onSubmissionDemandListener : submissionDemandListenerList) {
+            onSubmissionDemandListener.onSubmissionDemand(1);
+        }
+    }
+
+    private void dispatch() {
+        while (true) {
+            HttpRequestThread httpRequestThread;
+            lock.lock();
+            try {
+                if (activeQueueSet.isEmpty() || inFlightHttpRequestThreadSet.size() >= schedulingConfiguration.getMaxNumberOfInFlightRequests()) {
+                    return;
+                }
+                SchedulingQueue schedulingQueue = activeQueueSet.pollFirst();
+                ScheduledHttpRequest scheduledHttpRequest = schedulingQueue.pendingRequestSet.pollFirst();
+                pendingRequestSet.remove(scheduledHttpRequest);
+                globalPass = schedulingQueue.pass;
+                schedulingQueue.pass += schedulingQueue.getStride();
+                if (!schedulingQueue.pendingRequestSet.isEmpty()) {
+                    activeQueueSet.add(schedulingQueue);
+                }
+                long waitTimeInNanoseconds = System.nanoTime() - scheduledHttpRequest.enqueuedOnInNanoseconds;
+                schedulingQueue.numberOfDispatchedRequests++;
+                schedulingQueue.totalWaitTimeInNanoseconds += waitTimeInNanoseconds;
+                schedulingQueue.maxWaitTimeInNanoseconds = Math.max(schedulingQueue.maxWaitTimeInNanoseconds, waitTimeInNanoseconds);
+                httpRequestThread = scheduledHttpRequest.httpRequestThread;
+                inFlightHttpRequestThreadSet.add(httpRequestThread);
+            } finally {
+                lock.unlock();
+            }
+            // Launching takes the thread pool lock, so it must happen outside of the scheduler one
+            try {
+                launcher.accept(httpRequestThread);
+            } catch (RuntimeException e) {
+                release(httpRequestThread);
+                failureHandler.accept(httpRequestThread, e);
+                signalDemand();
+            }
+        }
+    }
+
+    private Object resolveQueueKey(HttpRequestThread httpRequestThread) {
+        if (httpRequestThread.getSchedulingQueueKey() != null) {
+            return httpRequestThread.getSchedulingQueueKey();
+        }
+        if (httpRequestThread.getProxifiable() != null) {
+            return httpRequestThread.getProxifiable();
+        }
+        return DEFAULT_QUEUE_KEY;
+    }
+
+    // Fails every request still waiting for a slot and turns any later submission away, those already launched are left to their owner
+    public int shutdown() {
+        List<ScheduledHttpRequest> rejectedScheduledHttpRequestList;
+        lock.lock();
+        try {
+            shutdown = true;
+            rejectedScheduledHttpRequestList = new ArrayList<>(pendingRequestSet);
+            for (ScheduledHttpRequest scheduledHttpRequest : rejectedScheduledHttpRequestList) {
+                removePending(scheduledHttpRequest);
+            }
+            pendingRequestSet.clear();
+            numberOfRejectedRequests += rejectedScheduledHttpRequestList.size();
+            capacityAvailableCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (ScheduledHttpRequest scheduledHttpRequest : rejectedScheduledHttpRequestList) {
+            failureHandler.accept(scheduledHttpRequest.httpRequestThread, new HttpRequestThreadRejectedException("Rejected [" + scheduledHttpRequest.httpRequestThread.getUri() + "], scheduler is shut down"));
+        }
+        return rejectedScheduledHttpRequestList.size();
+    }
+
+    public void setQueueWeight(Object key, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Queue weight must be positive, got [" + weight + "] for [" + key + "]");
+        }
+        lock.lock();
+        try {
+            queueWeightMap.put(key, weight);
+            SchedulingQueue schedulingQueue = queueMap.get(key);
+            if (schedulingQueue != null) {
+                schedulingQueue.weight = weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setSchedulingConfiguration(SchedulingConfiguration schedulingConfiguration) {
+        lock.lock();
+        try {
+            this.schedulingConfiguration = schedulingConfiguration;
+            capacityAvailableCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+
+    public SchedulingConfiguration getSchedulingConfiguration() {
+        return schedulingConfiguration;
+    }
+
+    public int getNumberOfInFlightRequests() {
+        lock.lock();
+        try {
+            return inFlightHttpRequestThreadSet.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getNumberOfPendingRequests() {
+        lock.lock();
+        try {
+            return pendingRequestSet.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int getNumberOfSubmittedRequestsLocked() {
+        return pendingRequestSet.size() + inFlightHttpRequestThreadSet.size();
+    }
+
+    public int getAvailableCapacity() {
+        lock.lock();
+        try {
+            return Math.max(0, schedulingConfiguration.getMaxNumberOfSubmittedRequests() - getNumberOfSubmittedRequestsLocked());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getNumberOfRejectedRequests() {
+        lock.lock();
+        try {
+            return numberOfRejectedRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getNumberOfDroppedRequests() {
+        lock.lock();
+        try {
+            return numberOfDroppedRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void registerSubmissionDemandListener(OnSubmissionDemandListener onSubmissionDemandListener) {
+        submissionDemandListenerList.add(onSubmissionDemandListener);
+    }
+
+    public List<SchedulingQueueStatistics> getQueueStatisticsList() {
+        lock.lock();
+        try {
+            List<SchedulingQueueStatistics> queueStatisticsList = new ArrayList<>();
+            for (SchedulingQueue schedulingQueue : queueMap.values()) {
+                SchedulingQueueStatistics schedulingQueueStatistics = new SchedulingQueueStatistics();
+                schedulingQueueStatistics.setQueueKey(schedulingQueue.key);
+                schedulingQueueStatistics.setWeight(schedulingQueue.weight);
+                schedulingQueueStatistics.setDepth(schedulingQueue.pendingRequestSet.size());
+                schedulingQueueStatistics.setNumberOfDispatchedRequests(schedulingQueue.numberOfDispatchedRequests);
+                schedulingQueueStatistics.setAverageWaitTimeInMilliseconds(schedulingQueue.numberOfDispatchedRequests == 0 ? 0 : schedulingQueue.totalWaitTimeInNanoseconds / 1e6 / schedulingQueue.numberOfDispatchedRequests);
+                schedulingQueueStatistics.setMaxWaitTimeInMilliseconds(schedulingQueue.maxWaitTimeInNanoseconds / 1e6);
+                queueStatisticsList.add(schedulingQueueStatistics);
+            }
+            return queueStatisticsList;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
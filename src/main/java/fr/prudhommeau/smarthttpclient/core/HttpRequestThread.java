@@ -4,54 +4,87 @@ import fr.prudhommeau.commons.StringUtils;
 import fr.prudhommeau.smarthttpclient.bean.HttpMethod;
 import fr.prudhommeau.smarthttpclient.bean.Proxy;
 import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import fr.prudhommeau.smarthttpclient.bean.RedirectConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.RedirectHop;
+import fr.prudhommeau.smarthttpclient.bean.ResponsePolicy;
+import fr.prudhommeau.smarthttpclient.bean.ResponseSink;
+import fr.prudhommeau.smarthttpclient.bean.ResponseSinkResult;
+import fr.prudhommeau.smarthttpclient.exceptions.HttpRequestThreadCancelledException;
+import fr.prudhommeau.smarthttpclient.exceptions.HttpResponseRejectedException;
 import fr.prudhommeau.threadpoolmanager.SmartThread;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.http.*;
+import org.apache.http.client.CircularRedirectException;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.*;
+import org.apache.http.client.RedirectException;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.conn.ConnectTimeoutException;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.*;
-import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.BasicNameValuePair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import javax.net.ssl.SSLException;
 import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipException;
 
 public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnThreadRunningListener, Serializable {
 
+    // Set in the MDC while a request runs, every attempt of the same request logs the same value
+    public static final String MDC_KEY_CORRELATION_ID = "correlationId";
+
     private static final Logger logger = LoggerFactory.getLogger(HttpRequestThread.class);
+    private static final DefaultRedirectStrategy REDIRECT_STRATEGY = DefaultRedirectStrategy.INSTANCE;
+    // Not known to this version of HttpClient's redirect strategy
+    private static final int STATUS_CODE_PERMANENT_REDIRECT = 308;
 
     private final List<Header> responseHeaders = new ArrayList<>();
+    private final List<RedirectHop> redirectHopList = new ArrayList<>();
     private CloseableHttpClient client;
     private HttpClientManager httpClientManager;
     private String uri;
-    private HttpUriRequest uriRequest;
+    // The first URI actually requested, past any cached permanent redirect
+    private String requestUri;
+    // Replaced at each redirect hop, read by whoever aborts the request
+    private volatile HttpUriRequest uriRequest;
+    private volatile Future<?> http2ResponseFuture;
     private T requestId;
     private HashMap<String, String> postBodyParams = new HashMap<>();
     private String body;
+    private byte[] bodyAsByteArray;
+    private ByteBuffer bodyAsByteBuffer;
+    private Path bodyAsPath;
+    private InputStream bodyAsInputStream;
+    private String bodyContentType;
     private boolean retryWhenConnectionFail = true;
     private Proxy proxy;
     private boolean randomProxied;
@@ -62,12 +95,29 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
     private LocalDateTime respondedOn;
     private LocalDateTime readOn;
     private int numberOfRetries;
-    private CookieStore cookieStore = new BasicCookieStore();
+    private CookieStore cookieStore = new ConcurrentCookieStore();
+    private Object cookieSessionKey;
+    private boolean ignoreCookies;
+    private ResponsePolicy responsePolicy;
+    private ResponseSink responseSink;
+    private ResponseSinkResult responseSinkResult;
+    private boolean responseSinkChannelWritten;
     private List<RetryHistory> retryHistoryList = new ArrayList<>();
     private Class<? extends Proxifiable> proxifiable;
     private boolean ignoreErrors;
     private StandardProtocolFamily forcedProtocolFamily;
     private String forcedRemoteAddress;
+    private int requestPriority;
+    private Object schedulingQueueKey;
+    private volatile AdaptiveConcurrencyLimiter.Permit concurrencyLimitPermit;
+    private int responseStatusCode;
+    private boolean retried;
+    // Claimed by whoever decides the outcome first: the response, the retry strategy or a cancellation
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private long journalEntryId;
+    private HttpRequestJournal httpRequestJournal;
+    private String correlationId;
 
     public HttpRequestThread() {
         setName("HttpRequestThread-" + uuid);
@@ -85,6 +135,10 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         void onHttpThreadResponse(HttpRequestThread requestThreadInstance, byte[] response, Map<String, Object> metadata, T requestId);
     }
 
+    public interface OnHttpThreadSinkResponseListener<T> {
+        void onHttpThreadResponse(HttpRequestThread requestThreadInstance, ResponseSinkResult response, Map<String, Object> metadata, T requestId);
+    }
+
     public interface OnHttpThreadErrorListener<T> {
         void onHttpThreadError(Exception exception, HttpRequestThread requestThreadInstance, Map<String, Object> metadata, T requestId);
     }
@@ -101,6 +155,10 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         void apply(HttpRequestThread requestThreadInstance, byte[] response, Map<String, Object> metadata);
     }
 
+    public interface OnStepHttpThreadSinkResponseListener<T> {
+        void apply(HttpRequestThread requestThreadInstance, ResponseSinkResult response, Map<String, Object> metadata);
+    }
+
     public interface OnStepHttpThreadErrorListener<T> {
         void apply(Exception exception, HttpRequestThread requestThreadInstance, Map<String, Object> metadata);
     }
@@ -134,11 +192,10 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
 
     public void buildRequest() {
         RequestConfig requestConfig = RequestConfig.custom()
-                .setCookieSpec(CookieSpecs.STANDARD)
+                .setCookieSpec(ignoreCookies ? CookieSpecs.IGNORE_COOKIES : CookieSpecs.STANDARD)
                 .setConnectTimeout(httpClientManager.getRequestTimeoutInMilliseconds())
                 .setConnectionRequestTimeout(httpClientManager.getRequestTimeoutInMilliseconds())
                 .setSocketTimeout(httpClientManager.getRequestTimeoutInMilliseconds())
-                .setMaxRedirects(HttpClientManager.MAXIMUM_NUMBER_OF_REDIRECTS)
                 .build();
 
         SocketConfig socketConfig = SocketConfig.custom()
@@ -146,66 +203,90 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
                 .build();
 
         HttpClientBuilder clientBuilder = HttpClients.custom()
-                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
                 .setDefaultRequestConfig(requestConfig)
-                .setDefaultSocketConfig(socketConfig)
-                .setDefaultCookieStore(cookieStore);
+                .setDefaultSocketConfig(socketConfig);
 
         clientBuilder.setConnectionManager(httpClientManager.getConnectionManager());
+        // The pool belongs to the manager, closing this client must leave it open
+        clientBuilder.setConnectionManagerShared(true);
+        // Followed by executeFollowingRedirects instead
+        clientBuilder.disableRedirectHandling();
 
         DefaultHttpRequestRetryHandler retryHandler = new DefaultHttpRequestRetryHandler(0, false);
         clientBuilder.setRetryHandler(retryHandler);
 
         context = HttpClientContext.create();
-        context.setCookieStore(cookieStore);
+        if (ignoreCookies) {
+            // Stateless jobs skip both the cookie interceptors and the store
+            clientBuilder.disableCookieManagement();
+        } else if (cookieStore instanceof ConcurrentCookieStore) {
+            context.setCookieStore(((ConcurrentCookieStore) cookieStore).viewFor(context));
+        } else {
+            context.setCookieStore(cookieStore);
+        }
 
         if (proxy != null && proxy.getType() != null) {
             if (proxy.getType() == ProxyType.HTTP) {
-                clientBuilder.setRoutePlanner(new DefaultProxyRoutePlanner(proxy.asHost()));
+                clientBuilder.setRoutePlanner(HttpProxyRoutePlanner.INSTANCE);
                 context.setAttribute(HttpClientManager.HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_HTTP_PROXY, proxy);
+                if (proxy.getUsername() != null) {
+                    httpClientManager.prepareProxyAuthentication(proxy, context);
+                }
             }
             if (proxy.getType() == ProxyType.SOCKS) {
                 context.setAttribute(HttpClientManager.HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_SOCKS_PROXY, proxy);
+                if (httpClientManager.getSocks5Configuration().isRemoteDnsResolution()) {
+                    clientBuilder.setRoutePlanner(Socks5Connector.REMOTE_DNS_ROUTE_PLANNER);
+                }
             }
         }
+        context.setUserToken(HttpClientManager.connectionStateFor(proxy));
 
         if (forcedProtocolFamily != null) {
             context.setAttribute(HttpClientManager.HTTP_CONTEXT_ATTRIBUTE_CUSTOM_KEY_FORCE_PROTOCOL_FAMILY, forcedProtocolFamily);
         }
 
-        HttpHost host = HttpUtils.uriToHttpHost(uri);
+        if (method == null) {
+            method = HttpMethod.GET;
+        }
+        redirectHopList.clear();
+        requestUri = isRedirectCacheable(method.name()) && StringUtils.isNullOrEmpty(forcedRemoteAddress) ? httpClientManager.getRedirectCache().resolve(uri, redirectHopList) : uri;
+
+        HttpHost host = HttpUtils.uriToHttpHost(requestUri);
         String finalUri;
         if (!StringUtils.isNullOrEmpty(forcedRemoteAddress)) {
             customHeaders.put("Host", host.getHostName());
-            finalUri = uri.replace(host.getHostName(), forcedRemoteAddress);
+            finalUri = requestUri.replace(host.getHostName(), forcedRemoteAddress);
         } else {
-            finalUri = uri;
+            finalUri = requestUri;
         }
 
-        if (method == null) {
-            method = HttpMethod.GET;
-        }
         switch (method) {
             case GET:
                 uriRequest = new HttpGet(finalUri);
                 break;
             case POST:
                 uriRequest = new HttpPost(finalUri);
-                List<NameValuePair> params = new ArrayList<>();
-                for (Map.Entry<String, String> entry : postBodyParams.entrySet()) {
-                    params.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
-                }
-                try {
-                    if (body != null) {
-                        ((HttpPost) uriRequest).setEntity(new StringEntity(body));
-                    } else {
-                        ((HttpPost) uriRequest).setEntity(new UrlEncodedFormEntity(params, StandardCharsets.UTF_8));
-                    }
-                } catch (UnsupportedEncodingException e) {
-                    throw new RuntimeException(e);
-                }
+                break;
+            case PUT:
+                uriRequest = new HttpPut(finalUri);
+                break;
+            case PATCH:
+                uriRequest = new HttpPatch(finalUri);
+                break;
+            case DELETE:
+                uriRequest = new HttpDelete(finalUri);
+                break;
+            case HEAD:
+                uriRequest = new HttpHead(finalUri);
                 break;
         }
+        if (uriRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntity requestEntity = buildRequestEntity();
+            if (requestEntity != null) {
+                ((HttpEntityEnclosingRequest) uriRequest).setEntity(requestEntity);
+            }
+        }
 
         for (Map.Entry<String, String> header : customHeaders.entrySet()) {
             uriRequest.setHeader(header.getKey(), header.getValue());
@@ -214,6 +295,42 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         client = clientBuilder.build();
     }
 
+    private HttpEntity buildRequestEntity() {
+        ContentType contentType = bodyContentType != null ? ContentType.parse(bodyContentType) : ContentType.APPLICATION_OCTET_STREAM;
+        if (bodyAsByteArray != null) {
+            return new ByteArrayEntity(bodyAsByteArray, contentType);
+        }
+        if (bodyAsByteBuffer != null) {
+            return new ByteBufferEntity(bodyAsByteBuffer, contentType);
+        }
+        if (bodyAsPath != null) {
+            return new FileEntity(bodyAsPath.toFile(), contentType);
+        }
+        if (bodyAsInputStream != null) {
+            // Unknown length, sent with chunked transfer coding
+            return new InputStreamEntity(bodyAsInputStream, -1, contentType);
+        }
+        try {
+            if (body != null) {
+                return bodyContentType != null ? new StringEntity(body, contentType) : new StringEntity(body);
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        if (method == HttpMethod.POST || !postBodyParams.isEmpty()) {
+            List<NameValuePair> params = new ArrayList<>();
+            for (Map.Entry<String, String> entry : postBodyParams.entrySet()) {
+                params.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
+            }
+            return new UrlEncodedFormEntity(params, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    public boolean isBodyRepeatable() {
+        return bodyAsInputStream == null;
+    }
+
     public void launchRequest(HttpClientManager httpClientManager) {
         setThreadPool(httpClientManager.getSmartThreadPool());
         setListener(this);
@@ -222,52 +339,353 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
 
     @Override
     public void onThreadRunning(SmartThread smartThreadInstance, Map<String, Object> metadata) {
+        MDC.put(MDC_KEY_CORRELATION_ID, getCorrelationId());
+        try {
+            executeRequest(metadata);
+        } finally {
+            MDC.remove(MDC_KEY_CORRELATION_ID);
+            closeClient();
+            httpClientManager.onHttpRequestThreadCompleted(this);
+        }
+    }
+
+    private void executeRequest(Map<String, Object> metadata) {
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimitPermit;
+        if (permit != null) {
+            permit.markStarted();
+        }
+        if (cancelled) {
+            return;
+        }
+        Http2Transport http2Transport = httpClientManager.getHttp2Transport();
+        if (http2Transport != null && http2Transport.isEligible(this)) {
+            onHttp2ThreadRunning(http2Transport, metadata);
+            return;
+        }
         requestedOn = LocalDateTime.now();
-        try (CloseableHttpResponse response = client.execute(uriRequest, context)) {
+        httpClientManager.getConnectionStatistics().incrementNumberOfExecutedRequests();
+        byte[] responseAsByteArray = null;
+        Header[] dispatchedHeaders = null;
+        try (CloseableHttpResponse response = executeFollowingRedirects()) {
             if (isInterrupted()) {
                 return;
             }
             respondedOn = LocalDateTime.now();
-            byte[] responseAsByteArray = response.getEntity().getContent().readAllBytes();
+            HttpEntity responseEntity = response.getEntity();
+            int statusCode = response.getStatusLine().getStatusCode();
+            ResponsePolicy currentResponsePolicy = resolveResponsePolicy();
+            long maxBodySizeInBytes = currentResponsePolicy != null ? currentResponsePolicy.getMaxBodySizeInBytes() : ResponsePolicy.DEFAULT_MAX_BODY_SIZE_IN_BYTES;
+            String rejectionReason = null;
+            if (currentResponsePolicy != null) {
+                Header contentTypeHeader = responseEntity != null ? responseEntity.getContentType() : null;
+                rejectionReason = ResponseGuard.findRejectionReason(currentResponsePolicy, statusCode, contentTypeHeader != null ? contentTypeHeader.getValue() : null, responseEntity != null ? responseEntity.getContentLength() : 0);
+            }
+            if (rejectionReason == null) {
+                InputStream responseContent = responseEntity != null ? responseEntity.getContent() : InputStream.nullInputStream();
+                if (responseSink != null) {
+                    responseSinkChannelWritten = responseSink.getPath() == null;
+                    responseSinkResult = ResponseSinkWriter.write(responseContent, responseSink, maxBodySizeInBytes);
+                } else {
+                    responseAsByteArray = ResponseGuard.readBody(responseContent, maxBodySizeInBytes);
+                }
+                if (responseAsByteArray == null && responseSinkResult == null) {
+                    rejectionReason = "body exceeds [" + maxBodySizeInBytes + "] bytes";
+                }
+            }
+            if (rejectionReason != null) {
+                // A short remainder is cheaper to read than a new connection, anything longer is cut off with the connection
+                long maxDrainSizeInBytes = currentResponsePolicy != null ? currentResponsePolicy.getMaxDrainSizeInBytes() : ResponsePolicy.DEFAULT_MAX_DRAIN_SIZE_IN_BYTES;
+                if (responseEntity != null && (responseEntity.getContentLength() > maxDrainSizeInBytes || !ResponseGuard.drain(responseEntity.getContent(), maxDrainSizeInBytes))) {
+                    abortRequest();
+                }
+                rejectResponse(statusCode, rejectionReason);
+                return;
+            }
             if (isInterrupted()) {
                 return;
             }
             readOn = LocalDateTime.now();
-            for (OnHttpThreadResponseListener onHttpThreadResponseListener : httpClientManager.getHttpThreadResponseListenerList()) {
-                String trimmedResponseAsString = HttpUtils.trim(HttpUtils.readHttpResponseContent(responseAsByteArray));
-                onHttpThreadResponseListener.onHttpThreadResponse(this, trimmedResponseAsString, metadata, requestId);
+            if (!settled.compareAndSet(false, true)) {
+                return;
             }
-            if (httpClientManager.getStepHttpThreadResponseListenerMap().containsKey(requestId)) {
-                String trimmedResponseAsString = HttpUtils.trim(HttpUtils.readHttpResponseContent(responseAsByteArray));
-                httpClientManager.getStepHttpThreadResponseListenerMap().get(requestId).apply(this, trimmedResponseAsString, metadata);
+            responseStatusCode = statusCode;
+            onConcurrencyLimitResponse(responseStatusCode);
+            dispatchedHeaders = response.getAllHeaders();
+        } catch (TruncatedChunkException | SocketException | SSLException | ConnectTimeoutException | NoHttpResponseException | ConnectionClosedException | ClientProtocolException | SocketTimeoutException | ZipException | EOFException e) {
+            executeHttpRequestThreadRetryStrategy(e);
+            logger.debug("An exception occurred : {} - {}", e, this);
+        } catch (Exception e) {
+            // An aborted request fails on its own thread, its outcome has already been handled by whoever aborted it
+            if (settled.get()) {
+                logger.debug("Aborted request ended with : {} - {}", e, this);
+                return;
             }
-            for (OnHttpThreadDetailedResponseListener onHttpThreadDetailedResponseListener : httpClientManager.getHttpThreadDetailedResponseListenerList()) {
-                String responseAsString = HttpUtils.readHttpResponseContent(responseAsByteArray);
-                responseHeaders.addAll(Arrays.asList(response.getAllHeaders()));
-                onHttpThreadDetailedResponseListener.onHttpThreadResponse(this, responseAsString, metadata, requestId);
+            notifyErrorListeners(e);
+            throw new RuntimeException(e);
+        }
+        // Only once the response is closed, a slow listener must not keep its connection leased
+        if (dispatchedHeaders != null) {
+            dispatch(responseAsByteArray, dispatchedHeaders, metadata);
+        }
+    }
+
+    // Follows redirects itself rather than leaving them to HttpClient, so that every hop is visible, timed against its own route and cacheable
+    CloseableHttpResponse executeFollowingRedirects() throws IOException {
+        RedirectConfiguration redirectConfiguration = httpClientManager.getRedirectConfiguration();
+        while (true) {
+            HttpUriRequest currentUriRequest = uriRequest;
+            long hopStartedOnInNanoseconds = System.nanoTime();
+            CloseableHttpResponse response = client.execute(currentUriRequest, context);
+            double hopDurationInMilliseconds = (System.nanoTime() - hopStartedOnInNanoseconds) / 1_000_000.0;
+            if (proxy != null && proxy.getType() == ProxyType.HTTP) {
+                httpClientManager.onHttpProxyExchangeCompleted(proxy, context);
             }
-            if (httpClientManager.getStepHttpThreadDetailedResponseListenerMap().containsKey(requestId)) {
-                String responseAsString = HttpUtils.readHttpResponseContent(responseAsByteArray);
-                responseHeaders.addAll(Arrays.asList(response.getAllHeaders()));
-                httpClientManager.getStepHttpThreadDetailedResponseListenerMap().get(requestId).apply(this, responseAsString, metadata);
+            if (proxy != null && proxifiable != null) {
+                httpClientManager.getProxyPool().recordResponseTime(proxy, proxifiable, hopDurationInMilliseconds);
             }
-            for (OnHttpThreadRawResponseListener onHttpThreadRawResponseListener : httpClientManager.getHttpThreadRawResponseListenerList()) {
-                onHttpThreadRawResponseListener.onHttpThreadResponse(this, responseAsByteArray, metadata, requestId);
+            boolean completed = false;
+            try {
+                if (!isRedirected(currentUriRequest, response)) {
+                    completed = true;
+                    return response;
+                }
+                if (redirectHopList.size() >= redirectConfiguration.getMaxNumberOfRedirects()) {
+                    throw new ClientProtocolException(new RedirectException("Maximum redirects (" + redirectConfiguration.getMaxNumberOfRedirects() + ") exceeded"));
+                }
+                HttpUriRequest redirectUriRequest = REDIRECT_STRATEGY.getRedirect(currentUriRequest, response, context);
+                // A 307 comes back as a copy of the previous request, headers included, as in RedirectExec
+                if (!redirectUriRequest.headerIterator().hasNext()) {
+                    redirectUriRequest.setHeaders(currentUriRequest.getAllHeaders());
+                }
+                // The Host of the previous hop would name the wrong virtual host on the next one
+                redirectUriRequest.removeHeaders(HttpHeaders.HOST);
+                Header cacheControlHeader = response.getFirstHeader(HttpHeaders.CACHE_CONTROL);
+                onRedirect(currentUriRequest.getMethod(), currentUriRequest.getURI().toString(), response.getStatusLine().getStatusCode(), redirectUriRequest.getURI().toString(), cacheControlHeader != null ? cacheControlHeader.getValue() : null, hopDurationInMilliseconds);
+                uriRequest = redirectUriRequest;
+                if (settled.get()) {
+                    // Whoever settled the request aborted the previous hop, this one must not go out either
+                    redirectUriRequest.abort();
+                }
+            } catch (ProtocolException e) {
+                throw new ClientProtocolException(e);
+            } finally {
+                if (!completed) {
+                    releaseRedirectResponse(response);
+                }
             }
-            if (httpClientManager.getStepHttpThreadRawResponseListenerMap().containsKey(requestId)) {
-                httpClientManager.getStepHttpThreadRawResponseListenerMap().get(requestId).apply(this, responseAsByteArray, metadata);
+        }
+    }
+
+    private boolean isRedirected(HttpUriRequest request, HttpResponse response) throws ProtocolException {
+        if (response.getStatusLine().getStatusCode() == STATUS_CODE_PERMANENT_REDIRECT) {
+            return response.containsHeader(HttpHeaders.LOCATION) && isRedirectCacheable(request.getMethod());
+        }
+        return REDIRECT_STRATEGY.isRedirected(request, response, context);
+    }
+
+    // A short body is read to its end so that the connection goes back to the pool, a longer one is closed with its connection
+    private static void releaseRedirectResponse(CloseableHttpResponse response) throws IOException {
+        try {
+            HttpEntity entity = response.getEntity();
+            if (entity != null && entity.getContentLength() <= ResponsePolicy.DEFAULT_MAX_DRAIN_SIZE_IN_BYTES) {
+                ResponseGuard.drain(entity.getContent(), ResponsePolicy.DEFAULT_MAX_DRAIN_SIZE_IN_BYTES);
             }
-        } catch (TruncatedChunkException | SocketException | SSLException | ConnectTimeoutException | NoHttpResponseException | ConnectionClosedException | ClientProtocolException | SocketTimeoutException | ZipException | EOFException e) {
+        } finally {
+            response.close();
+        }
+    }
+
+    private void onRedirect(String methodName, String fromUri, int statusCode, String location, String cacheControl, double durationInMilliseconds) {
+        redirectHopList.add(RedirectCache.createRedirectHop(fromUri, statusCode, location, durationInMilliseconds, false));
+        boolean permanent = statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == STATUS_CODE_PERMANENT_REDIRECT;
+        boolean storable = cacheControl == null || !(cacheControl.toLowerCase(Locale.ROOT).contains("no-store") || cacheControl.toLowerCase(Locale.ROOT).contains("no-cache"));
+        if (permanent && storable && isRedirectCacheable(methodName)) {
+            httpClientManager.getRedirectCache().put(fromUri, statusCode, location);
+        }
+    }
+
+    // Also the only methods a 308 is followed for, any other would need its body sent again
+    private static boolean isRedirectCacheable(String methodName) {
+        return HttpMethod.GET.name().equals(methodName) || HttpMethod.HEAD.name().equals(methodName);
+    }
+
+    // Same hops as executeFollowingRedirects, the HTTP/2 response is only wrapped so that the redirect strategy can read its status and headers
+    private java.net.http.HttpResponse<byte[]> sendHttp2FollowingRedirects(Http2Transport http2Transport) throws IOException, InterruptedException {
+        RedirectConfiguration redirectConfiguration = httpClientManager.getRedirectConfiguration();
+        HttpUriRequest currentUriRequest = uriRequest;
+        while (true) {
+            long hopStartedOnInNanoseconds = System.nanoTime();
+            java.net.http.HttpResponse<byte[]> response = http2Transport.send(this, currentUriRequest.getURI(), HttpMethod.valueOf(currentUriRequest.getMethod()), httpClientManager.getRequestTimeoutInMilliseconds());
+            double hopDurationInMilliseconds = (System.nanoTime() - hopStartedOnInNanoseconds) / 1_000_000.0;
+            HttpResponse redirectResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, response.statusCode(), null);
+            redirectResponse.setHeaders(http2Transport.toHeaders(response));
+            try {
+                if (!isRedirected(currentUriRequest, redirectResponse)) {
+                    return response;
+                }
+                if (redirectHopList.size() >= redirectConfiguration.getMaxNumberOfRedirects()) {
+                    throw new ClientProtocolException(new RedirectException("Maximum redirects (" + redirectConfiguration.getMaxNumberOfRedirects() + ") exceeded"));
+                }
+                // Relative locations are resolved against the target host of the hop
+                context.setTargetHost(HttpUtils.uriToHttpHost(currentUriRequest.getURI().toString()));
+                HttpUriRequest redirectUriRequest = REDIRECT_STRATEGY.getRedirect(currentUriRequest, redirectResponse, context);
+                Header cacheControlHeader = redirectResponse.getFirstHeader(HttpHeaders.CACHE_CONTROL);
+                onRedirect(currentUriRequest.getMethod(), currentUriRequest.getURI().toString(), response.statusCode(), redirectUriRequest.getURI().toString(), cacheControlHeader != null ? cacheControlHeader.getValue() : null, hopDurationInMilliseconds);
+                currentUriRequest = redirectUriRequest;
+            } catch (ProtocolException e) {
+                throw new ClientProtocolException(e);
+            }
+            if (settled.get()) {
+                // Whoever settled the request cancelled the previous hop, this one must not go out either
+                throw new InterruptedIOException("Request to [" + uri + "] settled while following its redirects");
+            }
+        }
+    }
+
+    private void onHttp2ThreadRunning(Http2Transport http2Transport, Map<String, Object> metadata) {
+        requestedOn = LocalDateTime.now();
+        java.net.http.HttpResponse<byte[]> response;
+        try {
+            response = sendHttp2FollowingRedirects(http2Transport);
+        } catch (IOException e) {
             executeHttpRequestThreadRetryStrategy(e);
-            logger.debug("An exception occurred : " + e.getClass() + " - " + e.getMessage() + " - " + this);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            logger.debug("An exception occurred : {} - {}", e, this);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (isInterrupted()) {
+            return;
+        }
+        respondedOn = LocalDateTime.now();
+        readOn = respondedOn;
+        ResponsePolicy currentResponsePolicy = resolveResponsePolicy();
+        if (currentResponsePolicy != null) {
+            String rejectionReason = http2Transport.findRejectionReason(currentResponsePolicy, response);
+            if (rejectionReason != null) {
+                rejectResponse(response.statusCode(), rejectionReason);
+                return;
+            }
+        }
+        if (!settled.compareAndSet(false, true)) {
+            return;
+        }
+        responseStatusCode = response.statusCode();
+        onConcurrencyLimitResponse(responseStatusCode);
+        dispatch(response.body(), http2Transport.toHeaders(response), metadata);
+    }
+
+    // Runs the listeners on the manager's dispatcher when there is one, in order for a given request id, inline otherwise
+    private void dispatch(byte[] responseAsByteArray, Header[] headers, Map<String, Object> metadata) {
+        ResponseSinkResult currentResponseSinkResult = responseSinkResult;
+        Runnable dispatch = () -> {
+            if (currentResponseSinkResult != null) {
+                dispatchSinkResponse(currentResponseSinkResult, headers, metadata);
+                return;
+            }
+            try {
+                dispatchResponse(responseAsByteArray, headers, metadata);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        ListenerDispatcher listenerDispatcher = httpClientManager.getListenerDispatcher();
+        if (listenerDispatcher != null) {
+            listenerDispatcher.dispatch(requestId, dispatch);
+        } else {
+            dispatch.run();
+        }
+    }
+
+    private void rejectResponse(int statusCode, String rejectionReason) {
+        if (!settled.compareAndSet(false, true)) {
+            return;
+        }
+        responseStatusCode = statusCode;
+        onConcurrencyLimitResponse(statusCode);
+        HttpResponseRejectedException exception = new HttpResponseRejectedException("Response from [" + uri + "] rejected, " + rejectionReason, statusCode);
+        if (!notifyErrorListeners(exception) && !ignoreErrors) {
+            logger.warn("{} - {}", exception.getMessage(), this);
+        }
+    }
+
+    ResponsePolicy resolveResponsePolicy() {
+        return responsePolicy != null ? responsePolicy : httpClientManager.getResponsePolicy();
+    }
+
+    private void onConcurrencyLimitResponse(int statusCode) {
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimitPermit;
+        if (permit != null) {
+            permit.onResponse(statusCode);
+        }
+    }
+
+    private void dispatchResponse(byte[] responseAsByteArray, Header[] headers, Map<String, Object> metadata) throws IOException {
+        responseHeaders.addAll(Arrays.asList(headers));
+        HttpRequestPipeline.Ticket pipelineTicket = (HttpRequestPipeline.Ticket) metadata.get(HttpRequestPipeline.METADATA_KEY_TICKET);
+        if (pipelineTicket != null) {
+            pipelineTicket.onResponse(this, responseAsByteArray);
+        }
+        for (OnHttpThreadResponseListener onHttpThreadResponseListener : httpClientManager.getHttpThreadResponseListenerList()) {
+            String trimmedResponseAsString = HttpUtils.trim(HttpUtils.readHttpResponseContent(responseAsByteArray));
+            onHttpThreadResponseListener.onHttpThreadResponse(this, trimmedResponseAsString, metadata, requestId);
+        }
+        if (httpClientManager.getStepHttpThreadResponseListenerMap().containsKey(requestId)) {
+            String trimmedResponseAsString = HttpUtils.trim(HttpUtils.readHttpResponseContent(responseAsByteArray));
+            httpClientManager.getStepHttpThreadResponseListenerMap().get(requestId).apply(this, trimmedResponseAsString, metadata);
+        }
+        for (OnHttpThreadDetailedResponseListener onHttpThreadDetailedResponseListener : httpClientManager.getHttpThreadDetailedResponseListenerList()) {
+            String responseAsString = HttpUtils.readHttpResponseContent(responseAsByteArray);
+            onHttpThreadDetailedResponseListener.onHttpThreadResponse(this, responseAsString, metadata, requestId);
+        }
+        if (httpClientManager.getStepHttpThreadDetailedResponseListenerMap().containsKey(requestId)) {
+            String responseAsString = HttpUtils.readHttpResponseContent(responseAsByteArray);
+            httpClientManager.getStepHttpThreadDetailedResponseListenerMap().get(requestId).apply(this, responseAsString, metadata);
+        }
+        for (OnHttpThreadRawResponseListener onHttpThreadRawResponseListener : httpClientManager.getHttpThreadRawResponseListenerList()) {
+            onHttpThreadRawResponseListener.onHttpThreadResponse(this, responseAsByteArray, metadata, requestId);
+        }
+        if (httpClientManager.getStepHttpThreadRawResponseListenerMap().containsKey(requestId)) {
+            httpClientManager.getStepHttpThreadRawResponseListenerMap().get(requestId).apply(this, responseAsByteArray, metadata);
+        }
+    }
+
+    // Only sink listeners hear about a sunk response, the body never exists as bytes or text
+    private void dispatchSinkResponse(ResponseSinkResult responseSinkResult, Header[] headers, Map<String, Object> metadata) {
+        responseHeaders.addAll(Arrays.asList(headers));
+        HttpRequestPipeline.Ticket pipelineTicket = (HttpRequestPipeline.Ticket) metadata.get(HttpRequestPipeline.METADATA_KEY_TICKET);
+        if (pipelineTicket != null) {
+            pipelineTicket.onResponse(this, null);
+        }
+        for (OnHttpThreadSinkResponseListener onHttpThreadSinkResponseListener : httpClientManager.getHttpThreadSinkResponseListenerList()) {
+            onHttpThreadSinkResponseListener.onHttpThreadResponse(this, responseSinkResult, metadata, requestId);
+        }
+        if (httpClientManager.getStepHttpThreadSinkResponseListenerMap().containsKey(requestId)) {
+            httpClientManager.getStepHttpThreadSinkResponseListenerMap().get(requestId).apply(this, responseSinkResult, metadata);
         }
     }
 
     public void executeHttpRequestThreadRetryStrategy(Exception exception) {
+        if (!settled.compareAndSet(false, true)) {
+            return;
+        }
+        // The timeout timer gets here while the request is still on the wire, the socket and the pool lease go back right away
+        abortRequest();
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimitPermit;
+        if (permit != null) {
+            permit.onDropped();
+        }
         if (randomProxied && proxy != null) {
-            HttpClientManager.getProxyPool().incrementNumberOfConnectionFailures(proxy, proxifiable);
+            httpClientManager.reportProxyConnectionFailure(proxy, proxifiable);
+        }
+        if (retryWhenConnectionFail && !isBodyRepeatable()) {
+            logger.warn("Thread [{}] has a streamed request body that cannot be replayed... Not retrying...", this);
+            retryWhenConnectionFail = false;
+        }
+        if (retryWhenConnectionFail && responseSinkChannelWritten) {
+            logger.warn("Thread [{}] has already written part of its response to a sink channel that cannot be rewound... Not retrying...", this);
+            retryWhenConnectionFail = false;
         }
         if (retryWhenConnectionFail) {
             RetryHistory retryHistory = new RetryHistory();
@@ -276,7 +694,7 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
             retryHistoryList.add(retryHistory);
 
             if (numberOfRetries >= HttpClientManager.NUMBER_OF_RETRIES_WARNING_THRESHOLD) {
-                logger.warn("Thread [" + this + "] has been retried more than [" + HttpClientManager.NUMBER_OF_RETRIES_WARNING_THRESHOLD + "]... Retry a last time without proxy...");
+                logger.warn("Thread [{}] has been retried more than [{}]... Retry a last time without proxy...", this, HttpClientManager.NUMBER_OF_RETRIES_WARNING_THRESHOLD);
                 proxy = null;
                 randomProxied = false;
                 retryWhenConnectionFail = false;
@@ -285,7 +703,66 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
             retryWithAnotherThread();
         }
 
+        boolean hasErrorBeenCatched = notifyErrorListeners(exception);
+        if (!hasErrorBeenCatched && !ignoreErrors && !retryWhenConnectionFail) {
+            throw new RuntimeException(exception);
+        }
+
+        if (!retryWhenConnectionFail) {
+            httpClientManager.getSmartThreadPool().interruptSmartThread(this);
+        }
+    }
+
+    boolean cancel() {
+        cancelled = true;
+        if (!settled.compareAndSet(false, true)) {
+            return false;
+        }
+        abortRequest();
+        notifyErrorListeners(new HttpRequestThreadCancelledException("Request [" + uri + "] has been cancelled"));
+        return true;
+    }
+
+    private void closeClient() {
+        CloseableHttpClient currentClient = client;
+        if (currentClient != null) {
+            try {
+                currentClient.close();
+            } catch (IOException e) {
+                logger.debug("Unable to close client : {} - {}", e, this);
+            }
+        }
+    }
+
+    private void abortRequest() {
+        HttpUriRequest currentUriRequest = uriRequest;
+        if (currentUriRequest != null) {
+            currentUriRequest.abort();
+        }
+        Future<?> currentHttp2ResponseFuture = http2ResponseFuture;
+        if (currentHttp2ResponseFuture != null) {
+            currentHttp2ResponseFuture.cancel(true);
+        }
+    }
+
+    // Settled before the exchange even started, by a cancel or the timer, means it must not go on
+    void setHttp2ResponseFuture(Future<?> http2ResponseFuture) {
+        this.http2ResponseFuture = http2ResponseFuture;
+        if (http2ResponseFuture != null && settled.get()) {
+            http2ResponseFuture.cancel(true);
+        }
+    }
+
+    boolean notifyErrorListeners(Exception exception) {
         boolean hasErrorBeenCatched = false;
+        HttpRequestPipeline.Ticket pipelineTicket = (HttpRequestPipeline.Ticket) metadata.get(HttpRequestPipeline.METADATA_KEY_TICKET);
+        if (pipelineTicket != null) {
+            // Only the last attempt completes the pipeline entry, a retried thread has already handed over to its successor
+            if (!retried) {
+                pipelineTicket.onError(this, exception);
+            }
+            hasErrorBeenCatched = true;
+        }
         for (OnHttpThreadErrorListener onHttpThreadErrorListener : httpClientManager.getHttpThreadErrorListenerList()) {
             onHttpThreadErrorListener.onHttpThreadError(exception, this, metadata, requestId);
             hasErrorBeenCatched = true;
@@ -294,19 +771,13 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
             httpClientManager.getStepHttpThreadErrorListenerMap().get(requestId).apply(exception, this, metadata);
             hasErrorBeenCatched = true;
         }
-        if (!hasErrorBeenCatched && !ignoreErrors && !retryWhenConnectionFail) {
-            throw new RuntimeException(exception);
-        }
-
-        if (!retryWhenConnectionFail) {
-            httpClientManager.getSmartThreadPool().interruptSmartThread(this);
-        }
+        return hasErrorBeenCatched;
     }
 
     @Override
     public void retryWithAnotherThread() {
         if (numberOfRetries == HttpClientManager.NUMBER_OF_RETRIES_WARNING_THRESHOLD) {
-            logger.warn("Thread [" + this + "] has been retried more than [" + HttpClientManager.NUMBER_OF_RETRIES_WARNING_THRESHOLD + "]... Retry a last time without proxy...");
+            logger.warn("Thread [{}] has been retried more than [{}]... Retry a last time without proxy...", this, HttpClientManager.NUMBER_OF_RETRIES_WARNING_THRESHOLD);
             proxy = null;
             randomProxied = false;
         } else if (numberOfRetries > HttpClientManager.NUMBER_OF_RETRIES_WARNING_THRESHOLD) {
@@ -318,12 +789,20 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         httpRequestThread.setRequestId(requestId);
         httpRequestThread.setPostBodyParams(postBodyParams);
         httpRequestThread.setBody(body);
+        httpRequestThread.setBodyAsByteArray(bodyAsByteArray);
+        httpRequestThread.setBodyAsByteBuffer(bodyAsByteBuffer);
+        httpRequestThread.setBodyAsPath(bodyAsPath);
+        httpRequestThread.setBodyContentType(bodyContentType);
         httpRequestThread.setRetryWhenConnectionFail(retryWhenConnectionFail);
         httpRequestThread.setCustomHeaders(customHeaders);
         httpRequestThread.setContext(context);
         httpRequestThread.setRandomProxied(randomProxied);
         httpRequestThread.setNumberOfRetries(numberOfRetries + 1);
         httpRequestThread.setCookieStore(cookieStore);
+        httpRequestThread.setCookieSessionKey(cookieSessionKey);
+        httpRequestThread.setIgnoreCookies(ignoreCookies);
+        httpRequestThread.setResponsePolicy(responsePolicy);
+        httpRequestThread.setResponseSink(responseSink);
         httpRequestThread.setMethod(method);
         httpRequestThread.setMetadata(metadata);
         httpRequestThread.setRetryHistoryList(retryHistoryList);
@@ -331,7 +810,25 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         httpRequestThread.setIgnoreErrors(ignoreErrors);
         httpRequestThread.setForcedProtocolFamily(forcedProtocolFamily);
         httpRequestThread.setForcedRemoteAddress(forcedRemoteAddress);
-        httpClientManager.launchHttpRequestThread(httpRequestThread);
+        httpRequestThread.setRequestPriority(requestPriority);
+        httpRequestThread.setSchedulingQueueKey(schedulingQueueKey);
+        httpRequestThread.setJournalEntryId(journalEntryId);
+        httpRequestThread.setHttpRequestJournal(httpRequestJournal);
+        httpRequestThread.setCorrelationId(getCorrelationId());
+        httpClientManager.onHttpRequestThreadRetried(httpRequestThread);
+        try {
+            httpClientManager.launchHttpRequestThread(httpRequestThread);
+        } catch (RuntimeException e) {
+            // A closing manager or an emptied proxy pool, the successor never ran so this thread stays the last attempt and reports the failure itself
+            logger.warn("Unable to retry thread [{}] : {} - {}", this, e.getClass(), e.getMessage());
+            retryWhenConnectionFail = false;
+            return;
+        }
+        // Only now, a retried thread leaves its pipeline ticket and its journal entry to the successor
+        retried = true;
+        if (cancelled) {
+            httpRequestThread.cancel();
+        }
 
         httpClientManager.getSmartThreadPool().interruptSmartThread(this);
     }
@@ -384,6 +881,15 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         return readOn;
     }
 
+    public String getRequestUri() {
+        return requestUri != null ? requestUri : uri;
+    }
+
+    // Cached hops first, then the ones followed live, oldest first; the final response is not part of it
+    public List<RedirectHop> getRedirectHopList() {
+        return redirectHopList;
+    }
+
     public HttpUriRequest getUriRequest() {
         return uriRequest;
     }
@@ -400,6 +906,26 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         return body;
     }
 
+    public byte[] getBodyAsByteArray() {
+        return bodyAsByteArray;
+    }
+
+    public ByteBuffer getBodyAsByteBuffer() {
+        return bodyAsByteBuffer;
+    }
+
+    public Path getBodyAsPath() {
+        return bodyAsPath;
+    }
+
+    public InputStream getBodyAsInputStream() {
+        return bodyAsInputStream;
+    }
+
+    public String getBodyContentType() {
+        return bodyContentType;
+    }
+
     public boolean isRetryWhenConnectionFail() {
         return retryWhenConnectionFail;
     }
@@ -484,6 +1010,26 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         this.body = body;
     }
 
+    public void setBodyAsByteArray(byte[] bodyAsByteArray) {
+        this.bodyAsByteArray = bodyAsByteArray;
+    }
+
+    public void setBodyAsByteBuffer(ByteBuffer bodyAsByteBuffer) {
+        this.bodyAsByteBuffer = bodyAsByteBuffer;
+    }
+
+    public void setBodyAsPath(Path bodyAsPath) {
+        this.bodyAsPath = bodyAsPath;
+    }
+
+    public void setBodyAsInputStream(InputStream bodyAsInputStream) {
+        this.bodyAsInputStream = bodyAsInputStream;
+    }
+
+    public void setBodyContentType(String bodyContentType) {
+        this.bodyContentType = bodyContentType;
+    }
+
     public void setProxy(Proxy proxy) {
         this.proxy = proxy;
     }
@@ -536,10 +1082,111 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
         this.forcedRemoteAddress = forcedRemoteAddress;
     }
 
+    AdaptiveConcurrencyLimiter.Permit getConcurrencyLimitPermit() {
+        return concurrencyLimitPermit;
+    }
+
+    void setConcurrencyLimitPermit(AdaptiveConcurrencyLimiter.Permit concurrencyLimitPermit) {
+        this.concurrencyLimitPermit = concurrencyLimitPermit;
+    }
+
+    public int getResponseStatusCode() {
+        return responseStatusCode;
+    }
+
+    public boolean isRetried() {
+        return retried;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getRequestPriority() {
+        return requestPriority;
+    }
+
+    public void setRequestPriority(int requestPriority) {
+        this.requestPriority = requestPriority;
+    }
+
+    public Object getSchedulingQueueKey() {
+        return schedulingQueueKey;
+    }
+
+    public void setSchedulingQueueKey(Object schedulingQueueKey) {
+        this.schedulingQueueKey = schedulingQueueKey;
+    }
+
+    long getJournalEntryId() {
+        return journalEntryId;
+    }
+
+    void setJournalEntryId(long journalEntryId) {
+        this.journalEntryId = journalEntryId;
+    }
+
+    HttpRequestJournal getHttpRequestJournal() {
+        return httpRequestJournal;
+    }
+
+    void setHttpRequestJournal(HttpRequestJournal httpRequestJournal) {
+        this.httpRequestJournal = httpRequestJournal;
+    }
+
+    public Object getCookieSessionKey() {
+        return cookieSessionKey;
+    }
+
+    public void setCookieSessionKey(Object cookieSessionKey) {
+        this.cookieSessionKey = cookieSessionKey;
+    }
+
+    public boolean isIgnoreCookies() {
+        return ignoreCookies;
+    }
+
+    public void setIgnoreCookies(boolean ignoreCookies) {
+        this.ignoreCookies = ignoreCookies;
+    }
+
+    public ResponsePolicy getResponsePolicy() {
+        return responsePolicy;
+    }
+
+    public void setResponsePolicy(ResponsePolicy responsePolicy) {
+        this.responsePolicy = responsePolicy;
+    }
+
+    // Defaults to the identifier of the first attempt
+    public String getCorrelationId() {
+        if (correlationId == null) {
+            correlationId = String.valueOf(uuid);
+        }
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public ResponseSink getResponseSink() {
+        return responseSink;
+    }
+
+    public void setResponseSink(ResponseSink responseSink) {
+        this.responseSink = responseSink;
+    }
+
+    public ResponseSinkResult getResponseSinkResult() {
+        return responseSinkResult;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
                 .append("uri", uri)
+                .append("correlationId", correlationId)
                 .append("requestId", requestId)
                 .append("proxy", proxy)
                 .append("method", method)
@@ -550,6 +1197,12 @@ public class HttpRequestThread<T> extends SmartThread implements SmartThread.OnT
                 .append("proxifiable", proxifiable)
                 .append("forcedProtocolFamily", forcedProtocolFamily)
                 .append("forcedRemoteAddress", forcedRemoteAddress)
+                .append("requestPriority", requestPriority)
+                .append("schedulingQueueKey", schedulingQueueKey)
+                .append("cookieSessionKey", cookieSessionKey)
+                .append("ignoreCookies", ignoreCookies)
+                .append("responsePolicy", responsePolicy)
+                .append("responseSink", responseSink)
                 .toString();
     }
 
@@ -0,0 +1,156 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.ListenerDispatchConfiguration;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ListenerDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerDispatcher.class);
+    private static final String LISTENER_DISPATCHER_THREAD_NAME = "HttpListenerDispatcher";
+
+    private final ListenerDispatchConfiguration listenerDispatchConfiguration;
+    private final ExecutorService executorService;
+    private final boolean executorServiceOwned;
+    private final Semaphore pendingDispatchSemaphore;
+    // Only keys with a dispatch running or waiting are present, the queue holds what comes after the running one
+    private final Map<Object, ArrayDeque<Runnable>> orderedDispatchQueueMap = new HashMap<>();
+    private final AtomicLong numberOfDispatches = new AtomicLong();
+    private final AtomicLong numberOfFailedDispatches = new AtomicLong();
+
+    public ListenerDispatcher(ListenerDispatchConfiguration listenerDispatchConfiguration) {
+        this(listenerDispatchConfiguration, Executors.newFixedThreadPool(listenerDispatchConfiguration.getNumberOfThreads(), runnable -> {
+            Thread thread = new Thread(runnable, LISTENER_DISPATCHER_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    public ListenerDispatcher(ListenerDispatchConfiguration listenerDispatchConfiguration, ExecutorService executorService) {
+        this(listenerDispatchConfiguration, executorService, false);
+    }
+
+    private ListenerDispatcher(ListenerDispatchConfiguration listenerDispatchConfiguration, ExecutorService executorService, boolean executorServiceOwned) {
+        this.listenerDispatchConfiguration = listenerDispatchConfiguration;
+        this.executorService = executorService;
+        this.executorServiceOwned = executorServiceOwned;
+        this.pendingDispatchSemaphore = new Semaphore(listenerDispatchConfiguration.getMaxNumberOfPendingDispatches());
+    }
+
+    // Blocks the calling request thread while the bound is reached, which holds its scheduler slot and slows down submissions
+    public void dispatch(Object key, Runnable dispatch) {
+        try {
+            pendingDispatchSemaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run(dispatch);
+            return;
+        }
+        numberOfDispatches.incrementAndGet();
+        Runnable boundedDispatch = () -> {
+            try {
+                run(dispatch);
+            } finally {
+                pendingDispatchSemaphore.release();
+            }
+        };
+        if (key == null || !listenerDispatchConfiguration.isOrderedByRequestId()) {
+            execute(boundedDispatch);
+            return;
+        }
+        synchronized (orderedDispatchQueueMap) {
+            ArrayDeque<Runnable> orderedDispatchQueue = orderedDispatchQueueMap.get(key);
+            if (orderedDispatchQueue != null) {
+                orderedDispatchQueue.add(boundedDispatch);
+                return;
+            }
+            orderedDispatchQueueMap.put(key, new ArrayDeque<>());
+        }
+        execute(() -> runInOrder(key, boundedDispatch));
+    }
+
+    // Hands the next dispatch of the key back to the executor rather than looping, so that a busy key cannot monopolize a thread
+    private void runInOrder(Object key, Runnable dispatch) {
+        dispatch.run();
+        Runnable nextDispatch;
+        synchronized (orderedDispatchQueueMap) {
+            ArrayDeque<Runnable> orderedDispatchQueue = orderedDispatchQueueMap.get(key);
+            nextDispatch = orderedDispatchQueue.poll();
+            if (nextDispatch == null) {
+                orderedDispatchQueueMap.remove(key);
+                return;
+            }
+        }
+        execute(() -> runInOrder(key, nextDispatch));
+    }
+
+    // Once shut down, whatever is still dispatched runs on the caller rather than being lost
+    private void execute(Runnable runnable) {
+        try {
+            executorService.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            runnable.run();
+        }
+    }
+
+    private void run(Runnable dispatch) {
+        try {
+            dispatch.run();
+        } catch (RuntimeException e) {
+            numberOfFailedDispatches.incrementAndGet();
+            logger.error("A listener failed : {} - {}", e.getClass(), e.getMessage(), e);
+        }
+    }
+
+    // Returns whether every pending dispatch ran before the timeout
+    public boolean shutdown(long timeoutInMilliseconds) throws InterruptedException {
+        int maxNumberOfPendingDispatches = listenerDispatchConfiguration.getMaxNumberOfPendingDispatches();
+        boolean drained = pendingDispatchSemaphore.tryAcquire(maxNumberOfPendingDispatches, timeoutInMilliseconds, TimeUnit.MILLISECONDS);
+        if (drained) {
+            pendingDispatchSemaphore.release(maxNumberOfPendingDispatches);
+        }
+        if (executorServiceOwned) {
+            executorService.shutdown();
+        }
+        return drained;
+    }
+
+    public int getNumberOfPendingDispatches() {
+        return listenerDispatchConfiguration.getMaxNumberOfPendingDispatches() - pendingDispatchSemaphore.availablePermits();
+    }
+
+    public long getNumberOfDispatches() {
+        return numberOfDispatches.get();
+    }
+
+    public long getNumberOfFailedDispatches() {
+        return numberOfFailedDispatches.get();
+    }
+
+    public ListenerDispatchConfiguration getListenerDispatchConfiguration() {
+        return listenerDispatchConfiguration;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("listenerDispatchConfiguration", listenerDispatchConfiguration)
+                .append("numberOfPendingDispatches", getNumberOfPendingDispatches())
+                .append("numberOfDispatches", getNumberOfDispatches())
+                .append("numberOfFailedDispatches", getNumberOfFailedDispatches())
+                .toString();
+    }
+
+}
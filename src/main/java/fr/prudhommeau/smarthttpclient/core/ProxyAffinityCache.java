@@ -0,0 +1,109 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.ProxyAffinityConfiguration;
+import org.apache.http.HttpHost;
+
+import java.net.ProtocolFamily;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+public class ProxyAffinityCache {
+
+    private final Map<AffinityKey, Affinity> affinityMap = new ConcurrentHashMap<>();
+    private final ProxyPool proxyPool;
+    private final ProxyAffinityConfiguration proxyAffinityConfiguration;
+
+    public ProxyAffinityCache(ProxyPool proxyPool, ProxyAffinityConfiguration proxyAffinityConfiguration) {
+        this.proxyPool = proxyPool;
+        this.proxyAffinityConfiguration = proxyAffinityConfiguration;
+    }
+
+    private static class AffinityKey {
+
+        private final HttpHost targetHost;
+        private final Class<? extends Proxifiable> proxifiable;
+        private final ProtocolFamily forcedProtocolFamily;
+
+        private AffinityKey(HttpHost targetHost, Class<? extends Proxifiable> proxifiable, ProtocolFamily forcedProtocolFamily) {
+            this.targetHost = targetHost;
+            this.proxifiable = proxifiable;
+            this.forcedProtocolFamily = forcedProtocolFamily;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            AffinityKey affinityKey = (AffinityKey) o;
+            return Objects.equals(targetHost, affinityKey.targetHost) &&
+                    Objects.equals(proxifiable, affinityKey.proxifiable) &&
+                    Objects.equals(forcedProtocolFamily, affinityKey.forcedProtocolFamily);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(targetHost, proxifiable, forcedProtocolFamily);
+        }
+    }
+
+    private static class Affinity {
+
+        private final Proxy proxy;
+        private final long expiresOnInNanoseconds;
+        private int remainingNumberOfRequests;
+
+        private Affinity(Proxy proxy, long expiresOnInNanoseconds, int remainingNumberOfRequests) {
+            this.proxy = proxy;
+            this.expiresOnInNanoseconds = expiresOnInNanoseconds;
+            this.remainingNumberOfRequests = remainingNumberOfRequests;
+        }
+
+        private boolean isExpired(long nowInNanoseconds) {
+            return remainingNumberOfRequests <= 0 || nowInNanoseconds - expiresOnInNanoseconds >= 0;
+        }
+    }
+
+    public Proxy pickNext(HttpHost targetHost, Class<? extends Proxifiable> proxifiable, ProtocolFamily forcedProtocolFamily) {
+        return pickNext(targetHost, proxifiable, forcedProtocolFamily, proxy -> true);
+    }
+
+    // A pinned proxy the predicate turns down loses its affinity, the replacement is picked with the same preference
+    public Proxy pickNext(HttpHost targetHost, Class<? extends Proxifiable> proxifiable, ProtocolFamily forcedProtocolFamily, Predicate<Proxy> preferredProxyPredicate) {
+        long now = System.nanoTime();
+        boolean[] sticky = new boolean[1];
+        Affinity affinity = affinityMap.compute(new AffinityKey(targetHost, proxifiable, forcedProtocolFamily), (affinityKey, existingAffinity) -> {
+            if (existingAffinity != null && !existingAffinity.isExpired(now) && preferredProxyPredicate.test(existingAffinity.proxy)) {
+                existingAffinity.remainingNumberOfRequests--;
+                sticky[0] = true;
+                return existingAffinity;
+            }
+            long expiresOn = now + proxyAffinityConfiguration.getTimeWindowInMilliseconds() * 1_000_000L;
+            return new Affinity(proxyPool.pickNext(proxifiable, forcedProtocolFamily, preferredProxyPredicate), expiresOn, proxyAffinityConfiguration.getMaxNumberOfRequests() - 1);
+        });
+        if (sticky[0]) {
+            proxyPool.incrementNumberOfUsages(affinity.proxy, proxifiable);
+        }
+        return affinity.proxy;
+    }
+
+    public void invalidate(Proxy proxy) {
+        affinityMap.values().removeIf(affinity -> affinity.proxy.equals(proxy));
+    }
+
+    public void purgeExpiredAffinities() {
+        long now = System.nanoTime();
+        affinityMap.values().removeIf(affinity -> affinity.isExpired(now));
+    }
+
+    public int size() {
+        return affinityMap.size();
+    }
+
+}
@@ -1,18 +1,58 @@
 package fr.prudhommeau.smarthttpclient.core;
 
 import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.ProxyStatisticsSnapshotConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.ProxyType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.net.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class ProxyPool {
 
-    private final Map<Class<? extends Proxifiable>, List<ProxyInfo>> proxifiableToProxyInfoListMap = new HashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(ProxyPool.class);
+
+    private static final String STATISTICS_SNAPSHOTTER_THREAD_NAME = "ProxyStatisticsSnapshotter";
+    private static final String SNAPSHOT_TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final int SNAPSHOT_MAGIC_NUMBER = 0x50505353;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final double RESPONSE_TIME_SMOOTHING_FACTOR = 0.2;
+
+    private final Map<Class<? extends Proxifiable>, List<ProxyInfo>> proxifiableToProxyInfoListMap = new ConcurrentHashMap<>();
+    // Statistics read from a snapshot for proxies which are not in the pool yet, applied when they get added
+    private final Map<LearnedStatisticsKey, ProxyInfo> learnedStatisticsMap = new HashMap<>();
+    // This pool's own statistics about the proxies of the shared pool, which is only ever read from here
+    private final Map<Class<? extends Proxifiable>, Map<Proxy, ProxyInfo>> sharedProxyInfoOverlayMap = new HashMap<>();
+    private final ProxyPool sharedProxyPool;
+    private Thread statisticsSnapshotter;
+
+    public ProxyPool() {
+        this(null);
+    }
+
+    public ProxyPool(ProxyPool sharedProxyPool) {
+        this.sharedProxyPool = sharedProxyPool;
+    }
 
     public static class ProxyInfo {
 
@@ -54,9 +94,42 @@ public class ProxyPool {
         }
     }
 
+    private static class LearnedStatisticsKey {
+
+        private final String proxifiableName;
+        private final Proxy proxy;
+
+        private LearnedStatisticsKey(String proxifiableName, Proxy proxy) {
+            this.proxifiableName = proxifiableName;
+            this.proxy = proxy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            LearnedStatisticsKey learnedStatisticsKey = (LearnedStatisticsKey) o;
+            return Objects.equals(proxifiableName, learnedStatisticsKey.proxifiableName) &&
+                    Objects.equals(proxy, learnedStatisticsKey.proxy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(proxifiableName, proxy);
+        }
+    }
+
     public Proxy pickNext(Class<? extends Proxifiable> proxifiable, ProtocolFamily forcedProtocolFamily) {
+        return pickNext(proxifiable, forcedProtocolFamily, proxy -> true);
+    }
+
+    public Proxy pickNext(Class<? extends Proxifiable> proxifiable, ProtocolFamily forcedProtocolFamily, Predicate<Proxy> preferredProxyPredicate) {
         synchronized (proxifiableToProxyInfoListMap) {
-            List<ProxyInfo> sortedProxyInfoList = proxifiableToProxyInfoListMap.get(proxifiable).stream()
+            List<ProxyInfo> sortedProxyInfoList = getCandidateProxyInfoList(proxifiable).stream()
                     .sorted(Comparator.comparing(ProxyInfo::getNumberOfConnectionFailures)
                             .thenComparing(ProxyInfo::getAverageResponseTimeInMilliseconds)
                             .thenComparing(ProxyInfo::getNumberOfUsages))
@@ -87,7 +160,10 @@ public class ProxyPool {
                 }
             }
             if (sortedProxyInfoList.size() >= 1) {
-                ProxyInfo eligibleProxyInfo = sortedProxyInfoList.get(0);
+                ProxyInfo eligibleProxyInfo = sortedProxyInfoList.stream()
+                        .filter(proxyInfo -> preferredProxyPredicate.test(proxyInfo.getProxy()))
+                        .findFirst()
+                        .orElse(sortedProxyInfoList.get(0));
                 eligibleProxyInfo.setNumberOfUsages(eligibleProxyInfo.getNumberOfUsages() + 1);
                 return eligibleProxyInfo.getProxy();
             } else {
@@ -102,7 +178,7 @@ public class ProxyPool {
 
     public void incrementNumberOfConnectionFailures(Proxy proxy, Class<? extends Proxifiable> proxifiable) {
         synchronized (proxifiableToProxyInfoListMap) {
-            for (ProxyInfo proxyInfo : proxifiableToProxyInfoListMap.get(proxifiable)) {
+            for (ProxyInfo proxyInfo : getCandidateProxyInfoList(proxifiable)) {
                 if (proxyInfo.getProxy().equals(proxy)) {
                     proxyInfo.setNumberOfConnectionFailures(proxyInfo.getNumberOfConnectionFailures() + 1);
                 }
@@ -110,14 +186,248 @@ public class ProxyPool {
         }
     }
 
+    public void incrementNumberOfUsages(Proxy proxy, Class<? extends Proxifiable> proxifiable) {
+        synchronized (proxifiableToProxyInfoListMap) {
+            for (ProxyInfo proxyInfo : getCandidateProxyInfoList(proxifiable)) {
+                if (proxyInfo.getProxy().equals(proxy)) {
+                    proxyInfo.setNumberOfUsages(proxyInfo.getNumberOfUsages() + 1);
+                }
+            }
+        }
+    }
+
+    // Exponentially weighted so that a proxy which slows down drops in the ranking within a few requests
+    public void recordResponseTime(Proxy proxy, Class<? extends Proxifiable> proxifiable, double responseTimeInMilliseconds) {
+        synchronized (proxifiableToProxyInfoListMap) {
+            for (ProxyInfo proxyInfo : getCandidateProxyInfoList(proxifiable)) {
+                if (proxyInfo.getProxy().equals(proxy)) {
+                    double averageResponseTimeInMilliseconds = proxyInfo.getAverageResponseTimeInMilliseconds();
+                    proxyInfo.setAverageResponseTimeInMilliseconds(averageResponseTimeInMilliseconds == 0 ? responseTimeInMilliseconds : averageResponseTimeInMilliseconds + RESPONSE_TIME_SMOOTHING_FACTOR * (responseTimeInMilliseconds - averageResponseTimeInMilliseconds));
+                }
+            }
+        }
+    }
+
     public void loadProxyList(Map<Class<? extends Proxifiable>, List<ProxyInfo>> proxifiableToProxyInfoListMap) {
-        for (Map.Entry<Class<? extends Proxifiable>, List<ProxyInfo>> entry : proxifiableToProxyInfoListMap.entrySet()) {
-            this.proxifiableToProxyInfoListMap.put(entry.getKey(), new CopyOnWriteArrayList<>(entry.getValue()));
+        synchronized (this.proxifiableToProxyInfoListMap) {
+            for (Map.Entry<Class<? extends Proxifiable>, List<ProxyInfo>> entry : proxifiableToProxyInfoListMap.entrySet()) {
+                for (ProxyInfo proxyInfo : entry.getValue()) {
+                    applyLearnedStatistics(entry.getKey(), proxyInfo);
+                }
+                this.proxifiableToProxyInfoListMap.put(entry.getKey(), new CopyOnWriteArrayList<>(entry.getValue()));
+            }
+        }
+    }
+
+    public void addProxy(Class<? extends Proxifiable> proxifiable, Proxy proxy) {
+        synchronized (proxifiableToProxyInfoListMap) {
+            List<ProxyInfo> proxyInfoList = proxifiableToProxyInfoListMap.computeIfAbsent(proxifiable, key -> new CopyOnWriteArrayList<>());
+            if (proxyInfoList.stream().noneMatch(proxyInfo -> proxyInfo.getProxy().equals(proxy))) {
+                proxyInfoList.add(createProxyInfo(proxifiable, proxy));
+            }
+        }
+    }
+
+    public boolean removeProxy(Class<? extends Proxifiable> proxifiable, Proxy proxy) {
+        synchronized (proxifiableToProxyInfoListMap) {
+            List<ProxyInfo> proxyInfoList = proxifiableToProxyInfoListMap.get(proxifiable);
+            return proxyInfoList != null && proxyInfoList.removeIf(proxyInfo -> proxyInfo.getProxy().equals(proxy));
+        }
+    }
+
+    // Swaps the whole list in one step, proxies kept from the previous list keep what the pool learned about them
+    public void replaceProxyList(Class<? extends Proxifiable> proxifiable, List<Proxy> proxyList) {
+        synchronized (proxifiableToProxyInfoListMap) {
+            Map<Proxy, ProxyInfo> previousProxyInfoMap = new HashMap<>();
+            for (ProxyInfo proxyInfo : proxifiableToProxyInfoListMap.getOrDefault(proxifiable, new ArrayList<>())) {
+                previousProxyInfoMap.put(proxyInfo.getProxy(), proxyInfo);
+            }
+            List<ProxyInfo> proxyInfoList = new ArrayList<>();
+            for (Proxy proxy : proxyList) {
+                ProxyInfo proxyInfo = previousProxyInfoMap.remove(proxy);
+                proxyInfoList.add(proxyInfo != null ? proxyInfo : createProxyInfo(proxifiable, proxy));
+            }
+            proxifiableToProxyInfoListMap.put(proxifiable, new CopyOnWriteArrayList<>(proxyInfoList));
         }
     }
 
+    public List<ProxyInfo> getProxyInfoList(Class<? extends Proxifiable> proxifiable) {
+        List<ProxyInfo> proxyInfoList = proxifiableToProxyInfoListMap.get(proxifiable);
+        return proxyInfoList != null ? new ArrayList<>(proxyInfoList) : new ArrayList<>();
+    }
+
     public boolean existsProxies(Class<? extends Proxifiable> proxifiable) {
-        return this.proxifiableToProxyInfoListMap.containsKey(proxifiable) && this.proxifiableToProxyInfoListMap.get(proxifiable).size() > 0;
+        List<ProxyInfo> proxyInfoList = proxifiableToProxyInfoListMap.get(proxifiable);
+        return proxyInfoList != null && !proxyInfoList.isEmpty() || sharedProxyPool != null && sharedProxyPool.existsProxies(proxifiable);
+    }
+
+    // Own proxies first, then the shared ones this pool does not have, each seen through this pool's own statistics
+    private List<ProxyInfo> getCandidateProxyInfoList(Class<? extends Proxifiable> proxifiable) {
+        List<ProxyInfo> proxyInfoList = proxifiableToProxyInfoListMap.getOrDefault(proxifiable, new ArrayList<>());
+        if (sharedProxyPool == null) {
+            return proxyInfoList;
+        }
+        List<ProxyInfo> sharedProxyInfoList = sharedProxyPool.proxifiableToProxyInfoListMap.get(proxifiable);
+        if (sharedProxyInfoList == null || sharedProxyInfoList.isEmpty()) {
+            return proxyInfoList;
+        }
+        List<ProxyInfo> candidateProxyInfoList = new ArrayList<>(proxyInfoList);
+        Set<Proxy> ownProxySet = new HashSet<>();
+        for (ProxyInfo proxyInfo : proxyInfoList) {
+            ownProxySet.add(proxyInfo.getProxy());
+        }
+        Map<Proxy, ProxyInfo> sharedProxyInfoOverlay = sharedProxyInfoOverlayMap.computeIfAbsent(proxifiable, key -> new HashMap<>());
+        Set<Proxy> sharedProxySet = new HashSet<>();
+        for (ProxyInfo sharedProxyInfo : sharedProxyInfoList) {
+            Proxy proxy = sharedProxyInfo.getProxy();
+            if (ownProxySet.contains(proxy)) {
+                continue;
+            }
+            sharedProxySet.add(proxy);
+            candidateProxyInfoList.add(sharedProxyInfoOverlay.computeIfAbsent(proxy, key -> createProxyInfo(proxifiable, proxy)));
+        }
+        // Forgets about the proxies the shared pool has dropped since
+        sharedProxyInfoOverlay.keySet().retainAll(sharedProxySet);
+        return candidateProxyInfoList;
+    }
+
+    private ProxyInfo createProxyInfo(Class<? extends Proxifiable> proxifiable, Proxy proxy) {
+        ProxyInfo proxyInfo = new ProxyInfo();
+        proxyInfo.setProxy(proxy);
+        proxyInfo.setNumberOfConnectionFailures(0L);
+        proxyInfo.setNumberOfUsages(0L);
+        proxyInfo.setAverageResponseTimeInMilliseconds(0.0);
+        applyLearnedStatistics(proxifiable, proxyInfo);
+        return proxyInfo;
+    }
+
+    private void applyLearnedStatistics(Class<? extends Proxifiable> proxifiable, ProxyInfo proxyInfo) {
+        ProxyInfo learnedProxyInfo = learnedStatisticsMap.remove(new LearnedStatisticsKey(proxifiable.getName(), proxyInfo.getProxy()));
+        if (learnedProxyInfo != null) {
+            proxyInfo.setNumberOfConnectionFailures(learnedProxyInfo.getNumberOfConnectionFailures());
+            proxyInfo.setNumberOfUsages(learnedProxyInfo.getNumberOfUsages());
+            proxyInfo.setAverageResponseTimeInMilliseconds(learnedProxyInfo.getAverageResponseTimeInMilliseconds());
+        }
+    }
+
+    // Written next to the target then atomically moved over it, so a crash never leaves a half written snapshot behind
+    public void saveStatistics(Path snapshotPath) throws IOException {
+        Path temporaryPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + SNAPSHOT_TEMPORARY_FILE_SUFFIX);
+        Map<LearnedStatisticsKey, ProxyInfo> statisticsMap = new HashMap<>();
+        synchronized (proxifiableToProxyInfoListMap) {
+            // Statistics which were never claimed are kept, the proxies may come back in a later list
+            statisticsMap.putAll(learnedStatisticsMap);
+            Map<Class<? extends Proxifiable>, List<ProxyInfo>> knownProxyInfoListMap = new HashMap<>(proxifiableToProxyInfoListMap);
+            for (Map.Entry<Class<? extends Proxifiable>, Map<Proxy, ProxyInfo>> entry : sharedProxyInfoOverlayMap.entrySet()) {
+                List<ProxyInfo> knownProxyInfoList = new ArrayList<>(knownProxyInfoListMap.getOrDefault(entry.getKey(), new ArrayList<>()));
+                knownProxyInfoList.addAll(entry.getValue().values());
+                knownProxyInfoListMap.put(entry.getKey(), knownProxyInfoList);
+            }
+            for (Map.Entry<Class<? extends Proxifiable>, List<ProxyInfo>> entry : knownProxyInfoListMap.entrySet()) {
+                for (ProxyInfo proxyInfo : entry.getValue()) {
+                    ProxyInfo proxyInfoCopy = new ProxyInfo();
+                    proxyInfoCopy.setProxy(proxyInfo.getProxy());
+                    proxyInfoCopy.setNumberOfConnectionFailures(proxyInfo.getNumberOfConnectionFailures());
+                    proxyInfoCopy.setNumberOfUsages(proxyInfo.getNumberOfUsages());
+                    proxyInfoCopy.setAverageResponseTimeInMilliseconds(proxyInfo.getAverageResponseTimeInMilliseconds());
+                    statisticsMap.put(new LearnedStatisticsKey(entry.getKey().getName(), proxyInfo.getProxy()), proxyInfoCopy);
+                }
+            }
+        }
+        try (DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            dataOutputStream.writeInt(SNAPSHOT_MAGIC_NUMBER);
+            dataOutputStream.writeInt(SNAPSHOT_VERSION);
+            dataOutputStream.writeInt(statisticsMap.size());
+            for (Map.Entry<LearnedStatisticsKey, ProxyInfo> entry : statisticsMap.entrySet()) {
+                Proxy proxy = entry.getKey().proxy;
+                dataOutputStream.writeUTF(entry.getKey().proxifiableName);
+                dataOutputStream.writeUTF(proxy.getIp());
+                dataOutputStream.writeInt(proxy.getPort());
+                dataOutputStream.writeByte(proxy.getType() != null ? proxy.getType().ordinal() : -1);
+                dataOutputStream.writeBoolean(proxy.getUsername() != null);
+                if (proxy.getUsername() != null) {
+                    dataOutputStream.writeUTF(proxy.getUsername());
+                }
+                dataOutputStream.writeLong(entry.getValue().getNumberOfConnectionFailures());
+                dataOutputStream.writeLong(entry.getValue().getNumberOfUsages());
+                dataOutputStream.writeDouble(entry.getValue().getAverageResponseTimeInMilliseconds());
+            }
+        }
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void loadStatistics(Path snapshotPath) throws IOException {
+        Map<LearnedStatisticsKey, ProxyInfo> statisticsMap = new HashMap<>();
+        try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (dataInputStream.readInt() != SNAPSHOT_MAGIC_NUMBER || dataInputStream.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("File [" + snapshotPath + "] is not a proxy statistics snapshot");
+            }
+            int numberOfEntries = dataInputStream.readInt();
+            for (int i = 0; i < numberOfEntries; i++) {
+                String proxifiableName = dataInputStream.readUTF();
+                Proxy proxy = new Proxy();
+                proxy.setIp(dataInputStream.readUTF());
+                proxy.setPort(dataInputStream.readInt());
+                byte proxyTypeOrdinal = dataInputStream.readByte();
+                proxy.setType(proxyTypeOrdinal >= 0 ? ProxyType.values()[proxyTypeOrdinal] : null);
+                // Credentials are never written, the username is enough to tell two accounts on one proxy apart
+                if (dataInputStream.readBoolean()) {
+                    proxy.setUsername(dataInputStream.readUTF());
+                }
+                ProxyInfo proxyInfo = new ProxyInfo();
+                proxyInfo.setProxy(proxy);
+                proxyInfo.setNumberOfConnectionFailures(dataInputStream.readLong());
+                proxyInfo.setNumberOfUsages(dataInputStream.readLong());
+                proxyInfo.setAverageResponseTimeInMilliseconds(dataInputStream.readDouble());
+                statisticsMap.put(new LearnedStatisticsKey(proxifiableName, proxy), proxyInfo);
+            }
+        }
+        synchronized (proxifiableToProxyInfoListMap) {
+            learnedStatisticsMap.putAll(statisticsMap);
+            for (Map.Entry<Class<? extends Proxifiable>, List<ProxyInfo>> entry : proxifiableToProxyInfoListMap.entrySet()) {
+                for (ProxyInfo proxyInfo : entry.getValue()) {
+                    applyLearnedStatistics(entry.getKey(), proxyInfo);
+                }
+            }
+        }
+    }
+
+    // Reloads the last snapshot if any, then saves a new one every period until called again with null
+    public synchronized void setStatisticsSnapshotConfiguration(ProxyStatisticsSnapshotConfiguration proxyStatisticsSnapshotConfiguration) {
+        if (statisticsSnapshotter != null) {
+            statisticsSnapshotter.interrupt();
+            statisticsSnapshotter = null;
+        }
+        if (proxyStatisticsSnapshotConfiguration == null) {
+            return;
+        }
+        Path snapshotPath = proxyStatisticsSnapshotConfiguration.getSnapshotPath();
+        if (Files.exists(snapshotPath)) {
+            try {
+                loadStatistics(snapshotPath);
+            } catch (IOException e) {
+                logger.warn("Unable to reload proxy statistics from [{}] : {} - {}", snapshotPath, e.getClass(), e.getMessage());
+            }
+        }
+        statisticsSnapshotter = new Thread(() -> {
+            logger.debug("Start proxy statistics snapshotter for [{}]", snapshotPath);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(proxyStatisticsSnapshotConfiguration.getSnapshotPeriodInMilliseconds());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                try {
+                    saveStatistics(snapshotPath);
+                } catch (IOException e) {
+                    logger.warn("Unable to save proxy statistics to [{}] : {} - {}", snapshotPath, e.getClass(), e.getMessage());
+                }
+            }
+            logger.debug("Stop proxy statistics snapshotter for [{}]", snapshotPath);
+        });
+        statisticsSnapshotter.setName(STATISTICS_SNAPSHOTTER_THREAD_NAME);
+        statisticsSnapshotter.setDaemon(true);
+        statisticsSnapshotter.start();
     }
 
 }
@@ -0,0 +1,333 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.HttpMethod;
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.RangeDownloadConfiguration;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class RangeDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(RangeDownloader.class);
+    private static final String RANGE_DOWNLOADER_THREAD_NAME = "RangeDownloader";
+    private static final int COPY_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+
+    private final HttpClientManager httpClientManager;
+    private final RangeDownloadConfiguration rangeDownloadConfiguration;
+
+    public RangeDownloader(HttpClientManager httpClientManager, RangeDownloadConfiguration rangeDownloadConfiguration) {
+        this.httpClientManager = httpClientManager;
+        this.rangeDownloadConfiguration = rangeDownloadConfiguration;
+    }
+
+    // Thrown when a server answers a range with the whole resource, or with a range of another version of it, which only a single stream can cope with
+    private static class RangesIgnoredException extends IOException {
+        private RangesIgnoredException(String message) {
+            super(message);
+        }
+    }
+
+    // Thrown in the ranges still running once one of their siblings has failed
+    private static class RangeCancelledException extends InterruptedIOException {
+        private RangeCancelledException(String message) {
+            super(message);
+        }
+    }
+
+    // What the probe learnt about the resource, every range is pinned to that version of it
+    private static class RangedResource {
+
+        private final long contentLength;
+        private final String entityTag;
+        private final String validator;
+
+        private RangedResource(long contentLength, String entityTag, String validator) {
+            this.contentLength = contentLength;
+            this.entityTag = entityTag;
+            this.validator = validator;
+        }
+    }
+
+    // Shared by the ranges of one download, so that a failing range stops its siblings without interrupting them
+    private static class RangeDownload {
+
+        private final String uri;
+        private final FileChannel fileChannel;
+        private final RangedResource rangedResource;
+        private final Set<HttpRequestThread<Object>> activeHttpRequestThreadSet = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+
+        private RangeDownload(String uri, FileChannel fileChannel, RangedResource rangedResource) {
+            this.uri = uri;
+            this.fileChannel = fileChannel;
+            this.rangedResource = rangedResource;
+        }
+
+        // Aborting a request fails its pending read on the socket, the file channel is never touched, unlike with an interrupt
+        private void cancel() {
+            cancelled = true;
+            for (HttpRequestThread<Object> httpRequestThread : activeHttpRequestThreadSet) {
+                HttpUriRequest uriRequest = httpRequestThread.getUriRequest();
+                if (uriRequest != null) {
+                    uriRequest.abort();
+                }
+            }
+        }
+
+        private void checkNotCancelled() throws RangeCancelledException {
+            if (cancelled) {
+                throw new RangeCancelledException("Download of [" + uri + "] cancelled after the failure of another range");
+            }
+        }
+    }
+
+    public long download(String uri, Path path) throws IOException {
+        RangedResource rangedResource = probeRangeSupport(uri);
+        long contentLength = rangedResource != null ? rangedResource.contentLength : -1;
+        long numberOfRanges = contentLength <= 0 ? 1 : Math.max(1, Math.min(rangeDownloadConfiguration.getNumberOfRanges(), contentLength / rangeDownloadConfiguration.getMinRangeSizeInBytes()));
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (numberOfRanges > 1) {
+                try {
+                    downloadRanges(new RangeDownload(uri, fileChannel, rangedResource), (int) numberOfRanges);
+                    return contentLength;
+                } catch (RangesIgnoredException e) {
+                    logger.debug("Server of [{}] ignored byte ranges, falling back to a single stream : {}", uri, e.getMessage());
+                    fileChannel.truncate(0);
+                }
+            }
+            return downloadSingleStream(uri, fileChannel);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    // HEAD rather than a ranged GET, the body of a server that ignores ranges would otherwise start flowing
+    private RangedResource probeRangeSupport(String uri) {
+        HttpRequestThread<Object> httpRequestThread = createHttpRequestThread(uri, HttpMethod.HEAD, pickProxy());
+        try (CloseableHttpResponse response = httpClientManager.launchSynchronousHttpRequestThread(httpRequestThread)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            Header acceptRangesHeader = response.getFirstHeader(HttpHeaders.ACCEPT_RANGES);
+            Header contentLengthHeader = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+            if (statusCode / 100 != 2 || acceptRangesHeader == null || !"bytes".equalsIgnoreCase(acceptRangesHeader.getValue().trim()) || contentLengthHeader == null) {
+                return null;
+            }
+            Header entityTagHeader = response.getFirstHeader(HttpHeaders.ETAG);
+            Header lastModifiedHeader = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+            String entityTag = entityTagHeader != null ? entityTagHeader.getValue().trim() : null;
+            // If-Range only takes a strong entity tag or a date, a weak tag could not tell two versions apart byte for byte
+            String validator = entityTag != null && !entityTag.startsWith("W/") ? entityTag : lastModifiedHeader != null ? lastModifiedHeader.getValue().trim() : null;
+            return new RangedResource(Long.parseLong(contentLengthHeader.getValue().trim()), entityTag, validator);
+        } catch (IOException | NumberFormatException e) {
+            logger.debug("Unable to probe range support of [{}] : {} - {}", uri, e.getClass(), e.getMessage());
+            return null;
+        }
+    }
+
+    // The first failure cancels the other ranges, which are all waited for, so that nothing writes to the file once this returns
+    private void downloadRanges(RangeDownload rangeDownload, int numberOfRanges) throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfRanges, runnable -> {
+            Thread thread = new Thread(runnable, RANGE_DOWNLOADER_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long contentLength = rangeDownload.rangedResource.contentLength;
+        long rangeSizeInBytes = contentLength / numberOfRanges;
+        List<Future<Void>> rangeFutureList = new ArrayList<>();
+        for (int i = 0; i < numberOfRanges; i++) {
+            long firstBytePosition = i * rangeSizeInBytes;
+            long lastBytePosition = i == numberOfRanges - 1 ? contentLength - 1 : firstBytePosition + rangeSizeInBytes - 1;
+            rangeFutureList.add(executorService.submit(() -> {
+                try {
+                    downloadRange(rangeDownload, firstBytePosition, lastBytePosition);
+                } catch (IOException | RuntimeException e) {
+                    rangeDownload.cancel();
+                    throw e;
+                }
+                return null;
+            }));
+        }
+        executorService.shutdown();
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<Void> rangeFuture : rangeFutureList) {
+            while (true) {
+                try {
+                    rangeFuture.get();
+                    break;
+                } catch (ExecutionException e) {
+                    // The range that failed first is the one worth reporting, its cancelled siblings only followed
+                    if (failure == null || failure instanceof RangeCancelledException) {
+                        failure = e.getCause();
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    rangeDownload.cancel();
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading [" + rangeDownload.uri + "]");
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    // A failed attempt resumes from the first byte not written yet, the rest of the range is kept
+    private void downloadRange(RangeDownload rangeDownload, long firstBytePosition, long lastBytePosition) throws IOException {
+        String uri = rangeDownload.uri;
+        RangedResource rangedResource = rangeDownload.rangedResource;
+        long position = firstBytePosition;
+        int numberOfRetries = 0;
+        while (true) {
+            rangeDownload.checkNotCancelled();
+            Proxy proxy = pickProxy();
+            HttpRequestThread<Object> httpRequestThread = createHttpRequestThread(uri, HttpMethod.GET, proxy);
+            httpRequestThread.addCustomHeader(HttpHeaders.RANGE, "bytes=" + position + "-" + lastBytePosition);
+            if (rangedResource.validator != null) {
+                // A resource changed since the probe comes back whole instead of as a range of its new version
+                httpRequestThread.addCustomHeader(HttpHeaders.IF_RANGE, rangedResource.validator);
+            }
+            rangeDownload.activeHttpRequestThreadSet.add(httpRequestThread);
+            try (CloseableHttpResponse response = httpClientManager.launchSynchronousHttpRequestThread(httpRequestThread)) {
+                rangeDownload.checkNotCancelled();
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode == 200) {
+                    throw new RangesIgnoredException("range [" + position + "-" + lastBytePosition + "] answered with the whole resource");
+                }
+                if (statusCode != 206) {
+                    throw new IOException("Unexpected status code [" + statusCode + "] for range [" + position + "-" + lastBytePosition + "] of [" + uri + "]");
+                }
+                checkContentRange(response, rangedResource, position, lastBytePosition);
+                position = copy(response.getEntity(), rangeDownload.fileChannel, rangeDownload, position, lastBytePosition + 1);
+                if (position <= lastBytePosition) {
+                    throw new EOFException("Range [" + firstBytePosition + "-" + lastBytePosition + "] of [" + uri + "] ended at [" + position + "]");
+                }
+                return;
+            } catch (RangesIgnoredException | RangeCancelledException e) {
+                throw e;
+            } catch (IOException e) {
+                if (rangeDownload.cancelled) {
+                    throw new RangeCancelledException("Download of [" + uri + "] cancelled after the failure of another range");
+                }
+                if (proxy != null) {
+                    httpClientManager.reportProxyConnectionFailure(proxy, httpClientManager.getDefaultProxifiable());
+                }
+                if (numberOfRetries++ >= rangeDownloadConfiguration.getMaxNumberOfRetriesPerRange()) {
+                    throw e;
+                }
+                logger.debug("Retrying range [{}-{}] of [{}] : {} - {}", position, lastBytePosition, uri, e.getClass(), e.getMessage());
+            } finally {
+                rangeDownload.activeHttpRequestThreadSet.remove(httpRequestThread);
+            }
+        }
+    }
+
+    // Bytes of another version of the resource, or another part of it, must never be stitched into the file
+    private static void checkContentRange(CloseableHttpResponse response, RangedResource rangedResource, long firstBytePosition, long lastBytePosition) throws RangesIgnoredException {
+        Header entityTagHeader = response.getFirstHeader(HttpHeaders.ETAG);
+        if (rangedResource.entityTag != null && entityTagHeader != null && !rangedResource.entityTag.equals(entityTagHeader.getValue().trim())) {
+            throw new RangesIgnoredException("range [" + firstBytePosition + "-" + lastBytePosition + "] answered with entity tag [" + entityTagHeader.getValue() + "] instead of [" + rangedResource.entityTag + "]");
+        }
+        Header contentRangeHeader = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        String expectedContentRange = "bytes " + firstBytePosition + "-" + lastBytePosition + "/" + rangedResource.contentLength;
+        if (contentRangeHeader == null || !expectedContentRange.equalsIgnoreCase(contentRangeHeader.getValue().trim())) {
+            throw new RangesIgnoredException("range [" + firstBytePosition + "-" + lastBytePosition + "] answered with content range [" + (contentRangeHeader != null ? contentRangeHeader.getValue() : null) + "] instead of [" + expectedContentRange + "]");
+        }
+    }
+
+    private long downloadSingleStream(String uri, FileChannel fileChannel) throws IOException {
+        int numberOfRetries = 0;
+        while (true) {
+            Proxy proxy = pickProxy();
+            HttpRequestThread<Object> httpRequestThread = createHttpRequestThread(uri, HttpMethod.GET, proxy);
+            try (CloseableHttpResponse response = httpClientManager.launchSynchronousHttpRequestThread(httpRequestThread)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode / 100 != 2) {
+                    throw new IOException("Unexpected status code [" + statusCode + "] for [" + uri + "]");
+                }
+                HttpEntity entity = response.getEntity();
+                long position = copy(entity, fileChannel, null, 0, Long.MAX_VALUE);
+                if (entity != null && entity.getContentLength() >= 0 && position != entity.getContentLength()) {
+                    throw new EOFException("Body of [" + uri + "] ended at [" + position + "] out of [" + entity.getContentLength() + "] bytes");
+                }
+                return position;
+            } catch (IOException e) {
+                if (proxy != null) {
+                    httpClientManager.reportProxyConnectionFailure(proxy, httpClientManager.getDefaultProxifiable());
+                }
+                if (numberOfRetries++ >= rangeDownloadConfiguration.getMaxNumberOfRetriesPerRange()) {
+                    throw e;
+                }
+                fileChannel.truncate(0);
+                logger.debug("Retrying single stream download of [{}] : {} - {}", uri, e.getClass(), e.getMessage());
+            }
+        }
+    }
+
+    // Positional writes never move the channel position, so every range writes through the same channel at once
+    private static long copy(HttpEntity entity, FileChannel fileChannel, RangeDownload rangeDownload, long position, long endPosition) throws IOException {
+        if (entity == null) {
+            return position;
+        }
+        byte[] buffer = new byte[COPY_BUFFER_SIZE_IN_BYTES];
+        try (InputStream inputStream = entity.getContent()) {
+            int read;
+            while (position < endPosition && (read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, endPosition - position))) != -1) {
+                if (rangeDownload != null) {
+                    rangeDownload.checkNotCancelled();
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    position += fileChannel.write(byteBuffer, position);
+                }
+            }
+        }
+        return position;
+    }
+
+    private Proxy pickProxy() {
+        return rangeDownloadConfiguration.isRandomProxied() ? httpClientManager.getProxyPool().pickNext(httpClientManager.getDefaultProxifiable()) : null;
+    }
+
+    private HttpRequestThread<Object> createHttpRequestThread(String uri, HttpMethod method, Proxy proxy) {
+        HttpRequestThread<Object> httpRequestThread = new HttpRequestThread<>();
+        httpRequestThread.setUri(uri);
+        httpRequestThread.setMethod(method);
+        httpRequestThread.setProxy(proxy);
+        httpRequestThread.setIgnoreCookies(true);
+        // Byte offsets are only meaningful on the representation as stored, never on a compressed one
+        httpRequestThread.addCustomHeader("Accept-Encoding", "identity");
+        return httpRequestThread;
+    }
+
+}
@@ -0,0 +1,94 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.RedirectConfiguration;
+import fr.prudhommeau.smarthttpclient.bean.RedirectHop;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RedirectCache {
+
+    private final RedirectConfiguration redirectConfiguration;
+    private final Map<String, CachedRedirect> cachedRedirectMap;
+
+    public RedirectCache(RedirectConfiguration redirectConfiguration) {
+        this.redirectConfiguration = redirectConfiguration;
+        // Access ordered, so that the least recently followed redirect is the one evicted
+        this.cachedRedirectMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedRedirect> eldest) {
+                return size() > redirectConfiguration.getMaxNumberOfCachedRedirects();
+            }
+        };
+    }
+
+    private static class CachedRedirect {
+
+        private final int statusCode;
+        private final String location;
+        private final long expiresOnInNanoseconds;
+
+        private CachedRedirect(int statusCode, String location, long expiresOnInNanoseconds) {
+            this.statusCode = statusCode;
+            this.location = location;
+            this.expiresOnInNanoseconds = expiresOnInNanoseconds;
+        }
+
+        private boolean isExpired(long nowInNanoseconds) {
+            return nowInNanoseconds - expiresOnInNanoseconds >= 0;
+        }
+    }
+
+    // Walks the cached redirects starting at the URI, each of them added as a hop, and returns the URI to actually request
+    public String resolve(String uri, List<RedirectHop> redirectHopList) {
+        long now = System.nanoTime();
+        String resolvedUri = uri;
+        synchronized (cachedRedirectMap) {
+            // Bounded like a live chain, a cycle of cached redirects must not loop forever
+            for (int i = 0; i < redirectConfiguration.getMaxNumberOfRedirects(); i++) {
+                CachedRedirect cachedRedirect = cachedRedirectMap.get(resolvedUri);
+                if (cachedRedirect == null) {
+                    break;
+                }
+                if (cachedRedirect.isExpired(now)) {
+                    cachedRedirectMap.remove(resolvedUri);
+                    break;
+                }
+                redirectHopList.add(createRedirectHop(resolvedUri, cachedRedirect.statusCode, cachedRedirect.location, -1, true));
+                resolvedUri = cachedRedirect.location;
+            }
+        }
+        return resolvedUri;
+    }
+
+    public void put(String uri, int statusCode, String location) {
+        long expiresOn = System.nanoTime() + redirectConfiguration.getCachedRedirectTimeToLiveInMilliseconds() * 1_000_000L;
+        synchronized (cachedRedirectMap) {
+            cachedRedirectMap.put(uri, new CachedRedirect(statusCode, location, expiresOn));
+        }
+    }
+
+    public void invalidate(String uri) {
+        synchronized (cachedRedirectMap) {
+            cachedRedirectMap.remove(uri);
+        }
+    }
+
+    public int size() {
+        synchronized (cachedRedirectMap) {
+            return cachedRedirectMap.size();
+        }
+    }
+
+    static RedirectHop createRedirectHop(String uri, int statusCode, String location, double durationInMilliseconds, boolean cached) {
+        RedirectHop redirectHop = new RedirectHop();
+        redirectHop.setUri(uri);
+        redirectHop.setStatusCode(statusCode);
+        redirectHop.setLocation(location);
+        redirectHop.setDurationInMilliseconds(durationInMilliseconds);
+        redirectHop.setCached(cached);
+        return redirectHop;
+    }
+
+}
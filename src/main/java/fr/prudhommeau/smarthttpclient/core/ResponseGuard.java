@@ -0,0 +1,85 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.ResponsePolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+class ResponseGuard {
+
+    // RFC 7231 lets a recipient assume this type when the header is missing
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final int READ_BUFFER_SIZE_IN_BYTES = 8192;
+
+    private ResponseGuard() {
+    }
+
+    // Only looks at the status line and headers, so that a rejected body is never read
+    static String findRejectionReason(ResponsePolicy responsePolicy, int statusCode, String contentType, long contentLength) {
+        if (!responsePolicy.getAllowedStatusCodeList().isEmpty() && !responsePolicy.getAllowedStatusCodeList().contains(statusCode)) {
+            return "status code [" + statusCode + "] is not allowed";
+        }
+        if (contentLength > responsePolicy.getMaxBodySizeInBytes()) {
+            return "declared body size [" + contentLength + "] exceeds [" + responsePolicy.getMaxBodySizeInBytes() + "] bytes";
+        }
+        if (!responsePolicy.getAllowedContentTypeList().isEmpty()) {
+            String mimeType = toMimeType(contentType);
+            for (String allowedContentType : responsePolicy.getAllowedContentTypeList()) {
+                if (matches(mimeType, allowedContentType.toLowerCase(Locale.ROOT))) {
+                    return null;
+                }
+            }
+            return "content type [" + mimeType + "] is not allowed";
+        }
+        return null;
+    }
+
+    // Returns null as soon as the body goes past the limit, which matters when no length has been declared
+    static byte[] readBody(InputStream inputStream, long maxBodySizeInBytes) throws IOException {
+        if (maxBodySizeInBytes == Long.MAX_VALUE) {
+            return inputStream.readAllBytes();
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[READ_BUFFER_SIZE_IN_BYTES];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            if (body.size() + read > maxBodySizeInBytes) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    // Reads what is left of a body if it ends within the limit, which hands the connection back to the pool, and tells otherwise
+    static boolean drain(InputStream inputStream, long maxDrainSizeInBytes) throws IOException {
+        byte[] buffer = new byte[READ_BUFFER_SIZE_IN_BYTES];
+        long drained = 0;
+        int read;
+        while ((read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, maxDrainSizeInBytes - drained + 1))) != -1) {
+            drained += read;
+            if (drained > maxDrainSizeInBytes) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toMimeType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+        int parametersIndex = contentType.indexOf(';');
+        return (parametersIndex >= 0 ? contentType.substring(0, parametersIndex) : contentType).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean matches(String mimeType, String allowedContentType) {
+        if (allowedContentType.endsWith("/*")) {
+            return mimeType.startsWith(allowedContentType.substring(0, allowedContentType.length() - 1));
+        }
+        return mimeType.equals(allowedContentType) || "*/*".equals(allowedContentType);
+    }
+
+}
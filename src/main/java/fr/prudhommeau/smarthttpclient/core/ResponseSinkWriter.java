@@ -0,0 +1,123 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.ResponseSink;
+import fr.prudhommeau.smarthttpclient.bean.ResponseSinkResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+class ResponseSinkWriter {
+
+    private static final int TRANSFER_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+    private static final String PARTIAL_FILE_SUFFIX = ".part";
+    private static final char[] HEXADECIMAL_DIGITS = "0123456789abcdef".toCharArray();
+    // One direct buffer per request thread, however many responses it writes and however large they are
+    private static final ThreadLocal<ByteBuffer> TRANSFER_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE_IN_BYTES));
+
+    private ResponseSinkWriter() {
+    }
+
+    // Returns null as soon as the body goes past the limit, nothing is left at the path then
+    static ResponseSinkResult write(InputStream inputStream, ResponseSink responseSink, long maxBodySizeInBytes) throws IOException {
+        MessageDigest messageDigest = createMessageDigest(responseSink.getDigestAlgorithm());
+        Path path = responseSink.getPath();
+        if (path == null) {
+            long sizeInBytes = transfer(inputStream, responseSink.getChannel(), messageDigest, maxBodySizeInBytes);
+            return sizeInBytes < 0 ? null : createResult(null, sizeInBytes, messageDigest);
+        }
+        Path writtenPath = responseSink.isAtomicRename() ? path.resolveSibling(path.getFileName() + "." + UUID.randomUUID() + PARTIAL_FILE_SUFFIX) : path;
+        boolean completed = false;
+        try {
+            long sizeInBytes;
+            try (FileChannel fileChannel = FileChannel.open(writtenPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                sizeInBytes = transfer(inputStream, fileChannel, messageDigest, maxBodySizeInBytes);
+            }
+            if (sizeInBytes < 0) {
+                return null;
+            }
+            if (writtenPath != path) {
+                move(writtenPath, path);
+            }
+            completed = true;
+            return createResult(path, sizeInBytes, messageDigest);
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(writtenPath);
+            }
+        }
+    }
+
+    private static long transfer(InputStream inputStream, WritableByteChannel channel, MessageDigest messageDigest, long maxBodySizeInBytes) throws IOException {
+        // Left open on purpose, closing it would close the entity stream before the response gets to release its connection
+        ReadableByteChannel readableByteChannel = Channels.newChannel(inputStream);
+        ByteBuffer buffer = TRANSFER_BUFFER.get();
+        buffer.clear();
+        long sizeInBytes = 0;
+        while (readableByteChannel.read(buffer) != -1) {
+            buffer.flip();
+            sizeInBytes += buffer.remaining();
+            if (sizeInBytes > maxBodySizeInBytes) {
+                return -1;
+            }
+            if (messageDigest != null) {
+                buffer.mark();
+                messageDigest.update(buffer);
+                buffer.reset();
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        return sizeInBytes;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest createMessageDigest(String digestAlgorithm) {
+        if (digestAlgorithm == null) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance(digestAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ResponseSinkResult createResult(Path path, long sizeInBytes, MessageDigest messageDigest) {
+        ResponseSinkResult responseSinkResult = new ResponseSinkResult();
+        responseSinkResult.setPath(path);
+        responseSinkResult.setSizeInBytes(sizeInBytes);
+        if (messageDigest != null) {
+            byte[] digest = messageDigest.digest();
+            char[] hexadecimalDigest = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hexadecimalDigest[2 * i] = HEXADECIMAL_DIGITS[(digest[i] >> 4) & 0x0F];
+                hexadecimalDigest[2 * i + 1] = HEXADECIMAL_DIGITS[digest[i] & 0x0F];
+            }
+            responseSinkResult.setDigest(new String(hexadecimalDigest));
+        }
+        return responseSinkResult;
+    }
+
+}
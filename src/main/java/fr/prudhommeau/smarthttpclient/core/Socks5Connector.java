@@ -0,0 +1,233 @@
+package fr.prudhommeau.smarthttpclient.core;
+
+import fr.prudhommeau.smarthttpclient.bean.Proxy;
+import fr.prudhommeau.smarthttpclient.bean.Socks5Configuration;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.conn.util.InetAddressUtils;
+import org.apache.http.impl.conn.DefaultRoutePlanner;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+public class Socks5Connector {
+
+    private static final int SOCKS_VERSION_5 = 0x05;
+    private static final int USERNAME_PASSWORD_VERSION = 0x01;
+    private static final int METHOD_NO_AUTHENTICATION = 0x00;
+    private static final int METHOD_USERNAME_PASSWORD = 0x02;
+    private static final int METHOD_NO_ACCEPTABLE = 0xFF;
+    private static final int COMMAND_CONNECT = 0x01;
+    private static final int ADDRESS_TYPE_IPV4 = 0x01;
+    private static final int ADDRESS_TYPE_DOMAIN_NAME = 0x03;
+    private static final int ADDRESS_TYPE_IPV6 = 0x04;
+    private static final int REPLY_SUCCEEDED = 0x00;
+    private static final int MAXIMUM_FIELD_LENGTH = 255;
+    private static final byte[] UNRESOLVED_ADDRESS = new byte[4];
+
+    // Targets keep their host name but carry a placeholder address, which stops the connection operator from resolving them locally
+    static final HttpRoutePlanner REMOTE_DNS_ROUTE_PLANNER = new DefaultRoutePlanner(null) {
+        @Override
+        public HttpRoute determineRoute(HttpHost host, HttpRequest request, HttpContext context) throws HttpException {
+            HttpRoute httpRoute = super.determineRoute(host, request, context);
+            HttpHost unresolvedTargetHost = asUnresolvedHost(httpRoute.getTargetHost());
+            if (unresolvedTargetHost == httpRoute.getTargetHost()) {
+                return httpRoute;
+            }
+            return new HttpRoute(unresolvedTargetHost, httpRoute.getLocalAddress(), httpRoute.isSecure());
+        }
+    };
+
+    private final Socks5Configuration socks5Configuration;
+    private final ConnectionStatistics connectionStatistics;
+
+    public Socks5Connector(Socks5Configuration socks5Configuration, ConnectionStatistics connectionStatistics) {
+        this.socks5Configuration = socks5Configuration;
+        this.connectionStatistics = connectionStatistics;
+    }
+
+    public Socket connect(Socket socket, Proxy proxy, HttpHost host, InetSocketAddress remoteAddress, int connectTimeout) throws IOException {
+        long connectStartedOnInNanoseconds = System.nanoTime();
+        try {
+            socket.connect(proxy.asSocketAddress(), connectTimeout);
+            long negotiationStartedOnInNanoseconds = System.nanoTime();
+            int initialSoTimeout = socket.getSoTimeout();
+            socket.setSoTimeout(socks5Configuration.getHandshakeTimeoutInMilliseconds());
+            InputStream inputStream = socket.getInputStream();
+            OutputStream outputStream = socket.getOutputStream();
+
+            boolean withCredentials = proxy.getUsername() != null;
+            if (withCredentials) {
+                outputStream.write(new byte[]{SOCKS_VERSION_5, 2, METHOD_NO_AUTHENTICATION, METHOD_USERNAME_PASSWORD});
+            } else {
+                outputStream.write(new byte[]{SOCKS_VERSION_5, 1, METHOD_NO_AUTHENTICATION});
+            }
+            outputStream.flush();
+            byte[] methodSelection = readFully(inputStream, 2);
+            checkVersion(methodSelection[0], proxy);
+            int method = methodSelection[1] & 0xFF;
+            long authenticationStartedOnInNanoseconds = System.nanoTime();
+            if (method == METHOD_USERNAME_PASSWORD && withCredentials) {
+                authenticate(inputStream, outputStream, proxy);
+            } else if (method != METHOD_NO_AUTHENTICATION) {
+                throw new SocketException("SOCKS proxy [" + proxy + "] accepted none of the offered authentication methods (selected [" + (method == METHOD_NO_ACCEPTABLE ? "none" : method) + "])");
+            }
+
+            long commandStartedOnInNanoseconds = System.nanoTime();
+            outputStream.write(buildConnectCommand(host, remoteAddress));
+            outputStream.flush();
+            readConnectReply(inputStream, proxy, host);
+            socket.setSoTimeout(initialSoTimeout);
+
+            long commandCompletedOnInNanoseconds = System.nanoTime();
+            connectionStatistics.recordSocksHandshake(
+                    negotiationStartedOnInNanoseconds - connectStartedOnInNanoseconds,
+                    authenticationStartedOnInNanoseconds - negotiationStartedOnInNanoseconds,
+                    commandStartedOnInNanoseconds - authenticationStartedOnInNanoseconds,
+                    commandCompletedOnInNanoseconds - commandStartedOnInNanoseconds);
+            return socket;
+        } catch (IOException e) {
+            connectionStatistics.incrementNumberOfFailedSocksHandshakes();
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static void authenticate(InputStream inputStream, OutputStream outputStream, Proxy proxy) throws IOException {
+        byte[] username = proxy.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] password = proxy.getPassword() != null ? proxy.getPassword().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (username.length == 0 || username.length > MAXIMUM_FIELD_LENGTH || password.length > MAXIMUM_FIELD_LENGTH) {
+            throw new SocketException("SOCKS credentials of proxy [" + proxy + "] must be between 1 and " + MAXIMUM_FIELD_LENGTH + " bytes long");
+        }
+        byte[] request = new byte[3 + username.length + password.length];
+        request[0] = USERNAME_PASSWORD_VERSION;
+        request[1] = (byte) username.length;
+        System.arraycopy(username, 0, request, 2, username.length);
+        request[2 + username.length] = (byte) password.length;
+        System.arraycopy(password, 0, request, 3 + username.length, password.length);
+        outputStream.write(request);
+        outputStream.flush();
+        byte[] reply = readFully(inputStream, 2);
+        if (reply[1] != REPLY_SUCCEEDED) {
+            throw new SocketException("SOCKS proxy [" + proxy + "] rejected the credentials (status [" + (reply[1] & 0xFF) + "])");
+        }
+    }
+
+    private byte[] buildConnectCommand(HttpHost host, InetSocketAddress remoteAddress) throws IOException {
+        String hostName = host.getHostName();
+        int port = remoteAddress.getPort();
+        byte[] address;
+        int addressType;
+        if (socks5Configuration.isRemoteDnsResolution() && !isAddressLiteral(hostName)) {
+            byte[] domainName = hostName.getBytes(StandardCharsets.US_ASCII);
+            if (domainName.length > MAXIMUM_FIELD_LENGTH) {
+                throw new SocketException("Host name [" + hostName + "] is too long to be sent to a SOCKS proxy");
+            }
+            address = new byte[1 + domainName.length];
+            address[0] = (byte) domainName.length;
+            System.arraycopy(domainName, 0, address, 1, domainName.length);
+            addressType = ADDRESS_TYPE_DOMAIN_NAME;
+        } else {
+            InetAddress inetAddress = remoteAddress.getAddress();
+            if (inetAddress == null || inetAddress.isAnyLocalAddress()) {
+                // The placeholder planted by the route planner is never a real destination
+                inetAddress = InetAddress.getByName(hostName);
+            }
+            address = inetAddress.getAddress();
+            addressType = inetAddress instanceof Inet4Address ? ADDRESS_TYPE_IPV4 : ADDRESS_TYPE_IPV6;
+        }
+        byte[] command = new byte[4 + address.length + 2];
+        command[0] = SOCKS_VERSION_5;
+        command[1] = COMMAND_CONNECT;
+        command[3] = (byte) addressType;
+        System.arraycopy(address, 0, command, 4, address.length);
+        command[command.length - 2] = (byte) (port >>> 8);
+        command[command.length - 1] = (byte) port;
+        return command;
+    }
+
+    private static void readConnectReply(InputStream inputStream, Proxy proxy, HttpHost host) throws IOException {
+        byte[] reply = readFully(inputStream, 4);
+        checkVersion(reply[0], proxy);
+        if (reply[1] != REPLY_SUCCEEDED) {
+            throw new SocketException("SOCKS proxy [" + proxy + "] could not connect to [" + host.toHostString() + "] (reply [" + (reply[1] & 0xFF) + "])");
+        }
+        // The bound address is of no use here but has to be drained before the tunnel carries any data
+        int boundAddressLength;
+        switch (reply[3]) {
+            case ADDRESS_TYPE_IPV4:
+                boundAddressLength = 4;
+                break;
+            case ADDRESS_TYPE_IPV6:
+                boundAddressLength = 16;
+                break;
+            case ADDRESS_TYPE_DOMAIN_NAME:
+                boundAddressLength = readFully(inputStream, 1)[0] & 0xFF;
+                break;
+            default:
+                throw new SocketException("SOCKS proxy [" + proxy + "] replied with an unknown address type [" + (reply[3] & 0xFF) + "]");
+        }
+        readFully(inputStream, boundAddressLength + 2);
+    }
+
+    private static void checkVersion(byte version, Proxy proxy) throws SocketException {
+        if (version != SOCKS_VERSION_5) {
+            throw new SocketException("Proxy [" + proxy + "] does not speak SOCKS5 (version [" + (version & 0xFF) + "])");
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = inputStream.read(bytes, offset, length - offset);
+            if (read < 0) {
+                throw new SocketException("SOCKS proxy closed the connection during the handshake");
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+    static HttpHost asUnresolvedHost(HttpHost host) {
+        if (host.getAddress() != null || isAddressLiteral(host.getHostName())) {
+            return host;
+        }
+        try {
+            InetAddress unresolvedAddress = InetAddress.getByAddress(host.getHostName(), UNRESOLVED_ADDRESS);
+            return new HttpHost(unresolvedAddress, host.getHostName(), host.getPort(), host.getSchemeName());
+        } catch (UnknownHostException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean isAddressLiteral(String hostName) {
+        return InetAddressUtils.isIPv4Address(hostName) || InetAddressUtils.isIPv6Address(hostName);
+    }
+
+    public Socks5Configuration getSocks5Configuration() {
+        return socks5Configuration;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("socks5Configuration", socks5Configuration)
+                .toString();
+    }
+
+}
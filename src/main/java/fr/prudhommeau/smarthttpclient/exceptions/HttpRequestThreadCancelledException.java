@@ -0,0 +1,7 @@
+package fr.prudhommeau.smarthttpclient.exceptions;
+
+public class HttpRequestThreadCancelledException extends Exception {
+    public HttpRequestThreadCancelledException(String message) {
+        super(message);
+    }
+}
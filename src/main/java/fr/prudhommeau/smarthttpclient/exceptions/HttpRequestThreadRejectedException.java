@@ -0,0 +1,7 @@
+package fr.prudhommeau.smarthttpclient.exceptions;
+
+public class HttpRequestThreadRejectedException extends RuntimeException {
+    public HttpRequestThreadRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package fr.prudhommeau.smarthttpclient.exceptions;
+
+public class HttpResponseRejectedException extends Exception {
+
+    private final int statusCode;
+
+    public HttpResponseRejectedException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}